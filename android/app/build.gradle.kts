@@ -92,6 +92,9 @@ dependencies {
     //Driver JDBC
     implementation("mysql:mysql-connector-java:5.1.49")
 
+    // --- PRUEBAS (JVM, sin dispositivo) ---
+    testImplementation(libs.junit)
+
 }
 flutter {
     source = "../.."
@@ -1,34 +1,160 @@
 package io.carpets.Configuracion;
 
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import io.carpets.Credenciales;
+import io.carpets.util.Metricas;
+import io.carpets.util.Registro;
 
 public class ConfiguracionBaseDatos {
 
+    // Parámetros del pool de conexiones
+    private static final int POOL_MINIMO = 2;
+    private static final int POOL_MAXIMO = 8;
+    private static final long POOL_INACTIVIDAD_MAXIMA_MS = 5 * 60_000L;  // 5 minutos
+    private static final long POOL_VIDA_MAXIMA_MS = 30 * 60_000L;        // 30 minutos
+    private static final long POOL_ESPERA_MAXIMA_MS = 15_000L;
+    private static final int POOL_VALIDACION_SEGUNDOS = 3;
+
+    private static final String URL = "jdbc:mysql://" + Credenciales.HOST + ":" + Credenciales.PORT + "/" + Credenciales.DATABASE
+            + "?useSSL=true&requireSSL=true&verifyServerCertificate=false"
+            + "&serverTimezone=UTC&enabledTLSProtocols=TLSv1.2"
+            // Sin red, abrir la conexión falla en segundos en lugar de quedarse esperando al sistema operativo
+            + "&connectTimeout=5000"
+            // Convierte los executeBatch() de INSERT en un solo INSERT multi-fila (una ida y vuelta)
+            + "&rewriteBatchedStatements=true";
+
+    private static final PoolConexiones POOL = new PoolConexiones(
+            ConfiguracionBaseDatos::abrirConexionFisica,
+            POOL_MINIMO, POOL_MAXIMO,
+            POOL_INACTIVIDAD_MAXIMA_MS, POOL_VIDA_MAXIMA_MS,
+            POOL_ESPERA_MAXIMA_MS, POOL_VALIDACION_SEGUNDOS);
+
     /**
-     * Fabrica y retorna una nueva conexion a la base de datos.
-     * Al devolver una instancia nueva en cada llamada, evitamos colisiones de hilos (Thread-Safety).
-     * El cierre de esta conexion se delega a los bloques try-with-resources de los Repositorios.
+     * Presta una conexión del pool.
+     * Cada llamada devuelve una conexión distinta, por lo que no hay colisiones entre hilos (Thread-Safety).
+     * El cierre se sigue delegando a los bloques try-with-resources de los Repositorios:
+     * close() devuelve la conexión al pool en lugar de cortar la sesión TLS.
+     * Si el hilo tiene una UnidadDeTrabajo abierta, se entrega la conexión de esa transacción.
      * * @return Connection Conexion activa a MySQL
-     * @throws SQLException Si falla la conexion o no se encuentra el driver
+     * @throws SQLException Si falla la conexion, no se encuentra el driver o el pool está agotado
      */
     public static Connection getConnection() throws SQLException {
+        Connection compartida = UnidadDeTrabajo.conexionCompartida();
+        if (compartida != null) {
+            return compartida;
+        }
+        return obtenerDelPool();
+    }
+
+    /**
+     * Presta una conexión del pool ignorando la UnidadDeTrabajo del hilo.
+     * Lo que se haga con ella se confirma por separado (autocommit), aunque la transacción del hilo se revierta.
+     * @return Connection Conexion independiente a MySQL
+     * @throws SQLException Si falla la conexion o el pool está agotado
+     */
+    public static Connection getConnectionAutonoma() throws SQLException {
+        return obtenerDelPool();
+    }
+
+    /**
+     * @return Conexiones físicas abiertas (libres y prestadas).
+     */
+    public static int getConexionesTotales() {
+        return POOL.getTotales();
+    }
+
+    /**
+     * @return Conexiones físicas libres en este momento.
+     */
+    public static int getConexionesLibres() {
+        return POOL.getLibres();
+    }
+
+    /**
+     * Presta una conexión midiendo cuánto se esperó por ella (incluye abrirla si hizo falta).
+     */
+    private static Connection obtenerDelPool() throws SQLException {
+        long inicio = System.nanoTime();
+        boolean error = true;
         try {
-            Class.forName("com.mysql.jdbc.Driver");
+            Connection conn = POOL.obtener();
+            error = false;
+            return conn;
+        } finally {
+            Metricas.registrar("conexion.obtener", inicio, error);
+        }
+    }
+
+    /**
+     * Indica si el error se debe a que no hay comunicación con el servidor (y no a la operación en sí).
+     * Revisa toda la cadena de causas y las excepciones suprimidas (p. ej. el rollback fallido al cerrar
+     * una UnidadDeTrabajo sobre una conexión cortada).
+     *
+     * @param error Excepción a clasificar
+     * @return true si es SQLState de clase 08 (conexión) o una falla de red
+     */
+    public static boolean esFallaDeConexion(Throwable error) {
+        int profundidad = 0;
+        for (Throwable t = error; t != null && profundidad < 20; t = t.getCause(), profundidad++) {
+            if (t instanceof SinConexionException
+                    || t instanceof ConnectException
+                    || t instanceof NoRouteToHostException
+                    || t instanceof UnknownHostException
+                    || t instanceof SocketTimeoutException
+                    || t instanceof SocketException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String estado = ((SQLException) t).getSQLState();
+                if (estado != null && estado.startsWith("08")) {
+                    return true;
+                }
+            }
+            for (Throwable suprimida : t.getSuppressed()) {
+                if (esFallaDeConexion(suprimida)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Abre en segundo plano las conexiones mínimas del pool para que la primera
+     * consulta del usuario no pague el handshake TLS.
+     */
+    public static void precalentar() {
+        POOL.precalentar();
+    }
 
-            String url = "jdbc:mysql://" + Credenciales.HOST + ":" + Credenciales.PORT + "/" + Credenciales.DATABASE
-                    + "?useSSL=true&requireSSL=true&verifyServerCertificate=false"
-                    + "&serverTimezone=UTC&enabledTLSProtocols=TLSv1.2";
+    /**
+     * Abre una conexión física nueva. Solo la usa el pool.
+     */
+    private static Connection abrirConexionFisica() throws SQLException {
+        try {
+            Class.forName("com.mysql.jdbc.Driver");
 
-            // Se crea y retorna la conexion directamente.
             // No se imprime en consola para no saturar el Logcat en consultas masivas.
-            return DriverManager.getConnection(url, Credenciales.USER, Credenciales.PASSWORD);
+            long inicio = System.nanoTime();
+            boolean error = true;
+            try {
+                Connection conn = DriverManager.getConnection(URL, Credenciales.USER, Credenciales.PASSWORD);
+                error = false;
+                return conn;
+            } finally {
+                Metricas.registrar("conexion.abrir", inicio, error);
+            }
 
         } catch (ClassNotFoundException e) {
-            System.err.println("ConfiguracionBaseDatos.getConnection: " + e.getMessage());
+            Registro.error("ConfiguracionBaseDatos.getConnection: " + e.getMessage());
             throw new SQLException("ConfiguracionBaseDatos: Driver JDBC no encontrado.");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,375 @@
+package io.carpets.Configuracion;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.carpets.util.Metricas;
+import io.carpets.util.Registro;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ *
+ * Las conexiones físicas (con su handshake TLS) se reutilizan entre llamadas. Lo que se entrega
+ * a los Repositorios es un envoltorio cuyo close() devuelve la conexión al pool en lugar de cerrarla,
+ * por lo que los bloques try-with-resources existentes siguen funcionando sin cambios.
+ *
+ * - Mínimo y máximo de conexiones físicas.
+ * - Las conexiones inactivas por encima del mínimo se cierran tras el tiempo de inactividad.
+ * - Ninguna conexión sobrevive a su vida máxima (el servidor o un balanceador podrían cortarla).
+ * - Al prestar una conexión que lleva tiempo sin usarse, se valida con isValid().
+ */
+public class PoolConexiones {
+
+    /**
+     * Abre una conexión física nueva contra la base de datos.
+     */
+    public interface FabricaConexiones {
+        Connection crear() throws SQLException;
+    }
+
+    // Una conexión usada hace menos de este tiempo se presta sin volver a validarla (evita un ping por préstamo).
+    private static final long UMBRAL_VALIDACION_MS = 500;
+    private static final long PERIODO_MANTENIMIENTO_MS = 30_000;
+
+    private final FabricaConexiones fabrica;
+    private final int minimo;
+    private final int maximo;
+    private final long inactividadMaximaMs;
+    private final long vidaMaximaMs;
+    private final long esperaMaximaMs;
+    private final int validacionSegundos;
+
+    // LIFO: se presta primero la conexión usada más recientemente, las demás envejecen y se liberan.
+    private final ArrayDeque<ConexionFisica> libres = new ArrayDeque<>();
+    private int totales = 0;
+    private boolean cerrado = false;
+
+    private final ScheduledExecutorService mantenimiento;
+
+    public PoolConexiones(FabricaConexiones fabrica, int minimo, int maximo, long inactividadMaximaMs,
+                          long vidaMaximaMs, long esperaMaximaMs, int validacionSegundos) {
+        if (minimo < 0 || maximo <= 0 || minimo > maximo) {
+            throw new IllegalArgumentException("PoolConexiones: tamaños inválidos (min=" + minimo + ", max=" + maximo + ")");
+        }
+        this.fabrica = fabrica;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.vidaMaximaMs = vidaMaximaMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.validacionSegundos = validacionSegundos;
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-conexiones-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        this.mantenimiento.scheduleWithFixedDelay(this::mantener,
+                PERIODO_MANTENIMIENTO_MS, PERIODO_MANTENIMIENTO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ========================================================================
+    // PRÉSTAMO Y DEVOLUCIÓN
+    // ========================================================================
+
+    /**
+     * Presta una conexión del pool. Si no hay libres y se alcanzó el máximo, espera hasta que
+     * otra sea devuelta o se agote el tiempo de espera.
+     *
+     * @return Connection cuyo close() la devuelve al pool
+     * @throws SQLException Si no se pudo abrir una conexión o se agotó la espera
+     */
+    public Connection obtener() throws SQLException {
+        long limite = System.currentTimeMillis() + esperaMaximaMs;
+
+        while (true) {
+            ConexionFisica candidata;
+            boolean crear = false;
+
+            synchronized (this) {
+                while (true) {
+                    if (cerrado) {
+                        throw new SQLException("PoolConexiones: El pool está cerrado");
+                    }
+                    candidata = libres.pollFirst();
+                    if (candidata != null) {
+                        break;
+                    }
+                    if (totales < maximo) {
+                        totales++;
+                        crear = true;
+                        break;
+                    }
+                    long restante = limite - System.currentTimeMillis();
+                    if (restante <= 0) {
+                        throw new SQLException("PoolConexiones: Tiempo de espera agotado, las " + maximo + " conexiones están en uso");
+                    }
+                    try {
+                        wait(restante);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("PoolConexiones: Espera interrumpida");
+                    }
+                }
+            }
+
+            if (crear) {
+                return envolver(abrir());
+            }
+
+            // La validación (posible ida y vuelta por red) se hace fuera del candado.
+            if (esUtilizable(candidata)) {
+                return envolver(candidata);
+            }
+            descartar(candidata);
+        }
+    }
+
+    /**
+     * Abre las conexiones necesarias para llegar al mínimo, de modo que la primera operación
+     * del usuario no pague el handshake TLS.
+     */
+    public void precalentar() {
+        while (true) {
+            synchronized (this) {
+                if (cerrado || totales >= minimo) {
+                    return;
+                }
+                totales++;
+            }
+            try {
+                ConexionFisica nueva = abrir();
+                devolver(nueva);
+            } catch (SQLException e) {
+                Registro.advertencia("PoolConexiones.precalentar: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y rechaza nuevos préstamos.
+     * Las conexiones prestadas se cierran al ser devueltas.
+     */
+    public void cerrar() {
+        ArrayDeque<ConexionFisica> aCerrar;
+        synchronized (this) {
+            cerrado = true;
+            aCerrar = new ArrayDeque<>(libres);
+            totales -= libres.size();
+            libres.clear();
+            notifyAll();
+        }
+        mantenimiento.shutdownNow();
+        for (ConexionFisica c : aCerrar) {
+            cerrarSilencioso(c.real);
+        }
+    }
+
+    /**
+     * @return Número de conexiones físicas abiertas (libres y prestadas).
+     */
+    public synchronized int getTotales() {
+        return totales;
+    }
+
+    /**
+     * @return Número de conexiones físicas libres en este momento.
+     */
+    public synchronized int getLibres() {
+        return libres.size();
+    }
+
+    // ========================================================================
+    // MÉTODOS PRIVADOS AUXILIARES
+    // ========================================================================
+
+    /**
+     * Abre una conexión física. Se asume que el cupo (totales++) ya fue reservado.
+     */
+    private ConexionFisica abrir() throws SQLException {
+        try {
+            return new ConexionFisica(fabrica.crear());
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                totales--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private boolean esUtilizable(ConexionFisica c) {
+        long ahora = System.currentTimeMillis();
+        if (ahora - c.creadaEn >= vidaMaximaMs) {
+            return false;
+        }
+        if (ahora - c.ultimoUso < UMBRAL_VALIDACION_MS) {
+            return true;
+        }
+        try {
+            return c.real.isValid(validacionSegundos);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Devuelve una conexión al pool, dejándola en modo autocommit. Si está rota o expirada se descarta.
+     */
+    private void devolver(ConexionFisica c) {
+        boolean sana;
+        try {
+            sana = !c.real.isClosed();
+            if (sana && !c.real.getAutoCommit()) {
+                // Alguien la devolvió con una transacción abierta: no debe filtrarse al siguiente usuario.
+                c.real.rollback();
+                c.real.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            sana = false;
+        }
+
+        c.ultimoUso = System.currentTimeMillis();
+        boolean expirada = c.ultimoUso - c.creadaEn >= vidaMaximaMs;
+
+        synchronized (this) {
+            if (sana && !expirada && !cerrado) {
+                libres.addFirst(c);
+                notifyAll();
+                return;
+            }
+        }
+        descartar(c);
+    }
+
+    private void descartar(ConexionFisica c) {
+        synchronized (this) {
+            totales--;
+            notifyAll();
+        }
+        cerrarSilencioso(c.real);
+    }
+
+    /**
+     * Tarea periódica: cierra conexiones inactivas (por encima del mínimo) o expiradas
+     * y vuelve a completar el mínimo.
+     */
+    private void mantener() {
+        ArrayDeque<ConexionFisica> aCerrar = new ArrayDeque<>();
+        long ahora = System.currentTimeMillis();
+
+        synchronized (this) {
+            // Se recorre desde la más antigua (final de la cola) hacia la más reciente.
+            Iterator<ConexionFisica> it = libres.descendingIterator();
+            while (it.hasNext()) {
+                ConexionFisica c = it.next();
+                boolean expirada = ahora - c.creadaEn >= vidaMaximaMs;
+                boolean inactiva = ahora - c.ultimoUso >= inactividadMaximaMs && totales > minimo;
+                if (expirada || inactiva) {
+                    it.remove();
+                    totales--;
+                    aCerrar.add(c);
+                }
+            }
+        }
+
+        for (ConexionFisica c : aCerrar) {
+            cerrarSilencioso(c.real);
+        }
+        precalentar();
+    }
+
+    private static void cerrarSilencioso(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // La conexión ya no sirve, no hay nada más que hacer.
+        }
+    }
+
+    private Connection envolver(ConexionFisica c) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConexionPrestada(c));
+    }
+
+    /**
+     * Conexión física junto con sus marcas de tiempo.
+     */
+    private static final class ConexionFisica {
+        final Connection real;
+        final long creadaEn;
+        volatile long ultimoUso;
+
+        ConexionFisica(Connection real) {
+            this.real = real;
+            this.creadaEn = System.currentTimeMillis();
+            this.ultimoUso = this.creadaEn;
+        }
+    }
+
+    /**
+     * Envoltorio entregado a los Repositorios. close() devuelve la conexión al pool una sola vez;
+     * cualquier uso posterior lanza SQLException en lugar de operar sobre una conexión ajena.
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+        private final ConexionFisica fisica;
+        private boolean devuelta = false;
+
+        ConexionPrestada(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.real.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPrestada[" + fisica.real + "]";
+                default:
+                    break;
+            }
+
+            if (devuelta) {
+                throw new SQLException("PoolConexiones: La conexión ya fue devuelta al pool");
+            }
+
+            Object resultado;
+            try {
+                resultado = method.invoke(fisica.real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            // Las sentencias se entregan instrumentadas para medir el tiempo de cada SQL.
+            if (resultado instanceof Statement) {
+                String sql = "prepareStatement".equals(method.getName()) ? (String) args[0] : null;
+                return Metricas.instrumentarSentencia((Statement) resultado, sql);
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.carpets.Configuracion;
+
+/**
+ * La operación no llegó a la base de datos (servidor inalcanzable, red caída, conexión cortada).
+ *
+ * Se distingue de los errores de negocio (stock insuficiente, DNI inválido, etc.) porque la operación
+ * puede reintentarse más tarde tal cual: p. ej. una venta se guarda en el equipo y se reenvía al volver la red.
+ */
+public class SinConexionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SinConexionException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
@@ -0,0 +1,189 @@
+package io.carpets.Configuracion;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.carpets.util.Registro;
+
+/**
+ * Unidad de trabajo transaccional ligada al hilo actual.
+ *
+ * Mientras esté abierta, ConfiguracionBaseDatos.getConnection() entrega a todos los Repositorios
+ * la misma conexión (con autocommit desactivado), así varias operaciones se confirman con un solo commit.
+ * Los Repositorios no necesitan cambios: el close() de sus try-with-resources no cierra la conexión compartida.
+ *
+ * Uso:
+ * <pre>
+ * try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar()) {
+ *     ventaRepo.save(venta);
+ *     detalleVentaRepo.save(detalle);
+ *     uow.confirmar();
+ * } // Si no se llamó a confirmar(), se hace rollback.
+ * </pre>
+ *
+ * Si ya hay una unidad abierta en el hilo, iniciar() se une a ella: confirmar() no hace nada y,
+ * si se cierra sin confirmar, la unidad externa queda marcada para rollback.
+ */
+public class UnidadDeTrabajo implements AutoCloseable {
+
+    private static final ThreadLocal<UnidadDeTrabajo> ACTUAL = new ThreadLocal<>();
+
+    private final Connection conexion;
+    private final UnidadDeTrabajo externa;
+    private boolean confirmada = false;
+    private boolean cerrada = false;
+    private boolean soloRollback = false;
+    private final List<Runnable> alTerminar = new ArrayList<>();
+
+    private UnidadDeTrabajo(Connection conexion, UnidadDeTrabajo externa) {
+        this.conexion = conexion;
+        this.externa = externa;
+    }
+
+    /**
+     * Abre una unidad de trabajo en el hilo actual, o se une a la que ya esté abierta.
+     *
+     * @return UnidadDeTrabajo que debe cerrarse con try-with-resources
+     * @throws SQLException Si no se pudo obtener la conexión
+     */
+    public static UnidadDeTrabajo iniciar() throws SQLException {
+        UnidadDeTrabajo actual = ACTUAL.get();
+        if (actual != null) {
+            return new UnidadDeTrabajo(actual.conexion, actual);
+        }
+
+        Connection conn = ConfiguracionBaseDatos.getConnectionAutonoma();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+
+        UnidadDeTrabajo nueva = new UnidadDeTrabajo(conn, null);
+        ACTUAL.set(nueva);
+        return nueva;
+    }
+
+    /**
+     * @return true si el hilo actual tiene una unidad de trabajo abierta.
+     */
+    public static boolean estaActiva() {
+        return ACTUAL.get() != null;
+    }
+
+    /**
+     * Ejecuta la acción cuando termine la unidad abierta en el hilo (tras el commit o el rollback),
+     * o de inmediato si no hay ninguna. Útil para invalidar cachés cuando los cambios ya son visibles.
+     *
+     * @param accion Acción a ejecutar; sus excepciones se ignoran para no afectar el cierre
+     */
+    public static void despuesDeTerminar(Runnable accion) {
+        UnidadDeTrabajo actual = ACTUAL.get();
+        if (actual == null) {
+            ejecutarSilencioso(accion);
+            return;
+        }
+        actual.alTerminar.add(accion);
+    }
+
+    /**
+     * Conexión compartida de la unidad abierta en el hilo, envuelta para que close() no la cierre.
+     * Retorna null si no hay unidad abierta.
+     */
+    static Connection conexionCompartida() {
+        UnidadDeTrabajo actual = ACTUAL.get();
+        if (actual == null) {
+            return null;
+        }
+        Connection real = actual.conexion;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(real, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Confirma todos los cambios hechos dentro de la unidad.
+     *
+     * @throws SQLException Si el commit falla o alguna unidad interna se cerró sin confirmar
+     */
+    public void confirmar() throws SQLException {
+        if (cerrada) {
+            throw new SQLException("UnidadDeTrabajo: La unidad ya fue cerrada");
+        }
+        if (externa != null) {
+            // La unidad externa es la dueña de la transacción y hará el commit.
+            confirmada = true;
+            return;
+        }
+        if (soloRollback) {
+            throw new SQLException("UnidadDeTrabajo: Una operación interna falló, la transacción se revertirá");
+        }
+        conexion.commit();
+        confirmada = true;
+    }
+
+    /**
+     * Cierra la unidad. Si no fue confirmada, revierte los cambios (o marca la externa para rollback).
+     */
+    @Override
+    public void close() throws SQLException {
+        if (cerrada) {
+            return;
+        }
+        cerrada = true;
+
+        if (externa != null) {
+            if (!confirmada) {
+                externa.soloRollback = true;
+            }
+            return;
+        }
+
+        ACTUAL.remove();
+        try {
+            if (!confirmada) {
+                conexion.rollback();
+            }
+        } finally {
+            // Devuelve la conexión al pool, que restablece el autocommit.
+            try {
+                conexion.close();
+            } finally {
+                for (Runnable accion : alTerminar) {
+                    ejecutarSilencioso(accion);
+                }
+                alTerminar.clear();
+            }
+        }
+    }
+
+    private static void ejecutarSilencioso(Runnable accion) {
+        try {
+            accion.run();
+        } catch (RuntimeException e) {
+            Registro.error("UnidadDeTrabajo.despuesDeTerminar: " + e.getMessage());
+        }
+    }
+}
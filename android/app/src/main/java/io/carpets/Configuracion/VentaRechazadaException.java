@@ -0,0 +1,17 @@
+package io.carpets.Configuracion;
+
+/**
+ * La base de datos respondió, pero la venta no puede registrarse tal como viene (producto inexistente,
+ * stock insuficiente, DNI o precio inválido, etc.).
+ *
+ * A diferencia de SinConexionException y de los errores pasajeros (espera del pool, bloqueo mutuo),
+ * reenviar la misma venta más tarde volvería a fallar: ReplicadorVentas la da por rechazada.
+ */
+public class VentaRechazadaException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public VentaRechazadaException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,19 @@
+package io.carpets.DTOs;
+
+import io.carpets.entidades.Producto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CambiosCatalogoDTO {
+    private List<Producto> cambiados = new ArrayList<>();
+    private List<Integer> eliminados = new ArrayList<>();
+    private long version; // Token para la siguiente sincronización
+
+    public List<Producto> getCambiados() { return cambiados; }
+    public void setCambiados(List<Producto> cambiados) { this.cambiados = cambiados; }
+    public List<Integer> getEliminados() { return eliminados; }
+    public void setEliminados(List<Integer> eliminados) { this.eliminados = eliminados; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+}
@@ -0,0 +1,23 @@
+package io.carpets.DTOs;
+
+public class CompraResumenDTO {
+    private int id;
+    private String descripcion;
+    private double monto;
+    private String fecha;
+    private String imagePath;
+    private int cantidadLineas;
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+    public String getDescripcion() { return descripcion; }
+    public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
+    public double getMonto() { return monto; }
+    public void setMonto(double monto) { this.monto = monto; }
+    public String getFecha() { return fecha; }
+    public void setFecha(String fecha) { this.fecha = fecha; }
+    public String getImagePath() { return imagePath; }
+    public void setImagePath(String imagePath) { this.imagePath = imagePath; }
+    public int getCantidadLineas() { return cantidadLineas; }
+    public void setCantidadLineas(int cantidadLineas) { this.cantidadLineas = cantidadLineas; }
+}
@@ -0,0 +1,33 @@
+package io.carpets.DTOs;
+
+import io.carpets.entidades.Producto;
+
+// DTO con el resultado de resolver un escaneo (ID o código) en el punto de venta
+
+public class ProductoEscaneadoDTO {
+    private String entrada;            // Lo que se escaneó o escribió, tal cual
+    private Producto producto;         // null si no se encontró
+    private int cantidadEscaneada;     // Veces que ese producto aparece en todo el lote
+    private boolean stockSuficiente;   // El stock alcanza para cantidadEscaneada
+
+    public ProductoEscaneadoDTO() {}
+
+    public ProductoEscaneadoDTO(String entrada, Producto producto, int cantidadEscaneada, boolean stockSuficiente) {
+        this.entrada = entrada;
+        this.producto = producto;
+        this.cantidadEscaneada = cantidadEscaneada;
+        this.stockSuficiente = stockSuficiente;
+    }
+
+    public String getEntrada() { return entrada; }
+    public void setEntrada(String entrada) { this.entrada = entrada; }
+
+    public Producto getProducto() { return producto; }
+    public void setProducto(Producto producto) { this.producto = producto; }
+
+    public int getCantidadEscaneada() { return cantidadEscaneada; }
+    public void setCantidadEscaneada(int cantidadEscaneada) { this.cantidadEscaneada = cantidadEscaneada; }
+
+    public boolean isStockSuficiente() { return stockSuficiente; }
+    public void setStockSuficiente(boolean stockSuficiente) { this.stockSuficiente = stockSuficiente; }
+}
@@ -4,15 +4,16 @@ import android.os.Bundle;
 import android.os.StrictMode;
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
-import io.carpets.bridge.BridgeCompra;
-import io.carpets.bridge.BridgeMain;
-import io.carpets.bridge.BridgeProducto;
-import io.carpets.bridge.BridgeVenta;
+import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.bridge.Puentes;
+import io.carpets.local.AlmacenLocal;
+import io.carpets.local.ReplicadorVentas;
+import io.carpets.util.Registro;
 import io.flutter.embedding.android.FlutterActivity;
 import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodChannel;
 
 /**
@@ -40,99 +41,45 @@ public class LauncherActivity extends FlutterActivity {
     public void configureFlutterEngine(@NonNull FlutterEngine flutterEngine) {
         super.configureFlutterEngine(flutterEngine);
 
-        // Canal Productos
-        new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), PRODUCT)
-                .setMethodCallHandler(
-                        (call, result) -> {
-
-                            //creamos hilo para no congelar
-                            new Thread(() -> {
-                                //acceso a la base de datos
-                                BridgeProducto BP = new BridgeProducto();
-                                Object respuesta = BP.Dirigir(call.method, (List<Object>) call.arguments);
+        // Leer el catálogo y las ventas guardadas en el equipo lleva tiempo: fuera del hilo principal.
+        // Mientras se abre, las ventas van directo a la base de datos (ver ServicioVentaSinConexion)
+        Puentes.ejecutar(this::iniciarAlmacenLocal);
 
-                                //entregar la respuesta
-                                runOnUiThread(() -> {
-                                    result.success(respuesta);
-                                });
-                            }).start();
-                        });
-        //esti estaba mal
-        // BridgeProducto BP = new BridgeProducto();
-        // ✅ Esto estaba bien
-        //result.success(BP.Dirigir(call.method, (List<Object>) call.arguments));
-
-        // Canal Ventas
-        new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), VENTA)
-                .setMethodCallHandler((call, result) -> {
+        // Abrimos las conexiones mínimas del pool mientras Flutter dibuja la primera pantalla
+        Puentes.ejecutar(ConfiguracionBaseDatos::precalentar);
 
-                    // 1. Abrimos un hilo secundario para que la app no se congele
-                    new Thread(() -> {
-                        try {
-                            // 2. Hacemos el trabajo pesado (Base de Datos)
-                            BridgeVenta BV = new BridgeVenta();
-                            Object respuesta = BV.Dirigir(call.method, (List<Object>) call.arguments);
+        BinaryMessenger messenger = flutterEngine.getDartExecutor().getBinaryMessenger();
 
-                            // 3. Volvemos al hilo principal SOLO para entregar la respuesta a Flutter
-                            runOnUiThread(() -> {
-                                result.success(respuesta);
-                            });
-                        } catch (Exception e) {
-                            // Si algo falla, avisamos a Flutter
-                            runOnUiThread(() -> {
-                                result.error("ERROR_VENTA", "Error en hilo de venta: " + e.getMessage(), null);
-                            });
-                        }
-                    }).start(); // ¡Importante! No olvides el .start()
+        // Canal Productos
+        new MethodChannel(messenger, PRODUCT)
+                .setMethodCallHandler((call, result) ->
+                        Puentes.atender(call, result, "Productos", Puentes.producto()::Dirigir, "ERROR_PRODUCTO", this::runOnUiThread));
 
-                });
+        // Canal Ventas
+        new MethodChannel(messenger, VENTA)
+                .setMethodCallHandler((call, result) ->
+                        Puentes.atender(call, result, "Venta", Puentes.venta()::Dirigir, "ERROR_VENTA", this::runOnUiThread));
 
         // Canal Login
-        new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), LOGIN)
-                .setMethodCallHandler((call, result) -> {
-
-                    new Thread(() -> {
-                        try {
-                            BridgeMain BM = new BridgeMain();
-                            Object respuesta = BM.Dirigir(call.method, (List<Object>) call.arguments);
-
-                            runOnUiThread(() -> {
-                                result.success(respuesta);
-                            });
-                        } catch (Exception e) {
-                            runOnUiThread(() -> {
-                                result.error("ERROR_LOGIN", "Error en hilo de login: " + e.getMessage(), null);
-                            });
-                        }
-                    }).start();
-
-                });
+        new MethodChannel(messenger, LOGIN)
+                .setMethodCallHandler((call, result) ->
+                        Puentes.atender(call, result, "Login", Puentes.main()::Dirigir, "ERROR_LOGIN", this::runOnUiThread));
 
         // Canal Compras
-        new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), COMPRA)
-                .setMethodCallHandler((call, result) -> {
-
-                    new Thread(() -> {
-                        try {
-                            BridgeCompra BC = new BridgeCompra();
-                            List<Object> Lista = new ArrayList<>();
-
-                            if(call.arguments != null){
-                                Lista = (List<Object>) call.arguments;
-                            }
-
-                            Object respuesta = BC.Dirigir(call.method, Lista);
-
-                            runOnUiThread(() -> {
-                                result.success(respuesta);
-                            });
-                        } catch (Exception e) {
-                            runOnUiThread(() -> {
-                                result.error("ERROR_COMPRA", "LauncherActivity: Error en hilo de compra: " + e.getMessage(), null);
-                            });
-                        }
-                    }).start();
+        new MethodChannel(messenger, COMPRA)
+                .setMethodCallHandler((call, result) ->
+                        Puentes.atender(call, result, "Compra", Puentes.compra()::Dirigir, "ERROR_COMPRA", this::runOnUiThread));
+    }
 
-                });
+    /**
+     * Abre el catálogo y las ventas pendientes guardados en el equipo e inicia su reenvío en segundo plano.
+     * Si no se puede abrir, la aplicación sigue funcionando solo en línea. Se llama desde el ejecutor de Puentes.
+     */
+    private void iniciarAlmacenLocal() {
+        try {
+            ReplicadorVentas.iniciar(AlmacenLocal.inicializar(getFilesDir()));
+        } catch (IOException e) {
+            Registro.error("LauncherActivity: No se pudo abrir el almacén local: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
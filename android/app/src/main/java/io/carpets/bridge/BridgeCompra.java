@@ -3,8 +3,10 @@ package io.carpets.bridge;
 import android.os.Build;
 import androidx.annotation.RequiresApi;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import io.carpets.flutterbridge.MethodChannelHandler;
@@ -15,12 +17,14 @@ public class BridgeCompra {
 
     // Constantes de Nombres de Métodos (CamelCase estándar)
     private static final String LISTAR_COMPRAS = "listCompras";
+    private static final String LISTAR_COMPRAS_PAGINA = "listComprasPage";
     private static final String REGISTRAR_COMPRA = "RegCompra";
 
     // Constantes de Llaves del Diccionario (Evita Strings Mágicos)
     private static final class CompraKeys {
         static final String DESCRIPCION = "descripcion";
         static final String MONTO = "monto";
+        static final String CLAVE_IDEMPOTENCIA = "claveIdempotencia";
     }
 
     private static final class DetalleKeys {
@@ -29,6 +33,8 @@ public class BridgeCompra {
         static final String PRECIO_UNITARIO = "precioUnitario";
     }
 
+    private static final int TAMANO_PAGINA_DEFECTO = 30;
+
     MethodChannelHandler MCH;
 
     HashMap<String, Function<Object, Response>> VoidFunc = new HashMap<>();
@@ -36,7 +42,11 @@ public class BridgeCompra {
     HashMap<String, BiFunction<Object, Object, Response>> Bifunc = new HashMap<>();
 
     public BridgeCompra() {
-        MCH = new MethodChannelHandler();
+        this(new MethodChannelHandler());
+    }
+
+    public BridgeCompra(MethodChannelHandler MCH) {
+        this.MCH = MCH;
         CargarFunciones();
     }
 
@@ -44,6 +54,16 @@ public class BridgeCompra {
     // ENRUTAMIENTO PRINCIPAL
     // =========================================================================
 
+    /**
+     * @return Nombres de las funciones registradas (Puentes arma con ellos las claves de sus métricas).
+     */
+    public Set<String> funciones() {
+        Set<String> nombres = new HashSet<>(VoidFunc.keySet());
+        nombres.addAll(Funct.keySet());
+        nombres.addAll(Bifunc.keySet());
+        return nombres;
+    }
+
     public Object Dirigir(String Funcion, List<Object> List) {
         if (List == null || List.isEmpty()) {
             return Redirigir(Funcion, null).getMap();
@@ -98,6 +118,28 @@ public class BridgeCompra {
             }
         });
 
+        // --- LISTAR COMPRAS POR PÁGINAS: { beforeId, limit } ---
+        Funct.put(LISTAR_COMPRAS_PAGINA, (Object mapObj) -> {
+            try {
+                if (!(mapObj instanceof Map)) {
+                    Response error = new Response();
+                    error.internal_error("El parámetro debe ser un Mapa/Diccionario válido.");
+                    return error;
+                }
+
+                @SuppressWarnings("unchecked")
+                Map<String, Object> mapa = (Map<String, Object>) mapObj;
+
+                return MCH.listarComprasPagina(
+                        parseInt(mapa.get("beforeId"), 0),
+                        parseInt(mapa.get("limit"), TAMANO_PAGINA_DEFECTO));
+            } catch (Exception e) {
+                Response error = new Response();
+                error.internal_error("Error al listar compras: " + e.getMessage());
+                return error;
+            }
+        });
+
         // --- REGISTRAR COMPRA ---
         Bifunc.put(REGISTRAR_COMPRA, (Object compraMapObj, Object detallesListObj) -> {
             try {
@@ -133,6 +175,10 @@ public class BridgeCompra {
                     compra.setDescripcion(compraMap.get(CompraKeys.DESCRIPCION).toString());
                 }
                 compra.setMonto(parseDouble(compraMap.get(CompraKeys.MONTO), 0.0));
+                // Generada por Flutter una vez por compra y repetida en cada reintento
+                if (compraMap.get(CompraKeys.CLAVE_IDEMPOTENCIA) != null) {
+                    compra.setClaveIdempotencia(compraMap.get(CompraKeys.CLAVE_IDEMPOTENCIA).toString());
+                }
 
                 // 4. Construcción Segura de los Detalles
                 java.util.List<io.carpets.entidades.DetalleCompra> detalles = new java.util.ArrayList<>();
@@ -1,7 +1,9 @@
 package io.carpets.bridge;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import io.carpets.flutterbridge.MethodChannelHandler;
@@ -17,7 +19,11 @@ public class BridgeMain {
     MethodChannelHandler MCH;
 
     public BridgeMain() {
-        MCH = new MethodChannelHandler();
+        this(new MethodChannelHandler());
+    }
+
+    public BridgeMain(MethodChannelHandler MCH) {
+        this.MCH = MCH;
         CargarFunciones();
     }
 
@@ -26,6 +32,17 @@ public class BridgeMain {
     HashMap<String, BiFunction<Object, Object, Object>> Bifunc = new HashMap<>();
 
     private final String login = "login";
+    private final String diagnostico = "diagnostics";
+    /**
+     * @return Nombres de las funciones registradas (Puentes arma con ellos las claves de sus métricas).
+     */
+    public Set<String> funciones() {
+        Set<String> nombres = new HashSet<>(VoidFunc.keySet());
+        nombres.addAll(Funct.keySet());
+        nombres.addAll(Bifunc.keySet());
+        return nombres;
+    }
+
     public Object Dirigir(String Funcion, List<Object> List) {
         if (List == null || List.isEmpty()) {
             return Redirigir(Funcion, List);
@@ -54,5 +71,6 @@ public class BridgeMain {
 
     void CargarFunciones() {
         Bifunc.put(login, (Object username, Object password) -> MCH.login(username.toString(), password.toString()).getMap());
+        VoidFunc.put(diagnostico, (Object l) -> MCH.obtenerDiagnostico().getMap());
     }
 }
\ No newline at end of file
@@ -5,8 +5,10 @@ import androidx.annotation.RequiresApi;
 import io.carpets.flutterbridge.MethodChannelHandler;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import io.carpets.entidades.Producto;
@@ -17,13 +19,22 @@ public class BridgeProducto {
 
     // Nombres de los métodos llamados desde Flutter
     private static final String OBTENER_PRODUCTOS = "getProduct";
+    private static final String OBTENER_PAGINA_PRODUCTOS = "getProductPage";
+    private static final String OBTENER_CAMBIOS_PRODUCTOS = "getProductChanges";
     private static final String AGREGAR_PRODUCTO = "addProduct";
     private static final String ACTUALIZAR_PRODUCTO = "editProduct";
     private static final String ELIMINAR_PRODUCTO = "deleteProduct";
     private static final String BUSCAR_PRODUCTOS = "searchProducts";
+    // Variantes columnares (opcionales) de getProduct y searchProducts
+    private static final String OBTENER_PRODUCTOS_COLUMNAR = "getProductColumnar";
+    private static final String BUSCAR_PRODUCTOS_COLUMNAR = "searchProductsColumnar";
     private static final String GET_GANANCIA_TOTAL = "SumGanancia";
+    private static final String GET_GANANCIA_PRODUCTO = "productGanancia";
+    private static final String BUSCAR_POR_CODIGO = "getProductByCode";
     private static final String MODIFICAR_DESCRIPCION_COMPRA = "updateDescription";
 
+    private static final int TAMANO_PAGINA_DEFECTO = 50;
+
     HashMap<String, Function<Object, Response>> VoidFunc = new HashMap<>();
     HashMap<String, Function<Object, Response>> Funct = new HashMap<>();
     HashMap<String, BiFunction<Object, Object, Response>> Bifunc = new HashMap<>();
@@ -31,7 +42,11 @@ public class BridgeProducto {
     MethodChannelHandler MCH;
 
     public BridgeProducto() {
-        MCH = new MethodChannelHandler();
+        this(new MethodChannelHandler());
+    }
+
+    public BridgeProducto(MethodChannelHandler MCH) {
+        this.MCH = MCH;
         CargarFunciones();
     }
 
@@ -39,6 +54,16 @@ public class BridgeProducto {
     // ENRUTAMIENTO PRINCIPAL
     // =========================================================================
 
+    /**
+     * @return Nombres de las funciones registradas (Puentes arma con ellos las claves de sus métricas).
+     */
+    public Set<String> funciones() {
+        Set<String> nombres = new HashSet<>(VoidFunc.keySet());
+        nombres.addAll(Funct.keySet());
+        nombres.addAll(Bifunc.keySet());
+        return nombres;
+    }
+
     public Object Dirigir(String Funcion, List<Object> List) {
         if (List == null || List.isEmpty()) {
             return Redirigir(Funcion, null).getMap();
@@ -93,6 +118,16 @@ public class BridgeProducto {
             }
         });
 
+        VoidFunc.put(OBTENER_PRODUCTOS_COLUMNAR, (Object r) -> {
+            try {
+                return MCH.obtenerProductosColumnar();
+            } catch (Exception e) {
+                Response err = new Response();
+                err.internal_error("Error obteniendo productos: " + e.getMessage());
+                return err;
+            }
+        });
+
         VoidFunc.put(GET_GANANCIA_TOTAL, (Object l) -> {
             try {
                 return MCH.getGananciaTotal();
@@ -123,7 +158,7 @@ public class BridgeProducto {
                         parseDouble(mapa.get("precioVenta"), 0.0),
                         parseInt(mapa.get("cantidad"), 0),
                         mapa.get("categoriaNombre") != null ? mapa.get("categoriaNombre").toString() : "",
-                        "" // Código vacío por defecto
+                        mapa.get("codigo") != null ? mapa.get("codigo").toString() : "" // Vacío = sin código
                 );
 
                 if (mapa.get("imagePath") != null) {
@@ -157,9 +192,12 @@ public class BridgeProducto {
                         parseDouble(mapa.get("precioVenta"), 0.0),
                         parseInt(mapa.get("cantidad"), 0),
                         mapa.get("categoriaNombre") != null ? mapa.get("categoriaNombre").toString() : "",
-                        ""
+                        mapa.get("codigo") != null ? mapa.get("codigo").toString() : "" // Vacío = se quita el código
                 );
 
+                // Sin la clave "codigo" (clientes que aún no lo envían) se conserva el actual
+                p.setConservarCodigo(!mapa.containsKey("codigo"));
+
                 if (mapa.get("imagePath") != null) {
                     p.setImagePath(mapa.get("imagePath").toString());
                 }
@@ -170,6 +208,9 @@ public class BridgeProducto {
                     p.setPrecioOferta(null);
                 }
 
+                // Versión con la que se leyó el producto; sin ella (-1) se actualiza todo menos la cantidad
+                p.setVersion(parseLong(mapa.get("version"), -1L));
+
                 return MCH.actualizarProducto(p);
             } catch (Exception e) {
                 Response err = new Response();
@@ -178,6 +219,62 @@ public class BridgeProducto {
             }
         });
 
+        // Página del catálogo: { afterNombre, afterId, limit } (sin afterNombre = primera página)
+        Funct.put(OBTENER_PAGINA_PRODUCTOS, (Object mapObj) -> {
+            try {
+                if (!(mapObj instanceof Map)) {
+                    Response err = new Response();
+                    err.internal_error("El parámetro debe ser un Mapa válido.");
+                    return err;
+                }
+
+                @SuppressWarnings("unchecked")
+                Map<String, Object> mapa = (Map<String, Object>) mapObj;
+
+                String afterNombre = mapa.get("afterNombre") != null ? mapa.get("afterNombre").toString() : null;
+                return MCH.obtenerProductosPagina(
+                        afterNombre,
+                        parseInt(mapa.get("afterId"), 0),
+                        parseInt(mapa.get("limit"), TAMANO_PAGINA_DEFECTO));
+            } catch (Exception e) {
+                Response err = new Response();
+                err.internal_error("Error obteniendo página de productos: " + e.getMessage());
+                return err;
+            }
+        });
+
+        // Sincronización incremental: recibe el token "version" de la sincronización anterior
+        Funct.put(OBTENER_CAMBIOS_PRODUCTOS, (Object version) -> {
+            try {
+                return MCH.obtenerCambiosCatalogo(parseLong(version, 0L));
+            } catch (Exception e) {
+                Response err = new Response();
+                err.internal_error("Error sincronizando productos: " + e.getMessage());
+                return err;
+            }
+        });
+
+        Funct.put(GET_GANANCIA_PRODUCTO, (Object idProducto) -> {
+            try {
+                return MCH.getGananciaProducto(parseInt(idProducto, 0));
+            } catch (Exception e) {
+                Response err = new Response();
+                err.internal_error("Error calculando ganancia del producto: " + e.getMessage());
+                return err;
+            }
+        });
+
+        // Código escaneado (código de barras / SKU), tal cual lo leyó el escáner
+        Funct.put(BUSCAR_POR_CODIGO, (Object codigo) -> {
+            try {
+                return MCH.buscarProductoPorCodigo(codigo != null ? codigo.toString() : "");
+            } catch (Exception e) {
+                Response err = new Response();
+                err.internal_error("Error buscando código: " + e.getMessage());
+                return err;
+            }
+        });
+
         Funct.put(ELIMINAR_PRODUCTO, (Object idProducto) -> {
             try {
                 return MCH.eliminarProducto(parseInt(idProducto, 0));
@@ -210,6 +307,18 @@ public class BridgeProducto {
                 return err;
             }
         });
+
+        Bifunc.put(BUSCAR_PRODUCTOS_COLUMNAR, (Object criterio, Object tipo) -> {
+            try {
+                String c = criterio != null ? criterio.toString() : "";
+                String t = tipo != null ? tipo.toString() : "";
+                return MCH.buscarProductosColumnar(c, t);
+            } catch (Exception e) {
+                Response err = new Response();
+                err.internal_error("Error buscando productos: " + e.getMessage());
+                return err;
+            }
+        });
     }
 
     // =========================================================================
@@ -235,4 +344,14 @@ public class BridgeProducto {
             return defaultValue;
         }
     }
-}
\ No newline at end of file
+
+    private Long parseLong(Object obj, long defaultValue) {
+        if (obj == null) return defaultValue;
+        if (obj instanceof Number) return ((Number) obj).longValue();
+        try {
+            return Long.parseLong(obj.toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package io.carpets.bridge;
 
 import io.carpets.flutterbridge.MethodChannelHandler;
+import io.carpets.util.Registro;
 import io.carpets.util.Response;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -20,6 +23,10 @@ public class BridgeVenta {
     private final String calcularTotalVenta = "calcTotVent";
     private final String generarBoleta = "genBoletaVenta";
     private final String calcularMontos = "calcMontos";
+    private final String obtenerReporteDiario = "getReporteDiario";
+    private final String reconstruirResumenDiario = "rebuildReporteDiario";
+    private final String resolverEscaneos = "resolveScans";
+    private final String checkout = "checkout";
 
     HashMap<String, Function<Object, Response>> VoidFunc = new HashMap<>();
     HashMap<String, Function<Object, Response>> Funct = new HashMap<>();
@@ -27,10 +34,24 @@ public class BridgeVenta {
     MethodChannelHandler MCH;
 
     public BridgeVenta() {
-        MCH = new MethodChannelHandler();
+        this(new MethodChannelHandler());
+    }
+
+    public BridgeVenta(MethodChannelHandler MCH) {
+        this.MCH = MCH;
         CargarFunciones();
     }
 
+    /**
+     * @return Nombres de las funciones registradas (Puentes arma con ellos las claves de sus métricas).
+     */
+    public Set<String> funciones() {
+        Set<String> nombres = new HashSet<>(VoidFunc.keySet());
+        nombres.addAll(Funct.keySet());
+        nombres.addAll(Bifunc.keySet());
+        return nombres;
+    }
+
     public Object Dirigir(String Funcion, List<Object> List) {
         if (List == null || List.isEmpty()) {
             return Redirigir(Funcion, null).getMap();
@@ -72,58 +93,84 @@ public class BridgeVenta {
     void CargarFunciones() {
         // Funciones sin parámetros
         VoidFunc.put(listarVentas, (Object l) -> MCH.listarVentas());
+        VoidFunc.put(obtenerReporteDiario, (Object l) -> MCH.obtenerReporteDiario());
+        VoidFunc.put(reconstruirResumenDiario, (Object l) -> MCH.reconstruirResumenDiario());
 
         // Funciones con un parámetro
         Funct.put(obtenerVentasPorDia, (Object f) -> MCH.obtenerVentasPorDia((String) f));
         Funct.put(eliminarVenta, (Object id) -> MCH.eliminarVenta((int) id));
+        Funct.put(resolverEscaneos, (Object l) -> MCH.resolverEscaneos((List<?>) l));
 
         // Funciones con dos parámetros (AQUÍ ESTÁ LA MAGIA DEL CARRITO)
         Bifunc.put(registrarVenta, (Object ventaMapObj, Object detallesListObj) -> {
             try {
-                Map<String, Object> ventaMap = (Map<String, Object>) ventaMapObj;
-                List<?> rawList = (List<?>) detallesListObj; // Recibimos lista genérica
+                // Enviamos al servicio que ya sabe guardar en bloque y actualizar stock
+                return MCH.registrarVenta(leerVenta(ventaMapObj), leerDetalles(detallesListObj));
 
-                io.carpets.entidades.Venta venta = new io.carpets.entidades.Venta();
+            } catch (Exception e) {
+                Registro.error("BridgeVenta.regVenta: " + e);
+                Response error = new Response();
+                error.internal_error("Error en Bridge Java: " + e.getMessage());
+                return error;
+            }
+        });
 
-                // Mapeo seguro de la Cabecera
-                if (ventaMap.get("clienteDni") != null)
-                    venta.setClienteDni(String.valueOf(ventaMap.get("clienteDni")));
+        // Mismos argumentos que regVenta, pero devuelve la boleta (en lugar de calcMontVentCom + regVenta + genBoletaVenta)
+        Bifunc.put(checkout, (Object ventaMapObj, Object detallesListObj) -> {
+            try {
+                return MCH.checkout(leerVenta(ventaMapObj), leerDetalles(detallesListObj));
 
-                if (ventaMap.get("descripcion") != null)
-                    venta.setDescripcion(String.valueOf(ventaMap.get("descripcion")));
+            } catch (Exception e) {
+                Registro.error("BridgeVenta.checkout: " + e);
+                Response error = new Response();
+                error.internal_error("Error en Bridge Java: " + e.getMessage());
+                return error;
+            }
+        });
+    }
 
-                venta.setFecha(new java.util.Date());
-                venta.setVendedorId(1); // O el ID del usuario logueado si lo tuvieras
+    private io.carpets.entidades.Venta leerVenta(Object ventaMapObj) {
+        Map<String, Object> ventaMap = (Map<String, Object>) ventaMapObj;
+        io.carpets.entidades.Venta venta = new io.carpets.entidades.Venta();
 
-                // Mapeo seguro de la Lista de Detalles (Carrito)
-                java.util.List<io.carpets.entidades.DetalleVenta> detalles = new ArrayList<>();
+        // Mapeo seguro de la Cabecera
+        if (ventaMap.get("clienteDni") != null)
+            venta.setClienteDni(String.valueOf(ventaMap.get("clienteDni")));
 
-                for (Object itemObj : rawList) {
-                    Map<String, Object> detMap = (Map<String, Object>) itemObj;
-                    io.carpets.entidades.DetalleVenta d = new io.carpets.entidades.DetalleVenta();
+        if (ventaMap.get("descripcion") != null)
+            venta.setDescripcion(String.valueOf(ventaMap.get("descripcion")));
 
-                    // Conversión robusta de números (evita crash Integer vs Double)
-                    if (detMap.get("productoId") != null)
-                        d.setProductoId(Integer.parseInt(detMap.get("productoId").toString()));
+        // Generada por Flutter una vez por venta y repetida en cada reintento
+        if (ventaMap.get("claveIdempotencia") != null)
+            venta.setClaveIdempotencia(String.valueOf(ventaMap.get("claveIdempotencia")));
 
-                    if (detMap.get("cantidad") != null)
-                        d.setCantidad(Integer.parseInt(detMap.get("cantidad").toString()));
+        venta.setFecha(new java.util.Date());
+        venta.setVendedorId(1); // O el ID del usuario logueado si lo tuvieras
+        return venta;
+    }
 
-                    if (detMap.get("precioUnitario") != null)
-                        d.setPrecioUnitario(Double.parseDouble(detMap.get("precioUnitario").toString()));
+    private List<io.carpets.entidades.DetalleVenta> leerDetalles(Object detallesListObj) {
+        List<?> rawList = (List<?>) detallesListObj; // Recibimos lista genérica
 
-                    detalles.add(d);
-                }
+        // Mapeo seguro de la Lista de Detalles (Carrito)
+        java.util.List<io.carpets.entidades.DetalleVenta> detalles = new ArrayList<>();
 
-                // Enviamos al servicio que ya sabe guardar en bloque y actualizar stock
-                return MCH.registrarVenta(venta, detalles);
+        for (Object itemObj : rawList) {
+            Map<String, Object> detMap = (Map<String, Object>) itemObj;
+            io.carpets.entidades.DetalleVenta d = new io.carpets.entidades.DetalleVenta();
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                Response error = new Response();
-                error.internal_error("Error en Bridge Java: " + e.getMessage());
-                return error;
-            }
-        });
+            // Conversión robusta de números (evita crash Integer vs Double)
+            if (detMap.get("productoId") != null)
+                d.setProductoId(Integer.parseInt(detMap.get("productoId").toString()));
+
+            if (detMap.get("cantidad") != null)
+                d.setCantidad(Integer.parseInt(detMap.get("cantidad").toString()));
+
+            if (detMap.get("precioUnitario") != null)
+                d.setPrecioUnitario(Double.parseDouble(detMap.get("precioUnitario").toString()));
+
+            detalles.add(d);
+        }
+        return detalles;
     }
 }
\ No newline at end of file
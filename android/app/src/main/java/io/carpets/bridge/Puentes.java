@@ -0,0 +1,167 @@
+package io.carpets.bridge;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import io.carpets.flutterbridge.MethodChannelHandler;
+import io.carpets.util.Metricas;
+import io.carpets.util.Response;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Puentes compartidos por toda la aplicación y el ejecutor que atiende las llamadas de los MethodChannel.
+ *
+ * Los puentes (y el MethodChannelHandler con sus Servicios) se crean una sola vez: no guardan estado
+ * por llamada, así que pueden atender varios hilos a la vez. Sobreviven a que la Activity se recree.
+ *
+ * El ejecutor tiene hilos y cola acotados: una ráfaga de búsquedas mientras se escribe espera en la cola
+ * en lugar de abrir un hilo por tecla, y si la cola se llena la llamada se rechaza de inmediato.
+ */
+public final class Puentes {
+
+    // Menor que el máximo del pool de conexiones, para que una llamada que abre una UnidadDeTrabajo
+    // y luego pide otra conexión (p. ej. la secuencia de boletas) no se quede sin ninguna.
+    private static final int HILOS = 4;
+    private static final int COLA_MAXIMA = 32;
+    private static final long INACTIVIDAD_HILO_SEGUNDOS = 60;
+
+    private static final MethodChannelHandler MCH = new MethodChannelHandler();
+
+    private static final BridgeProducto PRODUCTO = new BridgeProducto(MCH);
+    private static final BridgeVenta VENTA = new BridgeVenta(MCH);
+    private static final BridgeCompra COMPRA = new BridgeCompra(MCH);
+    private static final BridgeMain MAIN = new BridgeMain(MCH);
+
+    private static final ThreadPoolExecutor EJECUTOR = crearEjecutor();
+
+    // Clave de métrica "bridge.<canal>.<metodo>" de cada función registrada, armada una sola vez.
+    // Los métodos que no están registrados no se miden (no crean histogramas).
+    private static final Map<String, Map<String, String>> CLAVES_METRICAS = new HashMap<>();
+
+    static {
+        registrarClaves("Productos", PRODUCTO.funciones());
+        registrarClaves("Venta", VENTA.funciones());
+        registrarClaves("Compra", COMPRA.funciones());
+        registrarClaves("Login", MAIN.funciones());
+    }
+
+    private Puentes() {
+    }
+
+    public static BridgeProducto producto() {
+        return PRODUCTO;
+    }
+
+    public static BridgeVenta venta() {
+        return VENTA;
+    }
+
+    public static BridgeCompra compra() {
+        return COMPRA;
+    }
+
+    public static BridgeMain main() {
+        return MAIN;
+    }
+
+    /**
+     * Encola una tarea en el ejecutor compartido.
+     *
+     * @param tarea Trabajo a realizar fuera del hilo principal
+     * @throws RejectedExecutionException Si la cola está llena
+     */
+    public static void ejecutar(Runnable tarea) {
+        EJECUTOR.execute(tarea);
+    }
+
+    /**
+     * Atiende una llamada de Flutter en el ejecutor compartido (no en el hilo principal) y entrega la
+     * respuesta de vuelta en el hilo principal. La usan los MethodCallHandler de todas las Activity.
+     *
+     * @param codigoError Código con el que Flutter recibe una excepción del puente (p. ej. "ERROR_VENTA")
+     * @param hiloPrincipal Entrega en el hilo principal (p. ej. Activity::runOnUiThread)
+     */
+    @SuppressWarnings("unchecked")
+    public static void atender(MethodCall call, MethodChannel.Result result, String canal,
+                               BiFunction<String, List<Object>, Object> puente, String codigoError,
+                               Executor hiloPrincipal) {
+        try {
+            ejecutar(() -> {
+                try {
+                    // Hacemos el trabajo pesado (Base de Datos); una llamada sin argumentos recibe una lista vacía
+                    List<Object> argumentos = call.arguments != null
+                            ? (List<Object>) call.arguments
+                            : new ArrayList<>();
+                    Object respuesta = despachar(canal, puente, call.method, argumentos);
+
+                    // Volvemos al hilo principal SOLO para entregar la respuesta a Flutter
+                    hiloPrincipal.execute(() -> result.success(respuesta));
+                } catch (Exception e) {
+                    hiloPrincipal.execute(() -> result.error(codigoError, "Puentes: Error en " + call.method + ": " + e.getMessage(), null));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Cola llena: se avisa en el acto en lugar de acumular trabajo
+            result.error("OCUPADO", "Puentes: Demasiadas operaciones pendientes, intente de nuevo.", null);
+        }
+    }
+
+    /**
+     * Ejecuta una llamada del MethodChannel en el puente indicado y, si el método está registrado,
+     * registra su latencia como "bridge.<canal>.<metodo>". Se cuenta como error una excepción o una respuesta sin status "ok".
+     */
+    public static Object despachar(String canal, BiFunction<String, List<Object>, Object> puente,
+                                   String metodo, List<Object> argumentos) {
+        Map<String, String> claves = CLAVES_METRICAS.get(canal);
+        String clave = claves != null && metodo != null ? claves.get(metodo) : null;
+        if (clave == null) {
+            return puente.apply(metodo, argumentos);
+        }
+
+        long inicio = System.nanoTime();
+        boolean error = true;
+        try {
+            Object respuesta = puente.apply(metodo, argumentos);
+            error = respuesta instanceof Map && !Response.EXITO.equals(((Map<?, ?>) respuesta).get("status"));
+            return respuesta;
+        } finally {
+            Metricas.registrar(clave, inicio, error);
+        }
+    }
+
+    private static void registrarClaves(String canal, Set<String> metodos) {
+        Map<String, String> claves = new HashMap<>();
+        for (String metodo : metodos) {
+            claves.put(metodo, "bridge." + canal + "." + metodo);
+        }
+        CLAVES_METRICAS.put(canal, claves);
+    }
+
+    private static ThreadPoolExecutor crearEjecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor ejecutor = new ThreadPoolExecutor(
+                HILOS, HILOS,
+                INACTIVIDAD_HILO_SEGUNDOS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(COLA_MAXIMA),
+                r -> {
+                    Thread t = new Thread(r, "puente-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // Sin actividad los hilos se liberan; se vuelven a crear con la siguiente llamada.
+        ejecutor.allowCoreThreadTimeOut(true);
+        return ejecutor;
+    }
+}
@@ -11,6 +11,9 @@ public class Compra {
 
     private Date fecha;
 
+    // Generada por el cliente: un reintento con la misma clave no crea otra compra
+    private String claveIdempotencia;
+
     public Compra() {}
 
     public Compra(int id, String descripcion, double monto) {
@@ -47,10 +50,16 @@ public class Compra {
 
     public void setFecha(Date fecha) { this.fecha = fecha; }
 
+    public String getClaveIdempotencia() { return claveIdempotencia; }
+
+    public void setClaveIdempotencia(String claveIdempotencia) { this.claveIdempotencia = claveIdempotencia; }
+
     public static Compra CompraFromMap(Map<String, Object> compraMap){
         Compra compra = new Compra();
         if (compraMap.get("descripcion") != null)
             compra.setDescripcion((String) compraMap.get("descripcion"));
+        if (compraMap.get("claveIdempotencia") != null)
+            compra.setClaveIdempotencia(compraMap.get("claveIdempotencia").toString());
         return compra;
     }
 
@@ -7,6 +7,9 @@ public class DetalleVenta {
     private double subtotal;
     private int ventaId;
     private int productoId;
+    // Precio de compra del producto al momento de la venta. registrarVenta lo toma de los productos que ya
+    // leyó; solo si llega en 0 lo copia la base de datos del producto al guardar el detalle
+    private double costoUnitario;
 
     public DetalleVenta() {}
 
@@ -66,4 +69,12 @@ public class DetalleVenta {
     public void setProductoId(int productoId) {
         this.productoId = productoId;
     }
-}
\ No newline at end of file
+
+    public double getCostoUnitario() {
+        return costoUnitario;
+    }
+
+    public void setCostoUnitario(double costoUnitario) {
+        this.costoUnitario = costoUnitario;
+    }
+}
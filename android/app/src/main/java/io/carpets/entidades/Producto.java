@@ -13,6 +13,9 @@ public class Producto {
     private String categoriaNombre = null;
     private String imagePath = null;
     private Double precioOferta;
+    private long version = 0; // Versión de cambio (la asigna la base de datos en cada escritura)
+    private String codigo = null; // Código de barras / SKU, único (null si no tiene)
+    private boolean conservarCodigo = false; // Solo para update: el cliente no envió el código, se deja el actual
 
     public Producto() {}
 
@@ -25,7 +28,7 @@ public class Producto {
         this.precioVenta = precioVenta;
         this.cantidad = cantidad;
         this.categoriaNombre = categoriaNombre;
-
+        setCodigo(codigo);
     }
 
     public int getId() {
@@ -87,6 +90,15 @@ public class Producto {
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
     public Double getPrecioOferta() { return precioOferta; }
     public void setPrecioOferta(Double precioOferta) { this.precioOferta = precioOferta; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public String getCodigo() { return codigo; }
+    // Un código vacío se guarda como null (sin código)
+    public void setCodigo(String codigo) {
+        this.codigo = codigo == null || codigo.trim().isEmpty() ? null : codigo.trim();
+    }
+    public boolean isConservarCodigo() { return conservarCodigo; }
+    public void setConservarCodigo(boolean conservarCodigo) { this.conservarCodigo = conservarCodigo; }
 
 
 
@@ -16,6 +16,9 @@ public class Venta {
     private double igvAplicado;
     private double totalFinal;
 
+    // Generada por el cliente: un reenvío con la misma clave no crea otra venta
+    private String claveIdempotencia;
+
     public Venta() {}
 
     public Venta(int id, Date fecha, double monto, String descripcion, int vendedorId, String numeroBoleta) {
@@ -57,4 +60,12 @@ public class Venta {
     public void setClienteDni(String clienteDni) {
         this.clienteDni = clienteDni;
     }
+
+    public String getClaveIdempotencia() {
+        return claveIdempotencia;
+    }
+
+    public void setClaveIdempotencia(String claveIdempotencia) {
+        this.claveIdempotencia = claveIdempotencia;
+    }
 }
\ No newline at end of file
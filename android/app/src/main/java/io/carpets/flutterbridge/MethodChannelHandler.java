@@ -5,23 +5,29 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.repositories.implementacion.ProductoRepositoryCache;
 import io.carpets.DTOs.BoletaVentaDTO;
+import io.carpets.DTOs.CambiosCatalogoDTO;
 import io.carpets.DTOs.CompraCompletaDTO;
 import io.carpets.DTOs.DetalleCompraDTO;
 import io.carpets.DTOs.DetalleVentaDTO;
 import io.carpets.DTOs.MontosCalculados;
+import io.carpets.DTOs.ProductoEscaneadoDTO;
 import io.carpets.DTOs.VentaCompletaDTO;
 import io.carpets.entidades.Compra;
 import io.carpets.entidades.DetalleCompra;
 import io.carpets.entidades.DetalleVenta;
 import io.carpets.entidades.Producto;
 import io.carpets.entidades.Venta;
+import io.carpets.local.AlmacenLocal;
 import io.carpets.servicios.ServicioCompra;
 import io.carpets.servicios.ServicioProducto;
 import io.carpets.servicios.ServicioUsuario;
@@ -30,6 +36,9 @@ import io.carpets.servicios.implementacion.ServicioCompraImplementacion;
 import io.carpets.servicios.implementacion.ServicioProductoImplementacion;
 import io.carpets.servicios.implementacion.ServicioUsuarioImplementacion;
 import io.carpets.servicios.implementacion.ServicioVentaImplementacion;
+import io.carpets.servicios.implementacion.ServicioVentaSinConexion;
+import io.carpets.util.Metricas;
+import io.carpets.util.Registro;
 import io.carpets.util.Response;
 
 /**
@@ -46,10 +55,27 @@ public class MethodChannelHandler {
     // ========================================================================
     // SERVICIOS
     // ========================================================================
-    private final ServicioUsuario usuarioService = new ServicioUsuarioImplementacion();
-    private final ServicioProducto productoService = new ServicioProductoImplementacion();
-    private final ServicioVenta ventaService = new ServicioVentaImplementacion();
-    private final ServicioCompra compraService = new ServicioCompraImplementacion();
+    // Instrumentados: cada método registra su latencia en Metricas como "servicio.<area>.<metodo>"
+    private final ServicioUsuario usuarioService =
+            Metricas.instrumentar(ServicioUsuario.class, new ServicioUsuarioImplementacion(), "servicio.usuario");
+    private final ServicioProducto productoService =
+            Metricas.instrumentar(ServicioProducto.class, new ServicioProductoImplementacion(), "servicio.producto");
+    private final ServicioVenta ventaService =
+            Metricas.instrumentar(ServicioVenta.class, crearServicioVenta(), "servicio.venta");
+    private final ServicioCompra compraService =
+            Metricas.instrumentar(ServicioCompra.class, new ServicioCompraImplementacion(), "servicio.compra");
+
+    // Orden de las columnas en productosAColumnas (mismos nombres que productoToMap)
+    private static final List<String> COLUMNAS_PRODUCTO = Collections.unmodifiableList(Arrays.asList(
+            "id", "nombre", "precioCompra", "precioVenta", "cantidad", "categoriaNombre", "imagen", "precioOferta", "version", "codigo"));
+
+    /**
+     * Una vez abierto el AlmacenLocal (en segundo plano, al iniciar), las ventas siguen registrándose
+     * en el equipo cuando no hay conexión; antes de eso van directo a la base de datos.
+     */
+    private static ServicioVenta crearServicioVenta() {
+        return new ServicioVentaSinConexion(new ServicioVentaImplementacion(), AlmacenLocal::instancia);
+    }
 
     // ========================================================================
     // SECCIÓN 1: AUTENTICACIÓN (LOGIN)
@@ -72,6 +98,49 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Resumen de diagnóstico: latencias por operación (Metricas), estado del pool de conexiones,
+     * aciertos de la caché de productos, mensajes de registro descartados y ventas guardadas en el equipo.
+     *
+     * @return Response<Map> con "metricas", "pool", "cacheProductos", "registroDescartados" y "almacenLocal"
+     */
+    public Response<Map<String, Object>> obtenerDiagnostico() {
+        Response<Map<String, Object>> response = new Response<>();
+
+        Map<String, Object> pool = new HashMap<>();
+        pool.put("totales", ConfiguracionBaseDatos.getConexionesTotales());
+        pool.put("libres", ConfiguracionBaseDatos.getConexionesLibres());
+
+        ProductoRepositoryCache cache = ProductoRepositoryCache.instancia();
+        Map<String, Object> cacheProductos = new HashMap<>();
+        cacheProductos.put("aciertos", cache.getAciertos());
+        cacheProductos.put("fallos", cache.getFallos());
+        cacheProductos.put("descartes", cache.getDescartes());
+        cacheProductos.put("tamano", cache.getTamano());
+        cacheProductos.put("lecturasCompartidas", cache.getLecturasCompartidas());
+        cacheProductos.put("indexados", cache.getProductosIndexados());
+
+        Map<String, Object> diagnostico = new HashMap<>();
+        diagnostico.put("metricas", Metricas.resumen());
+        diagnostico.put("pool", pool);
+        diagnostico.put("cacheProductos", cacheProductos);
+        diagnostico.put("registroDescartados", Registro.getDescartados());
+
+        AlmacenLocal almacen = AlmacenLocal.instancia();
+        if (almacen != null) {
+            Map<String, Object> local = new HashMap<>();
+            local.put("sinConexion", almacen.isSinConexion());
+            local.put("ventasPendientes", almacen.getPendientes());
+            local.put("ventasRechazadas", almacen.getRechazadas());
+            local.put("productos", almacen.getProductos());
+            local.put("versionCatalogo", almacen.getVersionCatalogo());
+            diagnostico.put("almacenLocal", local);
+        }
+
+        response.exito(diagnostico);
+        return response;
+    }
+
     // ========================================================================
     // SECCIÓN 2: GESTIÓN DE PRODUCTOS
     // ========================================================================
@@ -99,6 +168,97 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Sincronización incremental del catálogo: solo lo que cambió desde el token del cliente.
+     *
+     * @param version Token de la última sincronización (0 para traer todo el catálogo)
+     * @return Response<Map> con "cambiados" (productos en formato Map), "eliminados" (ids)
+     *         y "version" (token a enviar en la siguiente sincronización)
+     */
+    public Response<Map<String, Object>> obtenerCambiosCatalogo(long version) {
+        Response<CambiosCatalogoDTO> request = productoService.obtenerCambiosDesde(version);
+        Response<Map<String, Object>> response = new Response<>();
+
+        if (!request.isOk()) {
+            response.message_error("Error al sincronizar productos. Verifique su conexión a internet.");
+            return response;
+        }
+
+        CambiosCatalogoDTO cambios = request.getContent();
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("cambiados", cambios.getCambiados().stream()
+                .map(this::productoToMap)
+                .collect(Collectors.toList()));
+        resultado.put("eliminados", cambios.getEliminados());
+        resultado.put("version", cambios.getVersion());
+
+        response.exito(resultado);
+        return response;
+    }
+
+    /**
+     * Igual que obtenerProductos(), pero en formato columnar (ver productosAColumnas).
+     *
+     * @return Response<Map> con "columnas", "filas" y "valores"
+     */
+    public Response<Map<String, Object>> obtenerProductosColumnar() {
+        Response<List<Producto>> request = productoService.obtenerTodos();
+        Response<Map<String, Object>> response = new Response<>();
+
+        if (!request.isOk()) {
+            response.message_error("Error al obtener productos. Verifique su conexión a internet.");
+            return response;
+        }
+
+        response.exito(productosAColumnas(request.getContent()));
+        return response;
+    }
+
+    /**
+     * Obtiene una página del catálogo (paginación por clave), para que la grilla de Flutter
+     * cargue solo la ventana visible.
+     *
+     * @param afterNombre Nombre del último producto recibido (null para la primera página)
+     * @param afterId ID del último producto recibido
+     * @param limit Tamaño de la página
+     * @return Response<Map> con "items", "hasMore" y el cursor "nextNombre"/"nextId" para la siguiente página
+     */
+    public Response<Map<String, Object>> obtenerProductosPagina(String afterNombre, int afterId, int limit) {
+        Response<Map<String, Object>> response = new Response<>();
+
+        // Se acota aquí para que el producto extra no se pierda en el tope del servicio
+        limit = Math.max(1, Math.min(limit, ServicioProducto.TAMANO_PAGINA_MAXIMO));
+
+        // Se pide un producto extra para saber si existe una página siguiente
+        Response<List<Producto>> request = productoService.obtenerPagina(afterNombre, afterId, limit + 1);
+
+        if (!request.isOk()) {
+            response.message_error("Error al obtener productos. Verifique su conexión a internet.");
+            return response;
+        }
+
+        List<Producto> productos = request.getContent();
+        boolean hasMore = productos.size() > limit;
+        if (hasMore) {
+            productos = productos.subList(0, limit);
+        }
+
+        Map<String, Object> pagina = new HashMap<>();
+        pagina.put("items", productos.stream()
+                .map(this::productoToMap)
+                .collect(Collectors.toList()));
+        pagina.put("hasMore", hasMore);
+
+        if (!productos.isEmpty()) {
+            Producto ultimo = productos.get(productos.size() - 1);
+            pagina.put("nextNombre", ultimo.getNombre());
+            pagina.put("nextId", ultimo.getId());
+        }
+
+        response.exito(pagina);
+        return response;
+    }
+
     /**
      * Convierte un objeto Producto a Map para que Flutter lo pueda interpretar.
      *
@@ -116,19 +276,66 @@ public class MethodChannelHandler {
         map.put("categoriaNombre", p.getCategoriaNombre());
         map.put("imagen", p.getImagePath()); // Flutter espera "imagen"
         map.put("precioOferta", p.getPrecioOferta());
+        map.put("version", p.getVersion());
+        map.put("codigo", p.getCodigo());
         return map;
     }
 
+    /**
+     * Convierte una lista de productos a formato columnar: los nombres de las columnas van una sola vez
+     * y cada columna es un arreglo con un valor por producto, en el mismo orden.
+     * Los números viajan como int[]/long[]/double[] (Int32List/Int64List/Float64List en Dart), no como un objeto por celda.
+     *
+     * "precioOferta" usa NaN para los productos sin oferta. No se repite "stock" (es igual a "cantidad").
+     *
+     * @param productos Productos a convertir
+     * @return Map con "columnas" (List<String>), "filas" (int) y "valores" (List con un arreglo por columna)
+     */
+    private Map<String, Object> productosAColumnas(List<Producto> productos) {
+        int n = productos.size();
+        int[] ids = new int[n];
+        List<String> nombres = new ArrayList<>(n);
+        double[] preciosCompra = new double[n];
+        double[] preciosVenta = new double[n];
+        int[] cantidades = new int[n];
+        List<String> categorias = new ArrayList<>(n);
+        List<String> imagenes = new ArrayList<>(n);
+        double[] preciosOferta = new double[n];
+        long[] versiones = new long[n];
+        List<String> codigos = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++) {
+            Producto p = productos.get(i);
+            ids[i] = p.getId();
+            nombres.add(p.getNombre());
+            preciosCompra[i] = p.getPrecioCompra();
+            preciosVenta[i] = p.getPrecioVenta();
+            cantidades[i] = p.getCantidad();
+            categorias.add(p.getCategoriaNombre());
+            imagenes.add(p.getImagePath());
+            preciosOferta[i] = p.getPrecioOferta() != null ? p.getPrecioOferta() : Double.NaN;
+            versiones[i] = p.getVersion();
+            codigos.add(p.getCodigo());
+        }
+
+        Map<String, Object> tabla = new HashMap<>();
+        tabla.put("columnas", COLUMNAS_PRODUCTO);
+        tabla.put("filas", n);
+        tabla.put("valores", Arrays.asList(ids, nombres, preciosCompra, preciosVenta,
+                cantidades, categorias, imagenes, preciosOferta, versiones, codigos));
+        return tabla;
+    }
+
     /**
      * Agrega un nuevo producto al inventario.
      *
      * @param producto Producto a agregar
-     * @return Response indicando éxito o error
+     * @return Response indicando éxito, error o conflicto (código repetido)
      */
     public Response agregarProducto(Producto producto) {
         Response response = productoService.agregarProducto(producto);
 
-        if (!response.isOk()) {
+        if (!response.isOk() && !response.isConflicto()) {
             response.message_error("Error al agregar producto. Verifique que los datos sean válidos.");
         }
 
@@ -138,13 +345,14 @@ public class MethodChannelHandler {
     /**
      * Actualiza un producto existente en el inventario.
      *
-     * @param producto Producto con los datos actualizados
-     * @return Response indicando éxito o error
+     * @param producto Producto con los datos actualizados y la versión con la que se leyó
+     * @return Response indicando éxito, error o conflicto (status "conflict")
      */
     public Response actualizarProducto(Producto producto) {
         Response response = productoService.actualizarInventario(producto);
 
-        if (!response.isOk()) {
+        // El conflicto ya trae su propio mensaje: Flutter debe recargar el producto
+        if (!response.isOk() && !response.isConflicto()) {
             response.message_error("Error al actualizar producto. Verifique los datos y su conexión.");
         }
 
@@ -167,6 +375,29 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Resuelve un código escaneado (código de barras / SKU) en un solo paso, sin interpretar el texto.
+     *
+     * @param codigo Código leído por el escáner
+     * @return Response<Map> con el producto, o error si ningún producto tiene ese código
+     */
+    public Response<Map<String, Object>> buscarProductoPorCodigo(String codigo) {
+        Response<Producto> request = productoService.obtenerPorCodigo(codigo);
+        Response<Map<String, Object>> response = new Response<>();
+
+        if (!request.isOk()) {
+            response.message_error("Error al buscar el código. Verifique su conexión a internet.");
+            return response;
+        }
+        if (request.getContent() == null) {
+            response.message_error("No existe un producto con el código " + codigo + ".");
+            return response;
+        }
+
+        response.exito(productoToMap(request.getContent()));
+        return response;
+    }
+
     /**
      * Busca productos según un criterio y tipo de búsqueda.
      *
@@ -192,6 +423,26 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Igual que buscarProductos(), pero en formato columnar (ver productosAColumnas).
+     *
+     * @param criterio Texto a buscar
+     * @param tipo Tipo de búsqueda (nombre, categoria, etc.)
+     * @return Response<Map> con "columnas", "filas" y "valores"
+     */
+    public Response<Map<String, Object>> buscarProductosColumnar(String criterio, String tipo) {
+        Response<List<Producto>> request = productoService.buscarProductos(criterio, tipo);
+        Response<Map<String, Object>> response = new Response<>();
+
+        if (!request.isOk()) {
+            response.message_error("Error al buscar productos. Verifique su conexión a internet.");
+            return response;
+        }
+
+        response.exito(productosAColumnas(request.getContent()));
+        return response;
+    }
+
     /**
      * Obtiene la ganancia total de todos los productos.
      *
@@ -207,6 +458,22 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Obtiene la ganancia acumulada de un producto.
+     *
+     * @param productoId ID del producto
+     * @return Response<Double> con la ganancia del producto (0 si aún no tiene ventas)
+     */
+    public Response<Double> getGananciaProducto(int productoId) {
+        Response<Double> response = productoService.getGananciaProducto(productoId);
+
+        if (!response.isOk()) {
+            response.message_error("Error al obtener la ganancia del producto. Revise su conexión a internet.");
+        }
+
+        return response;
+    }
+
     // ========================================================================
     // SECCIÓN 3: GESTIÓN DE VENTAS
     // ========================================================================
@@ -299,6 +566,44 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Resuelve una ráfaga de escaneos (IDs o códigos) en una sola llamada, en lugar de una por producto.
+     *
+     * @param entradas Lista con lo escaneado, en orden
+     * @return Response<List<Map>> con un resultado por entrada: entrada, encontrado, producto,
+     *         cantidadEscaneada y stockSuficiente
+     */
+    public Response<List<Map<String, Object>>> resolverEscaneos(List<?> entradas) {
+        Response<List<Map<String, Object>>> response = new Response<>();
+
+        List<String> textos = new ArrayList<>();
+        if (entradas != null) {
+            for (Object e : entradas) {
+                textos.add(e != null ? String.valueOf(e) : "");
+            }
+        }
+
+        Response<List<ProductoEscaneadoDTO>> request = ventaService.resolverEscaneos(textos);
+        if (!request.isOk()) {
+            response.message_error("Error al buscar los productos escaneados. Verifique su conexión a internet.");
+            return response;
+        }
+
+        List<Map<String, Object>> resultado = new ArrayList<>();
+        for (ProductoEscaneadoDTO e : request.getContent()) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("entrada", e.getEntrada());
+            m.put("encontrado", e.getProducto() != null);
+            m.put("producto", e.getProducto() != null ? productoToMap(e.getProducto()) : null);
+            m.put("cantidadEscaneada", e.getCantidadEscaneada());
+            m.put("stockSuficiente", e.isStockSuficiente());
+            resultado.add(m);
+        }
+
+        response.exito(resultado);
+        return response;
+    }
+
     /**
      * Lista todas las ventas con sus detalles.
      *
@@ -366,6 +671,51 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Cobra la venta en una sola llamada: reemplaza a calcularMontosVentaCompleta, registrarVenta y
+     * generarBoleta, que leían tres veces la misma venta, cliente, vendedor y productos.
+     *
+     * @param venta Objeto Venta con los datos de cabecera
+     * @param detalles Lista de DetalleVenta
+     * @return Response<Map> con la boleta (provisional = true si se guardó en el equipo sin conexión)
+     */
+    public Response<Map<String, Object>> checkout(Venta venta, List<DetalleVenta> detalles) {
+        Response<Map<String, Object>> response = new Response<>();
+
+        try {
+            BoletaVentaDTO boleta = ventaService.checkout(venta, detalles);
+            Venta v = boleta.getVenta();
+
+            Map<String, Object> resultado = new HashMap<>();
+            resultado.put("id", v.getId());
+            resultado.put("provisional", v.getId() < 0);
+            resultado.put("numeroBoleta", v.getNumeroBoleta() != null ? v.getNumeroBoleta() : "");
+            resultado.put("fecha", v.getFecha() != null ? v.getFecha().getTime() : System.currentTimeMillis());
+            resultado.put("clienteDni", v.getClienteDni());
+            resultado.put("clienteNombre", boleta.getCliente() != null ? boleta.getCliente().getNombre() : "");
+            resultado.put("vendedor", boleta.getVendedor() != null ? boleta.getVendedor().getNombre() : "");
+            resultado.put("subtotal", boleta.getSubtotal());
+            resultado.put("igv", boleta.getIgv());
+            resultado.put("total", boleta.getTotal());
+
+            List<Map<String, Object>> detallesMap = new ArrayList<>();
+            for (DetalleVenta d : boleta.getDetalles()) {
+                Map<String, Object> detMap = new HashMap<>();
+                detMap.put("productoId", d.getProductoId());
+                detMap.put("cantidad", d.getCantidad());
+                detMap.put("precioUnitario", d.getPrecioUnitario());
+                detallesMap.add(detMap);
+            }
+            resultado.put("detalles", detallesMap);
+
+            response.exito(resultado);
+        } catch (Exception e) {
+            response.internal_error("MCH.checkout: " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Elimina una venta del sistema.
      *
@@ -382,6 +732,36 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Totales por día de los últimos 30 días con ventas (lee el resumen diario, no recorre las ventas).
+     *
+     * @return Response<List<Map>> con "fecha", "totalVendido", "cantidadVentas", "igv" y "ganancia"
+     */
+    public Response<List<Map<String, Object>>> obtenerReporteDiario() {
+        Response<List<Map<String, Object>>> response = ventaService.obtenerReporteDiario();
+
+        if (!response.isOk()) {
+            response.message_error("Error al obtener el reporte diario. Verifique su conexión.");
+        }
+
+        return response;
+    }
+
+    /**
+     * Recalcula el resumen diario desde el historial de ventas.
+     *
+     * @return Response<Integer> con la cantidad de días recalculados
+     */
+    public Response<Integer> reconstruirResumenDiario() {
+        Response<Integer> response = ventaService.reconstruirResumenDiario();
+
+        if (!response.isOk()) {
+            response.message_error("Error al reconstruir el resumen diario. Verifique su conexión.");
+        }
+
+        return response;
+    }
+
     // ========================================================================
     // SECCIÓN 4: GESTIÓN DE COMPRAS
     // ========================================================================
@@ -418,8 +798,31 @@ public class MethodChannelHandler {
                 detalles.add(DetalleCompra.DetCompraFromMap(detMap));
             }
 
+            return registrarCompra(compra, detalles);
+
+        } catch (ClassCastException e) {
+            response.internal_error("MCH.registrarCompra: Error de conversión de tipos - " + e.getMessage());
+        } catch (Exception e) {
+            response.internal_error("MCH.registrarCompra: " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Registra una compra ya convertida a entidades (la usa BridgeCompra).
+     * Si la compra trae clave de idempotencia, un reintento responde con éxito sin duplicarla.
+     *
+     * @param compra Cabecera de la compra
+     * @param detalles Detalles de la compra
+     * @return Response indicando éxito o error
+     */
+    public Response registrarCompra(Compra compra, List<DetalleCompra> detalles) {
+        Response response = new Response();
+
+        try {
             // Validación de negocio
-            if (detalles.isEmpty()) {
+            if (detalles == null || detalles.isEmpty()) {
                 response.message_error("La compra debe tener al menos un detalle");
                 return response;
             }
@@ -434,8 +837,6 @@ public class MethodChannelHandler {
 
             response.exito();
 
-        } catch (ClassCastException e) {
-            response.internal_error("MCH.registrarCompra: Error de conversión de tipos - " + e.getMessage());
         } catch (Exception e) {
             response.internal_error("MCH.registrarCompra: " + e.getMessage());
         }
@@ -458,6 +859,23 @@ public class MethodChannelHandler {
         return response;
     }
 
+    /**
+     * Lista una página de compras (más recientes primero).
+     *
+     * @param beforeId ID de la última compra recibida (<= 0 para la primera página)
+     * @param limit Tamaño de la página
+     * @return Response<List<Map>> con las compras de la página (vacía si no hay más)
+     */
+    public Response<List<Map<String, Object>>> listarComprasPagina(int beforeId, int limit) {
+        Response<List<Map<String, Object>>> response = compraService.listarCompras(beforeId, limit);
+
+        if (!response.isOk()) {
+            response.message_error("Error al listar compras. Revise su conexión.");
+        }
+
+        return response;
+    }
+
     /**
      * Modifica la descripción de una compra existente.
      *
@@ -558,14 +976,39 @@ public class MethodChannelHandler {
     // ========================================================================
 
     /**
-     * Obtiene ventas filtradas por fecha.
+     * Obtiene las ventas de un día. El filtro por fecha se resuelve en la base de datos.
      *
-     * @param fecha Fecha en formato String
-     * @return Response<Map> con las ventas del día (implementación pendiente)
+     * @param fecha Fecha en formato yyyy-MM-dd
+     * @return Response<List<Map>> con las ventas del día
      */
-    public Response<Map<String, Object>> obtenerVentasPorDia(String fecha) {
-        Response<Map<String, Object>> response = new Response<>();
-        response.internal_error("MCH.obtenerVentasPorDia: Método no implementado aún");
+    public Response<List<Map<String, Object>>> obtenerVentasPorDia(String fecha) {
+        Response<List<Map<String, Object>>> response = new Response<>();
+
+        if (fecha == null || fecha.trim().isEmpty()) {
+            response.message_error("Debe indicar una fecha (yyyy-MM-dd).");
+            return response;
+        }
+
+        try {
+            List<Venta> ventas = ventaService.obtenerVentasPorDia(fecha);
+            List<Map<String, Object>> ventasMap = new ArrayList<>();
+
+            for (Venta v : ventas) {
+                Map<String, Object> m = new HashMap<>();
+                m.put("id", v.getId());
+                m.put("numeroBoleta", v.getNumeroBoleta());
+                m.put("monto", v.getMonto());
+                m.put("fecha", v.getFecha() != null ? v.getFecha().toString() : "");
+                m.put("descripcion", v.getDescripcion());
+                m.put("vendedorId", v.getVendedorId());
+                ventasMap.add(m);
+            }
+
+            response.exito(ventasMap);
+        } catch (Exception e) {
+            response.internal_error("MCH.obtenerVentasPorDia: " + e.getMessage());
+        }
+
         return response;
     }
 }
\ No newline at end of file
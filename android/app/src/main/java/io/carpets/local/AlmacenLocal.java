@@ -0,0 +1,619 @@
+package io.carpets.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.carpets.Configuracion.VentaRechazadaException;
+import io.carpets.DTOs.CambiosCatalogoDTO;
+import io.carpets.entidades.DetalleVenta;
+import io.carpets.entidades.Producto;
+import io.carpets.entidades.Venta;
+import io.carpets.util.Registro;
+
+/**
+ * Almacén local del equipo para seguir vendiendo cuando la base de datos no responde.
+ *
+ * - Catálogo: copia de los productos (catalogo.dat), actualizada con la sincronización incremental
+ *   (ProductoRepository.findChangedSince). Se reescribe completa en un archivo temporal que luego se renombra.
+ * - Ventas pendientes: bitácora durable de solo-agregar (ventas.diario). Cada venta se fuerza a disco antes
+ *   de responder a la caja; ReplicadorVentas las reenvía en orden y registra si se confirmaron o se rechazaron.
+ *
+ * El stock disponible sin conexión es el del catálogo menos lo vendido en ventas pendientes (se lleva
+ * por producto en 'reservadas', sin recorrer las ventas). Los códigos se resuelven con un HashMap.
+ * Solo usa archivos y java.io, así que funciona igual en el equipo que en la JVM.
+ */
+public final class AlmacenLocal {
+
+    private static final String ARCHIVO_CATALOGO = "catalogo.dat";
+    private static final String ARCHIVO_VENTAS = "ventas.diario";
+
+    // Tipos de registro de la bitácora de ventas
+    private static final byte VENTA = 1;
+    private static final byte CONFIRMADA = 2;
+    private static final byte RECHAZADA = 3;
+
+    // 2: se agregó el código del producto (un catálogo en formato 1 se vuelve a sincronizar desde cero)
+    private static final int FORMATO_CATALOGO = 2;
+
+    private static volatile AlmacenLocal instancia;
+
+    private final DiarioLocal archivoCatalogo;
+    private final DiarioLocal diarioVentas;
+
+    private final Map<Integer, Producto> catalogo = new HashMap<>();
+    private final Map<String, Integer> idPorCodigo = new HashMap<>();
+    // Unidades de cada producto en ventas pendientes de reenviar
+    private final Map<Integer, Integer> reservadas = new HashMap<>();
+    private long versionCatalogo = 0;
+    private boolean catalogoCargado = false;
+
+    // Por clave, en el orden en que se registraron
+    private final LinkedHashMap<String, VentaPendiente> pendientes = new LinkedHashMap<>();
+    private final LinkedHashMap<String, VentaPendiente> rechazadas = new LinkedHashMap<>();
+    private int confirmadasSinCompactar = 0;
+    private int siguienteIdLocal = -1;
+
+    private volatile boolean sinConexion = false;
+
+    /**
+     * Abre (o crea) el almacén de la aplicación. Lee y verifica todos sus archivos, así que debe llamarse
+     * fuera del hilo principal; hasta que termine, instancia() devuelve null.
+     *
+     * @param directorio Carpeta privada de la aplicación (p. ej. Context.getFilesDir())
+     * @return El almacén compartido
+     * @throws IOException Si no se pudieron leer los archivos
+     */
+    public static synchronized AlmacenLocal inicializar(File directorio) throws IOException {
+        if (instancia == null) {
+            instancia = new AlmacenLocal(directorio);
+        }
+        return instancia;
+    }
+
+    /**
+     * @return El almacén compartido, o null si no se inicializó (sin modo sin conexión).
+     */
+    public static AlmacenLocal instancia() {
+        return instancia;
+    }
+
+    public AlmacenLocal(File directorio) throws IOException {
+        if (!directorio.isDirectory() && !directorio.mkdirs()) {
+            throw new IOException("AlmacenLocal: No se pudo crear " + directorio);
+        }
+        this.archivoCatalogo = new DiarioLocal(new File(directorio, ARCHIVO_CATALOGO));
+        this.diarioVentas = new DiarioLocal(new File(directorio, ARCHIVO_VENTAS));
+        cargarCatalogo();
+        cargarVentas();
+    }
+
+    // ========================================================================
+    // ESTADO DE LA CONEXIÓN
+    // ========================================================================
+
+    /**
+     * @return true si la última operación no llegó a la base de datos y aún no se recuperó la conexión.
+     */
+    public boolean isSinConexion() {
+        return sinConexion;
+    }
+
+    public void marcarSinConexion() {
+        if (!sinConexion) {
+            Registro.advertencia("AlmacenLocal: Sin conexión, las ventas se guardarán en el equipo");
+        }
+        sinConexion = true;
+    }
+
+    /**
+     * Vuelve al modo en línea solo si no quedan ventas por reenviar: mientras haya pendientes,
+     * el stock de la base de datos todavía no las descuenta.
+     *
+     * @return true si quedó en línea
+     */
+    public synchronized boolean marcarEnLineaSiNoHayPendientes() {
+        if (!pendientes.isEmpty()) {
+            return false;
+        }
+        if (sinConexion) {
+            Registro.info("AlmacenLocal: Conexión recuperada");
+        }
+        sinConexion = false;
+        return true;
+    }
+
+    // ========================================================================
+    // CATÁLOGO
+    // ========================================================================
+
+    /**
+     * @return true si ya se copió el catálogo completo alguna vez (en esta ejecución o en una anterior).
+     */
+    public synchronized boolean isCatalogoCargado() {
+        return catalogoCargado;
+    }
+
+    /**
+     * @return Versión del catálogo local (token para findChangedSince).
+     */
+    public synchronized long getVersionCatalogo() {
+        return versionCatalogo;
+    }
+
+    /**
+     * Reemplaza todo el catálogo (primera sincronización).
+     */
+    public synchronized void reemplazarCatalogo(List<Producto> productos, long version) {
+        catalogo.clear();
+        idPorCodigo.clear();
+        for (Producto p : productos) {
+            poner(copiar(p));
+        }
+        versionCatalogo = version;
+        catalogoCargado = true;
+        guardarCatalogo();
+    }
+
+    /**
+     * Aplica una sincronización incremental. No hace nada si no hubo cambios.
+     */
+    public synchronized void aplicarCambios(CambiosCatalogoDTO cambios) {
+        if (cambios.getCambiados().isEmpty() && cambios.getEliminados().isEmpty()
+                && cambios.getVersion() == versionCatalogo) {
+            return;
+        }
+        for (Producto p : cambios.getCambiados()) {
+            poner(copiar(p));
+        }
+        for (Integer id : cambios.getEliminados()) {
+            quitar(id);
+        }
+        versionCatalogo = Math.max(versionCatalogo, cambios.getVersion());
+        guardarCatalogo();
+    }
+
+    /**
+     * @return Copia del producto con 'cantidad' igual al stock disponible en el equipo, o null si no está.
+     */
+    public synchronized Producto buscarProducto(int id) {
+        Producto p = catalogo.get(id);
+        if (p == null) {
+            return null;
+        }
+        Producto copia = copiar(p);
+        copia.setCantidad(stockDisponible(id));
+        return copia;
+    }
+
+    /**
+     * @return Copia del producto con ese código (con el stock disponible en el equipo), o null si no está.
+     */
+    public synchronized Producto buscarPorCodigo(String codigo) {
+        if (codigo == null || codigo.trim().isEmpty()) {
+            return null;
+        }
+        Integer id = idPorCodigo.get(codigo.trim());
+        return id != null ? buscarProducto(id) : null;
+    }
+
+    /**
+     * Productos con stock disponible cuyo nombre contiene el texto (sin distinguir mayúsculas).
+     */
+    public synchronized List<Producto> buscarPorNombre(String texto) {
+        String buscado = texto.trim().toLowerCase(Locale.ROOT);
+        List<Producto> resultado = new ArrayList<>();
+        for (Producto p : catalogo.values()) {
+            if (p.getNombre() != null && p.getNombre().toLowerCase(Locale.ROOT).contains(buscado)) {
+                int disponible = stockDisponible(p.getId());
+                if (disponible > 0) {
+                    Producto copia = copiar(p);
+                    copia.setCantidad(disponible);
+                    resultado.add(copia);
+                }
+            }
+        }
+        resultado.sort((a, b) -> a.getNombre().compareToIgnoreCase(b.getNombre()));
+        return resultado;
+    }
+
+    /**
+     * @return Stock del catálogo menos lo vendido en ventas pendientes de reenviar.
+     */
+    public synchronized int stockDisponible(int productoId) {
+        Producto p = catalogo.get(productoId);
+        if (p == null) {
+            return 0;
+        }
+        return p.getCantidad() - reservadas.getOrDefault(productoId, 0);
+    }
+
+    public synchronized int getProductos() {
+        return catalogo.size();
+    }
+
+    // ========================================================================
+    // VENTAS PENDIENTES
+    // ========================================================================
+
+    /**
+     * Guarda la venta en el equipo. Valida contra el catálogo local que todos los productos existan
+     * y alcance el stock; la validación y el registro ocurren juntos, así dos ventas de este equipo no
+     * venden la misma unidad. Cada equipo sin conexión tiene su propio almacén: si otro equipo vendió
+     * esas unidades, la base de datos lo detecta al reenviar la venta y queda como rechazada.
+     *
+     * @param venta Venta con su clave de idempotencia y el monto ya calculado
+     * @param detalles Líneas de la venta
+     * @return ID provisional (negativo)
+     * @throws VentaRechazadaException Si un producto no está o no alcanza
+     * @throws RuntimeException Si no se pudo escribir en disco
+     */
+    public synchronized int encolarVenta(Venta venta, List<DetalleVenta> detalles) {
+        String clave = venta.getClaveIdempotencia();
+        if (clave == null || clave.isEmpty()) {
+            throw new IllegalArgumentException("AlmacenLocal: La venta necesita una clave de idempotencia");
+        }
+        VentaPendiente existente = pendientes.get(clave);
+        if (existente != null) {
+            return existente.getIdLocal();
+        }
+
+        Map<Integer, Integer> cantidades = new LinkedHashMap<>();
+        for (DetalleVenta d : detalles) {
+            cantidades.merge(d.getProductoId(), d.getCantidad(), Integer::sum);
+        }
+        for (Map.Entry<Integer, Integer> e : cantidades.entrySet()) {
+            Producto p = catalogo.get(e.getKey());
+            if (p == null) {
+                throw new VentaRechazadaException("Producto no encontrado ID: " + e.getKey());
+            }
+            if (stockDisponible(e.getKey()) < e.getValue()) {
+                throw new VentaRechazadaException("Stock insuficiente para " + p.getNombre());
+            }
+        }
+
+        VentaPendiente pendiente = new VentaPendiente(clave, siguienteIdLocal, venta, detalles);
+        try {
+            diarioVentas.agregar(registroVenta(pendiente));
+        } catch (IOException e) {
+            throw new RuntimeException("AlmacenLocal: No se pudo guardar la venta en el equipo: " + e.getMessage());
+        }
+        siguienteIdLocal--;
+        agregarPendiente(pendiente);
+        return pendiente.getIdLocal();
+    }
+
+    /**
+     * @return Ventas pendientes en el orden en que se registraron.
+     */
+    public synchronized List<VentaPendiente> pendientes() {
+        return new ArrayList<>(pendientes.values());
+    }
+
+    /**
+     * @return Ventas que la base de datos rechazó al reenviarlas (p. ej. sin stock), para revisión.
+     */
+    public synchronized List<VentaPendiente> rechazadas() {
+        return new ArrayList<>(rechazadas.values());
+    }
+
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    public synchronized int getRechazadas() {
+        return rechazadas.size();
+    }
+
+    /**
+     * La venta quedó registrada en la base de datos con el ID dado.
+     */
+    public synchronized void marcarConfirmada(String clave, int idVenta) {
+        if (quitarPendiente(clave) == null) {
+            return;
+        }
+        escribirResultado(CONFIRMADA, clave, String.valueOf(idVenta));
+        confirmadasSinCompactar++;
+        if (pendientes.isEmpty()) {
+            compactar();
+        }
+    }
+
+    /**
+     * La base de datos rechazó la venta; no se vuelve a intentar.
+     */
+    public synchronized void marcarRechazada(String clave, String motivo) {
+        VentaPendiente pendiente = quitarPendiente(clave);
+        if (pendiente == null) {
+            return;
+        }
+        pendiente.setMotivoRechazo(motivo);
+        rechazadas.put(clave, pendiente);
+        escribirResultado(RECHAZADA, clave, motivo);
+    }
+
+    // ========================================================================
+    // ÍNDICES EN MEMORIA
+    // ========================================================================
+
+    private void poner(Producto p) {
+        Producto anterior = catalogo.put(p.getId(), p);
+        if (anterior != null && anterior.getCodigo() != null) {
+            idPorCodigo.remove(anterior.getCodigo(), anterior.getId());
+        }
+        if (p.getCodigo() != null) {
+            idPorCodigo.put(p.getCodigo(), p.getId());
+        }
+    }
+
+    private void quitar(int id) {
+        Producto anterior = catalogo.remove(id);
+        if (anterior != null && anterior.getCodigo() != null) {
+            idPorCodigo.remove(anterior.getCodigo(), id);
+        }
+    }
+
+    private void agregarPendiente(VentaPendiente v) {
+        pendientes.put(v.getClave(), v);
+        for (DetalleVenta d : v.detalles()) {
+            reservadas.merge(d.getProductoId(), d.getCantidad(), Integer::sum);
+        }
+    }
+
+    private VentaPendiente quitarPendiente(String clave) {
+        VentaPendiente v = pendientes.remove(clave);
+        if (v != null) {
+            for (DetalleVenta d : v.detalles()) {
+                // Sin entrada cuando vuelve a 0, para que el mapa no crezca con cada producto vendido
+                reservadas.computeIfPresent(d.getProductoId(), (id, n) -> n - d.getCantidad() > 0 ? n - d.getCantidad() : null);
+            }
+        }
+        return v;
+    }
+
+    // ========================================================================
+    // PERSISTENCIA
+    // ========================================================================
+
+    private void cargarCatalogo() throws IOException {
+        List<byte[]> registros = archivoCatalogo.leerTodo();
+        if (registros.isEmpty()) {
+            return;
+        }
+        DataInputStream cabecera = entrada(registros.get(0));
+        if (cabecera.readInt() != FORMATO_CATALOGO) {
+            Registro.advertencia("AlmacenLocal: Formato de catálogo desconocido, se sincronizará desde cero");
+            return;
+        }
+        long version = cabecera.readLong();
+        int cantidad = cabecera.readInt();
+        if (registros.size() - 1 != cantidad) {
+            // Un catálogo incompleto haría creer que faltan productos
+            Registro.advertencia("AlmacenLocal: Catálogo local incompleto, se sincronizará desde cero");
+            return;
+        }
+        for (int i = 1; i < registros.size(); i++) {
+            poner(leerProducto(entrada(registros.get(i))));
+        }
+        versionCatalogo = version;
+        catalogoCargado = true;
+    }
+
+    private void guardarCatalogo() {
+        try {
+            List<byte[]> registros = new ArrayList<>(catalogo.size() + 1);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(FORMATO_CATALOGO);
+            out.writeLong(versionCatalogo);
+            out.writeInt(catalogo.size());
+            registros.add(buffer.toByteArray());
+            for (Producto p : catalogo.values()) {
+                registros.add(registroProducto(p));
+            }
+            archivoCatalogo.reescribir(registros);
+        } catch (IOException e) {
+            // El catálogo en memoria sigue sirviendo; se volverá a intentar con el próximo cambio
+            Registro.error("AlmacenLocal.guardarCatalogo: " + e.getMessage());
+        }
+    }
+
+    private void cargarVentas() throws IOException {
+        int resueltas = 0;
+        for (byte[] registro : diarioVentas.leerTodo()) {
+            DataInputStream in = entrada(registro);
+            byte tipo = in.readByte();
+            if (tipo == VENTA) {
+                VentaPendiente v = leerVenta(in);
+                agregarPendiente(v);
+                siguienteIdLocal = Math.min(siguienteIdLocal, v.getIdLocal() - 1);
+            } else {
+                String clave = in.readUTF();
+                String dato = leerTexto(in);
+                VentaPendiente v = quitarPendiente(clave);
+                if (tipo == RECHAZADA && v != null) {
+                    v.setMotivoRechazo(dato);
+                    rechazadas.put(clave, v);
+                }
+                resueltas++;
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            Registro.info("AlmacenLocal: " + pendientes.size() + " ventas pendientes de reenviar");
+        }
+        confirmadasSinCompactar = resueltas;
+        if (pendientes.isEmpty() && resueltas > 0) {
+            compactar();
+        }
+    }
+
+    /**
+     * Reescribe la bitácora dejando solo las ventas pendientes y las rechazadas.
+     */
+    private void compactar() {
+        if (confirmadasSinCompactar == 0) {
+            return;
+        }
+        try {
+            List<byte[]> registros = new ArrayList<>();
+            for (VentaPendiente v : rechazadas.values()) {
+                registros.add(registroVenta(v));
+                registros.add(registroResultado(RECHAZADA, v.getClave(), v.getMotivoRechazo()));
+            }
+            for (VentaPendiente v : pendientes.values()) {
+                registros.add(registroVenta(v));
+            }
+            diarioVentas.reescribir(registros);
+            confirmadasSinCompactar = 0;
+        } catch (IOException e) {
+            Registro.error("AlmacenLocal.compactar: " + e.getMessage());
+        }
+    }
+
+    private void escribirResultado(byte tipo, String clave, String dato) {
+        try {
+            diarioVentas.agregar(registroResultado(tipo, clave, dato));
+        } catch (IOException e) {
+            // Si no quedó escrito, tras reiniciar la venta se reenvía otra vez y la clave evita el duplicado
+            Registro.error("AlmacenLocal: No se pudo anotar el resultado de " + clave + ": " + e.getMessage());
+        }
+    }
+
+    private static byte[] registroVenta(VentaPendiente v) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        Venta venta = v.venta();
+        out.writeByte(VENTA);
+        out.writeUTF(v.getClave());
+        out.writeInt(v.getIdLocal());
+        out.writeLong(venta.getFecha() != null ? venta.getFecha().getTime() : -1);
+        out.writeDouble(venta.getMonto());
+        escribirTexto(out, venta.getDescripcion());
+        out.writeInt(venta.getVendedorId());
+        escribirTexto(out, venta.getClienteDni());
+        out.writeInt(v.detalles().size());
+        for (DetalleVenta d : v.detalles()) {
+            out.writeInt(d.getProductoId());
+            out.writeInt(d.getCantidad());
+            out.writeDouble(d.getPrecioUnitario());
+            out.writeDouble(d.getSubtotal());
+        }
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static VentaPendiente leerVenta(DataInputStream in) throws IOException {
+        String clave = in.readUTF();
+        int idLocal = in.readInt();
+        long fecha = in.readLong();
+
+        Venta venta = new Venta();
+        venta.setClaveIdempotencia(clave);
+        venta.setFecha(fecha >= 0 ? new Date(fecha) : null);
+        venta.setMonto(in.readDouble());
+        venta.setDescripcion(leerTexto(in));
+        venta.setVendedorId(in.readInt());
+        venta.setClienteDni(leerTexto(in));
+
+        int lineas = in.readInt();
+        List<DetalleVenta> detalles = new ArrayList<>(lineas);
+        for (int i = 0; i < lineas; i++) {
+            DetalleVenta d = new DetalleVenta();
+            d.setProductoId(in.readInt());
+            d.setCantidad(in.readInt());
+            d.setPrecioUnitario(in.readDouble());
+            d.setSubtotal(in.readDouble());
+            detalles.add(d);
+        }
+        return new VentaPendiente(clave, idLocal, venta, detalles);
+    }
+
+    private static byte[] registroResultado(byte tipo, String clave, String dato) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(tipo);
+        out.writeUTF(clave);
+        escribirTexto(out, dato);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static byte[] registroProducto(Producto p) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(p.getId());
+        escribirTexto(out, p.getNombre());
+        out.writeLong(p.getFechaIngreso() != null ? p.getFechaIngreso().getTime() : -1);
+        out.writeDouble(p.getPrecioCompra());
+        out.writeDouble(p.getPrecioVenta());
+        out.writeInt(p.getCantidad());
+        escribirTexto(out, p.getCategoriaNombre());
+        escribirTexto(out, p.getImagePath());
+        out.writeBoolean(p.getPrecioOferta() != null);
+        out.writeDouble(p.getPrecioOferta() != null ? p.getPrecioOferta() : 0.0);
+        out.writeLong(p.getVersion());
+        escribirTexto(out, p.getCodigo());
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static Producto leerProducto(DataInputStream in) throws IOException {
+        Producto p = new Producto();
+        p.setId(in.readInt());
+        p.setNombre(leerTexto(in));
+        long fecha = in.readLong();
+        p.setFechaIngreso(fecha >= 0 ? new Date(fecha) : null);
+        p.setPrecioCompra(in.readDouble());
+        p.setPrecioVenta(in.readDouble());
+        p.setCantidad(in.readInt());
+        p.setCategoriaNombre(leerTexto(in));
+        p.setImagePath(leerTexto(in));
+        boolean conOferta = in.readBoolean();
+        double oferta = in.readDouble();
+        p.setPrecioOferta(conOferta ? oferta : null);
+        p.setVersion(in.readLong());
+        p.setCodigo(leerTexto(in));
+        return p;
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static DataInputStream entrada(byte[] datos) {
+        return new DataInputStream(new ByteArrayInputStream(datos));
+    }
+
+    private static Producto copiar(Producto p) {
+        Producto copia = new Producto();
+        copia.setId(p.getId());
+        copia.setNombre(p.getNombre());
+        copia.setFechaIngreso(p.getFechaIngreso() != null ? new Date(p.getFechaIngreso().getTime()) : null);
+        copia.setPrecioCompra(p.getPrecioCompra());
+        copia.setPrecioVenta(p.getPrecioVenta());
+        copia.setCantidad(p.getCantidad());
+        copia.setCategoriaNombre(p.getCategoriaNombre());
+        copia.setImagePath(p.getImagePath());
+        copia.setPrecioOferta(p.getPrecioOferta());
+        copia.setVersion(p.getVersion());
+        copia.setCodigo(p.getCodigo());
+        return copia;
+    }
+}
@@ -0,0 +1,128 @@
+package io.carpets.local;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.carpets.util.Registro;
+
+/**
+ * Archivo de solo-agregar con registros binarios, usado como bitácora durable del AlmacenLocal.
+ *
+ * Cada registro se escribe como [largo][crc32][datos] y se fuerza a disco antes de retornar:
+ * una vez que agregar() termina, el registro sobrevive a que se cierre la aplicación o se apague el equipo.
+ * Si el último registro quedó a medias (corte durante la escritura), al leer se descarta y el archivo
+ * se recorta hasta el último registro íntegro.
+ */
+final class DiarioLocal {
+
+    // Un registro más grande que esto solo puede ser basura al final del archivo
+    private static final int LARGO_MAXIMO = 1 << 20;
+
+    private final File archivo;
+
+    DiarioLocal(File archivo) {
+        this.archivo = archivo;
+    }
+
+    /**
+     * Lee todos los registros íntegros, en el orden en que se agregaron.
+     */
+    synchronized List<byte[]> leerTodo() throws IOException {
+        List<byte[]> registros = new ArrayList<>();
+        if (!archivo.exists()) {
+            return registros;
+        }
+
+        long integro = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo)))) {
+            while (true) {
+                int largo;
+                try {
+                    largo = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (largo < 0 || largo > LARGO_MAXIMO) {
+                    break;
+                }
+                long crc;
+                byte[] datos = new byte[largo];
+                try {
+                    crc = in.readInt() & 0xFFFFFFFFL;
+                    in.readFully(datos);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc != crc32(datos)) {
+                    break;
+                }
+                registros.add(datos);
+                integro += 8 + largo;
+            }
+        }
+
+        if (integro < archivo.length()) {
+            Registro.advertencia("DiarioLocal: Se descartan " + (archivo.length() - integro)
+                    + " bytes incompletos al final de " + archivo.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw")) {
+                raf.setLength(integro);
+                raf.getFD().sync();
+            }
+        }
+        return registros;
+    }
+
+    /**
+     * Agrega un registro al final y espera a que esté en disco.
+     */
+    synchronized void agregar(byte[] datos) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(archivo, true)) {
+            out.write(enmarcar(datos));
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Reemplaza todo el contenido por los registros dados (compactación).
+     * Se escribe en un archivo temporal y se renombra, así un corte a mitad de camino deja el archivo anterior.
+     */
+    synchronized void reescribir(List<byte[]> registros) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporal, false)) {
+            for (byte[] datos : registros) {
+                out.write(enmarcar(datos));
+            }
+            out.getFD().sync();
+        }
+        if (!temporal.renameTo(archivo)) {
+            throw new IOException("DiarioLocal: No se pudo reemplazar " + archivo.getName());
+        }
+    }
+
+    private static byte[] enmarcar(byte[] datos) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(datos.length + 8);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(datos.length);
+        out.writeInt((int) crc32(datos));
+        out.write(datos);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static long crc32(byte[] datos) {
+        CRC32 crc = new CRC32();
+        crc.update(datos, 0, datos.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,143 @@
+package io.carpets.local;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.Configuracion.VentaRechazadaException;
+import io.carpets.DTOs.CambiosCatalogoDTO;
+import io.carpets.repositories.ProductoRepository;
+import io.carpets.repositories.implementacion.ProductoRepositoryCache;
+import io.carpets.servicios.ServicioVenta;
+import io.carpets.servicios.implementacion.ServicioVentaImplementacion;
+import io.carpets.util.Metricas;
+import io.carpets.util.Registro;
+import io.carpets.util.Response;
+
+/**
+ * Reenvía a la base de datos las ventas guardadas en el AlmacenLocal y mantiene al día su catálogo.
+ *
+ * Cada ciclo (en un hilo propio, cada INTERVALO_SEGUNDOS):
+ * 1. Reenvía las ventas pendientes en orden, con su clave de idempotencia: si un envío anterior ya se
+ *    confirmó, ServicioVentaImplementacion devuelve la venta existente en lugar de registrarla otra vez.
+ *    Solo un rechazo de negocio (VentaRechazadaException: ya no hay stock, el producto no existe, DNI
+ *    inválido) la marca como rechazada y se sigue con la siguiente. Cualquier otro error (falta de
+ *    conexión, espera del pool, bloqueo mutuo) detiene el ciclo y la venta se reintenta en el siguiente.
+ * 2. Sincroniza el catálogo (incremental con findChangedSince; completo la primera vez).
+ * 3. Si no quedan pendientes, el almacén vuelve al modo en línea.
+ */
+public final class ReplicadorVentas {
+
+    private static final long INTERVALO_SEGUNDOS = 15;
+
+    private static ReplicadorVentas instancia;
+
+    private final AlmacenLocal almacen;
+    private final ServicioVenta servicio;
+    private final ProductoRepository productoRepo;
+
+    /**
+     * Inicia el replicador de la aplicación (una sola vez) sobre el almacén compartido.
+     */
+    public static synchronized void iniciar(AlmacenLocal almacen) {
+        if (instancia == null) {
+            instancia = new ReplicadorVentas(almacen, new ServicioVentaImplementacion(), ProductoRepositoryCache.instancia());
+            instancia.programar();
+        }
+    }
+
+    /**
+     * @param servicio Servicio que registra en la base de datos (no el que guarda en el equipo)
+     */
+    public ReplicadorVentas(AlmacenLocal almacen, ServicioVenta servicio, ProductoRepository productoRepo) {
+        this.almacen = almacen;
+        this.servicio = servicio;
+        this.productoRepo = productoRepo;
+    }
+
+    private void programar() {
+        ScheduledExecutorService planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replicador-ventas");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(() -> {
+            try {
+                ejecutarCiclo();
+            } catch (RuntimeException e) {
+                // Una excepción cancelaría las siguientes ejecuciones
+                Registro.error("ReplicadorVentas: " + e.getMessage());
+            }
+        }, 0, INTERVALO_SEGUNDOS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ejecuta un ciclo completo en el hilo actual.
+     *
+     * @return true si al terminar el almacén quedó en línea
+     */
+    public synchronized boolean ejecutarCiclo() {
+        if (!reenviarPendientes()) {
+            almacen.marcarSinConexion();
+            return false;
+        }
+        if (!sincronizarCatalogo()) {
+            almacen.marcarSinConexion();
+            return false;
+        }
+        return almacen.marcarEnLineaSiNoHayPendientes();
+    }
+
+    /**
+     * @return false si se detuvo por un error que no es un rechazo (la venta sigue pendiente)
+     */
+    private boolean reenviarPendientes() {
+        List<VentaPendiente> pendientes = almacen.pendientes();
+        for (VentaPendiente pendiente : pendientes) {
+            long inicio = System.nanoTime();
+            boolean error = true;
+            try {
+                int idVenta = servicio.registrarVenta(pendiente.nuevaVenta(), pendiente.nuevosDetalles());
+                almacen.marcarConfirmada(pendiente.getClave(), idVenta);
+                error = false;
+                Registro.info("ReplicadorVentas: Venta " + pendiente.getIdLocal() + " registrada con ID " + idVenta);
+            } catch (VentaRechazadaException e) {
+                almacen.marcarRechazada(pendiente.getClave(), e.getMessage());
+                Registro.error("ReplicadorVentas: Venta " + pendiente.getIdLocal() + " rechazada: " + e.getMessage());
+            } catch (RuntimeException e) {
+                if (!ConfiguracionBaseDatos.esFallaDeConexion(e)) {
+                    // Pasajero (espera del pool, bloqueo mutuo...): se reintenta en el siguiente ciclo
+                    Registro.advertencia("ReplicadorVentas: Venta " + pendiente.getIdLocal() + " se reintentará: " + e.getMessage());
+                }
+                return false;
+            } finally {
+                Metricas.registrar("local.reenviarVenta", inicio, error);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false si no se pudo consultar la base de datos
+     */
+    private boolean sincronizarCatalogo() {
+        if (!almacen.isCatalogoCargado()) {
+            // La primera vez se copia todo, con el token de findChangedSince (no la mayor versión leída)
+            Response<CambiosCatalogoDTO> todos = productoRepo.findChangedSince(0);
+            if (!todos.isOk()) {
+                return false;
+            }
+            almacen.reemplazarCatalogo(todos.getContent().getCambiados(), todos.getContent().getVersion());
+            return true;
+        }
+
+        Response<CambiosCatalogoDTO> cambios = productoRepo.findChangedSince(almacen.getVersionCatalogo());
+        if (!cambios.isOk()) {
+            return false;
+        }
+        almacen.aplicarCambios(cambios.getContent());
+        return true;
+    }
+}
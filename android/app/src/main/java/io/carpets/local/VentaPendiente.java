@@ -0,0 +1,101 @@
+package io.carpets.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import io.carpets.entidades.DetalleVenta;
+import io.carpets.entidades.Venta;
+
+/**
+ * Venta registrada en el equipo mientras no había conexión, a la espera de reenviarse a la base de datos.
+ *
+ * Guarda una copia de lo recibido: registrarVenta() modifica la venta y los detalles que se le pasan
+ * (ID, boleta, monto), así que cada reenvío trabaja con objetos nuevos (nuevaVenta / nuevosDetalles).
+ */
+public final class VentaPendiente {
+
+    private final String clave;
+    private final int idLocal;
+    private final Venta venta;
+    private final List<DetalleVenta> detalles;
+    private String motivoRechazo;
+
+    VentaPendiente(String clave, int idLocal, Venta venta, List<DetalleVenta> detalles) {
+        this.clave = clave;
+        this.idLocal = idLocal;
+        this.venta = copiar(venta);
+        List<DetalleVenta> copia = new ArrayList<>(detalles.size());
+        for (DetalleVenta d : detalles) {
+            copia.add(copiar(d));
+        }
+        this.detalles = Collections.unmodifiableList(copia);
+    }
+
+    /**
+     * @return Clave de idempotencia con la que se reenvía (la misma en cada intento).
+     */
+    public String getClave() {
+        return clave;
+    }
+
+    /**
+     * @return ID provisional entregado al registrarla (negativo, para no confundirlo con uno de la BD).
+     */
+    public int getIdLocal() {
+        return idLocal;
+    }
+
+    /**
+     * @return Motivo por el que la base de datos la rechazó, o null si sigue pendiente.
+     */
+    public String getMotivoRechazo() {
+        return motivoRechazo;
+    }
+
+    void setMotivoRechazo(String motivoRechazo) {
+        this.motivoRechazo = motivoRechazo;
+    }
+
+    public Venta nuevaVenta() {
+        return copiar(venta);
+    }
+
+    public List<DetalleVenta> nuevosDetalles() {
+        List<DetalleVenta> copia = new ArrayList<>(detalles.size());
+        for (DetalleVenta d : detalles) {
+            copia.add(copiar(d));
+        }
+        return copia;
+    }
+
+    // Lectura directa para el AlmacenLocal (no se modifican)
+    Venta venta() {
+        return venta;
+    }
+
+    List<DetalleVenta> detalles() {
+        return detalles;
+    }
+
+    private static Venta copiar(Venta v) {
+        Venta copia = new Venta();
+        copia.setFecha(v.getFecha() != null ? new Date(v.getFecha().getTime()) : null);
+        copia.setMonto(v.getMonto());
+        copia.setDescripcion(v.getDescripcion());
+        copia.setVendedorId(v.getVendedorId());
+        copia.setClienteDni(v.getClienteDni());
+        copia.setClaveIdempotencia(v.getClaveIdempotencia());
+        return copia;
+    }
+
+    private static DetalleVenta copiar(DetalleVenta d) {
+        DetalleVenta copia = new DetalleVenta();
+        copia.setCantidad(d.getCantidad());
+        copia.setPrecioUnitario(d.getPrecioUnitario());
+        copia.setSubtotal(d.getSubtotal());
+        copia.setProductoId(d.getProductoId());
+        return copia;
+    }
+}
@@ -1,6 +1,7 @@
 package io.carpets.repositories;
 
 import io.carpets.DTOs.CompraCompletaDTO;
+import io.carpets.DTOs.CompraResumenDTO;
 import io.carpets.entidades.Compra;
 import io.carpets.util.Response;
 
@@ -16,7 +17,9 @@ public interface CompraRepository {
     Response update(Compra compra);
     Response delete(int consulta);
     Response<Compra> findById(int id);
+    Response<Compra> findByClaveIdempotencia(String clave);
     Response<List<Compra>> findAll();
     Response<List<CompraCompletaDTO>> listarComprasConDetalles();
+    Response<List<CompraResumenDTO>> listarResumen(int beforeId, int limit);
     Response<List<Compra>> findByDate(Date desde, Date hasta);
 }
\ No newline at end of file
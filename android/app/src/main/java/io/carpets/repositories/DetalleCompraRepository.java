@@ -12,6 +12,7 @@ import java.util.List;
 
 public interface DetalleCompraRepository {
     Response save(DetalleCompra detalle);
+    Response saveAll(List<DetalleCompra> detalles);
     Response update(DetalleCompra detalle);
     Response delete(int id);
     Response<DetalleCompra> findById(int id);
@@ -11,6 +11,7 @@ import java.util.List;
 */
 public interface DetalleVentaRepository {
     Response save(DetalleVenta detalle);
+    Response saveAll(List<DetalleVenta> detalles);
     Response update(DetalleVenta detalle);
     Response delete(int id);
     Response<DetalleVenta> findById(int id);
@@ -1,9 +1,12 @@
 package io.carpets.repositories;
 
+import io.carpets.DTOs.CambiosCatalogoDTO;
 import io.carpets.entidades.Producto;
 import io.carpets.util.Response;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /*
     Interfaz del repositorio para la entidad Producto.
@@ -19,14 +22,42 @@ public interface ProductoRepository {
 
     Response<Producto> findById(int id);
 
+    // Código de barras / SKU: éxito sin contenido si ningún producto lo tiene
+    Response<Producto> findByCodigo(String codigo);
+
+    // Varios productos en una sola consulta (IN): se omiten los que no existen, sin orden garantizado
+    Response<List<Producto>> findByIds(Collection<Integer> ids);
+    Response<List<Producto>> findByCodigos(Collection<String> codigos);
+
     Response<List<Producto>> findAll();
 
+    // Paginación por clave (keyset): productos después de (afterNombre, afterId) ordenados por nombre
+    Response<List<Producto>> findPage(String afterNombre, int afterId, int limit);
+
+    // Sincronización incremental: productos modificados y eliminados con versión mayor a la indicada
+    Response<CambiosCatalogoDTO> findChangedSince(long version);
+
     Response<List<Producto>> findByCategoria(String categoriaNombre);
 
     Response<List<Producto>> findByNombre(String nombre);
 
+    // Búsqueda por texto en nombre ("nombre"), categoría ("categoria") o ambos (null), por relevancia.
+    // Sin coincidencias no es un error: devuelve una lista vacía.
+    Response<List<Producto>> buscar(String texto, String campo);
+
+    // Búsqueda por nombre tolerante a errores de tipeo, de menos a más ediciones (lista vacía si no hay)
+    Response<List<Producto>> buscarAproximado(String texto);
+
     Response<Double> getGananciaTotal();
+    Response<Double> getGananciaProducto(int id);
 
     // Renombrado para mayor claridad y tipado a Boolean
     Response<Boolean> existeIdById(int id);
+
+    // Ajustes atómicos de stock (sin leer y reescribir todo el producto)
+    Response descontarStock(int id, int cantidad);
+
+    Response descontarStockLote(Map<Integer, Integer> cantidadesPorProducto);
+
+    Response incrementarStock(int id, int cantidad);
 }
\ No newline at end of file
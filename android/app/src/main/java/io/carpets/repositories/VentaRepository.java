@@ -1,7 +1,9 @@
 package io.carpets.repositories;
 
 import io.carpets.entidades.Venta;
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.Map;
 import io.carpets.DTOs.VentaCompletaDTO;
 import io.carpets.util.Response;
 
@@ -13,10 +15,23 @@ public interface VentaRepository {
     Response<Venta> findById(int id);
     Response<List<Venta>> findAll();
     Response<List<Venta>> findByNumeroBoleta(String numeroBoleta);
+    Response<List<Venta>> findByFechaRange(Timestamp desde, Timestamp hasta);
+    Response<Venta> findByClaveIdempotencia(String clave);
     Response<List<VentaCompletaDTO>> listarVentasConDetalles();
 
 
 
+    // Siguiente correlativo de boleta (secuencia durable en la BD)
+    Response<Long> siguienteNumeroBoleta();
+
+    // Resumen diario y ganancias acumuladas (venta_resumen_diario, ganancia_producto, ganancia_total)
+    Response acumularResumenDiario(int ventaId, int signo, double igvPorcentaje);
+    Response<Integer> reconstruirResumenDiario(double igvPorcentaje);
+    Response<List<Map<String, Object>>> obtenerReporteDiario();
+
     //  registrar productos no encontrados
+    // Unidades vendidas por producto desde una fecha (para ordenar búsquedas por lo que más se vende)
+    Response<Map<Integer, Integer>> unidadesVendidasDesde(Timestamp desde);
+
     Response registrarProductoNoEncontrado(Integer idProductoSolicitado, String nombreProductoSolicitado, Integer vendedorId);
 }
\ No newline at end of file
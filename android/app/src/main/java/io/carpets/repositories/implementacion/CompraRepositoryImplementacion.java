@@ -3,8 +3,10 @@ package io.carpets.repositories.implementacion;
 import io.carpets.Configuracion.ConfiguracionBaseDatos;
 import io.carpets.entidades.Compra;
 import io.carpets.repositories.CompraRepository;
+import io.carpets.util.Registro;
 import io.carpets.util.Response;
 import io.carpets.DTOs.CompraCompletaDTO;
+import io.carpets.DTOs.CompraResumenDTO;
 import io.carpets.DTOs.DetalleCompraDTO;
 
 import java.sql.*;
@@ -39,12 +41,13 @@ public class CompraRepositoryImplementacion implements CompraRepository {
             return response;
         }
 
-        String sql = "INSERT INTO compra (descripcion) VALUES (?)";
+        String sql = "INSERT INTO compra (descripcion, clave_idempotencia) VALUES (?, ?)";
 
         try (Connection conn = ConfiguracionBaseDatos.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, compra.getDescripcion().trim());
+            stmt.setString(2, compra.getClaveIdempotencia());
 
             int rows = stmt.executeUpdate();
             if (rows > 0) {
@@ -219,6 +222,52 @@ public class CompraRepositoryImplementacion implements CompraRepository {
         return response;
     }
 
+    /**
+     * Busca la compra registrada con una clave de idempotencia.
+     *
+     * @param clave Clave enviada por el cliente
+     * @return Response<Compra> con la compra; si no existe, éxito sin contenido (no es un error)
+     */
+    @Override
+    public Response<Compra> findByClaveIdempotencia(String clave) {
+        Response<Compra> response = new Response<>();
+
+        // Validación de entrada
+        if (clave == null || clave.isEmpty()) {
+            response.internal_error("CRI.findByClaveIdempotencia: La clave no puede estar vacía");
+            return response;
+        }
+
+        String sql = "SELECT id_compra, descripcion, monto, fecha FROM compra WHERE clave_idempotencia = ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, clave);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Compra c = new Compra();
+                    c.setId(rs.getInt("id_compra"));
+                    c.setDescripcion(rs.getString("descripcion"));
+                    c.setMonto(rs.getDouble("monto"));
+                    c.setFecha(rs.getDate("fecha"));
+                    c.setClaveIdempotencia(clave);
+
+                    response.exito(c);
+                    return response;
+                }
+            }
+
+            response.exito();
+
+        } catch (SQLException e) {
+            response.internal_error("CRI.findByClaveIdempotencia: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Encuentra todas las compras registradas, ordenadas por ID descendente (más recientes primero).
      *
@@ -375,7 +424,7 @@ public class CompraRepositoryImplementacion implements CompraRepository {
                         nueva.setFecha(ts != null ? ts.toString() : "");
                     } catch (SQLException e) {
                         // Log del error pero continuar con los demás registros
-                        System.err.println("Error procesando compra " + idCompra + ": " + e.getMessage());
+                        Registro.error("Error procesando compra " + idCompra + ": " + e.getMessage());
                     }
                     return nueva;
                 });
@@ -407,4 +456,69 @@ public class CompraRepositoryImplementacion implements CompraRepository {
 
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * Lista el resumen de las compras (más recientes primero) en una sola consulta:
+     * cada compra trae la imagen del primer producto adquirido y su cantidad de líneas de detalle.
+     *
+     * Paginación por clave: la página siguiente se pide con el ID de la última compra recibida.
+     *
+     * @param beforeId Solo se incluyen compras con ID menor a este (<= 0 para empezar por la más reciente)
+     * @param limit Cantidad máxima de compras (<= 0 para traerlas todas)
+     * @return Response<List<CompraResumenDTO>> con la página (vacía si no hay más compras) o error
+     */
+    @Override
+    public Response<List<CompraResumenDTO>> listarResumen(int beforeId, int limit) {
+        Response<List<CompraResumenDTO>> response = new Response<>();
+        List<CompraResumenDTO> lista = new ArrayList<>();
+
+        // Las subconsultas correlacionadas solo se evalúan para las filas de la página
+        String sql = "SELECT " +
+                "  c.id_compra, c.descripcion, c.monto, c.fecha, " +
+                "  (SELECT COUNT(*) FROM detalle_compra d WHERE d.id_compra = c.id_compra) AS lineas, " +
+                "  (SELECT p.image_path " +
+                "     FROM detalle_compra d " +
+                "     JOIN producto p ON p.id_producto = d.id_producto " +
+                "    WHERE d.id_compra = c.id_compra " +
+                "    ORDER BY d.id_detalle_compra ASC LIMIT 1) AS image_path " +
+                "FROM compra c " +
+                (beforeId > 0 ? "WHERE c.id_compra < ? " : "") +
+                "ORDER BY c.id_compra DESC" +
+                (limit > 0 ? " LIMIT ?" : "");
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int paramIndex = 1;
+            if (beforeId > 0) {
+                stmt.setInt(paramIndex++, beforeId);
+            }
+            if (limit > 0) {
+                stmt.setInt(paramIndex, limit);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    CompraResumenDTO dto = new CompraResumenDTO();
+                    dto.setId(rs.getInt("id_compra"));
+                    dto.setDescripcion(rs.getString("descripcion"));
+                    dto.setMonto(rs.getDouble("monto"));
+
+                    Timestamp ts = rs.getTimestamp("fecha");
+                    dto.setFecha(ts != null ? ts.toString() : "");
+
+                    dto.setCantidadLineas(rs.getInt("lineas"));
+                    dto.setImagePath(rs.getString("image_path"));
+                    lista.add(dto);
+                }
+            }
+
+            response.exito(lista);
+
+        } catch (SQLException e) {
+            response.internal_error("CRI.listarResumen: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+}
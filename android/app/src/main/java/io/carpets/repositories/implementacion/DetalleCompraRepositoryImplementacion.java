@@ -1,6 +1,7 @@
 package io.carpets.repositories.implementacion;
 
 import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.Configuracion.UnidadDeTrabajo;
 import io.carpets.entidades.DetalleCompra;
 import io.carpets.repositories.DetalleCompraRepository;
 import io.carpets.util.Response;
@@ -44,6 +45,59 @@ public class DetalleCompraRepositoryImplementacion implements DetalleCompraRepos
         return response;
     }
 
+    /**
+     * Registra varios detalles de compra con un solo envío (addBatch/executeBatch).
+     * Asigna a cada detalle el ID generado, en el mismo orden de la lista. Si uno falla, no se inserta ninguno.
+     * @param detalles Detalles de la compra, todos con su compraId asignado.
+     * @return Response con el resultado de la operación
+     */
+    @Override
+    public Response saveAll(List<DetalleCompra> detalles) {
+        Response response = new Response();
+
+        if (detalles == null || detalles.isEmpty()) {
+            response.internal_error("DCRI.saveAll: La lista de detalles no puede estar vacía");
+            return response;
+        }
+
+        String sql = "INSERT INTO detalle_compra (unidades, id_producto, id_compra, precio_unitario, sub_monto) VALUES (?, ?, ?, ?, ?)";
+
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            for (DetalleCompra detalle : detalles) {
+                stmt.setInt(1, detalle.getUnidades());
+                stmt.setInt(2, detalle.getProductoId());
+                stmt.setInt(3, detalle.getCompraId());
+                stmt.setDouble(4, detalle.getPrecioUnitario());
+                stmt.setDouble(5, detalle.getUnidades() * detalle.getPrecioUnitario());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            int i = 0;
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                while (rs.next() && i < detalles.size()) {
+                    detalles.get(i++).setId(rs.getInt(1));
+                }
+            }
+
+            if (i < detalles.size()) {
+                response.internal_error("DCRI.saveAll: Solo se recuperaron " + i + " de " + detalles.size() + " IDs");
+                return response;
+            }
+
+            uow.confirmar();
+            response.exito();
+
+        } catch (SQLException e) {
+            response.internal_error("DCRI.saveAll: " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Actualiza los datos de un detalle de compra específico.
      * @param detalle Contiene los datos nuevos del detalle de compra.
@@ -1,13 +1,16 @@
 package io.carpets.repositories.implementacion;
 
 import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.Configuracion.UnidadDeTrabajo;
 import io.carpets.entidades.DetalleVenta;
 import io.carpets.repositories.DetalleVentaRepository;
 import io.carpets.util.Response;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Implementación del repositorio para la gestión de detalles de venta.
@@ -15,11 +18,69 @@ import java.util.List;
  */
 public class DetalleVentaRepositoryImplementacion implements DetalleVentaRepository {
 
+    private static final String SQL_INSERT = "INSERT INTO detalle_venta (cantidad, precio_unitario, subtotal, id_venta, id_producto, costo_unitario) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Congela el precio de compra vigente en los detalles recién insertados que no traen costo (misma transacción).
+    // Es una sentencia aparte porque un INSERT ... SELECT no se puede enviar como lote reescrito.
+    // Lee producto con bloqueo compartido: registrarVenta trae el costo ya leído para no pasar por aquí
+    // antes de descontar el stock (ver ServicioVentaImplementacion).
+    private static final String SQL_FIJAR_COSTO = "UPDATE detalle_venta d " +
+            "JOIN producto p ON p.id_producto = d.id_producto " +
+            "SET d.costo_unitario = p.precio_compra ";
+
+    // ========================================================================
+    // MÉTODOS PRIVADOS AUXILIARES
+    // ========================================================================
+
+    /**
+     * Valida los datos obligatorios de un detalle antes de insertarlo.
+     *
+     * @param detalle Detalle a validar
+     * @return Mensaje de error, o null si el detalle es válido
+     */
+    private String validarParaInsertar(DetalleVenta detalle) {
+        if (detalle == null) {
+            return "El detalle de venta no puede ser nulo";
+        }
+        if (detalle.getCantidad() <= 0) {
+            return "La cantidad debe ser mayor a 0";
+        }
+        if (detalle.getPrecioUnitario() <= 0) {
+            return "El precio unitario debe ser mayor a 0";
+        }
+        if (detalle.getVentaId() <= 0) {
+            return "El ID de venta debe ser mayor a 0";
+        }
+        if (detalle.getProductoId() <= 0) {
+            return "El ID de producto debe ser mayor a 0";
+        }
+        return null;
+    }
+
+    private void asignarParametrosInsert(PreparedStatement stmt, DetalleVenta detalle) throws SQLException {
+        stmt.setInt(1, detalle.getCantidad());
+        stmt.setDouble(2, detalle.getPrecioUnitario());
+        stmt.setDouble(3, detalle.getSubtotal());
+        stmt.setInt(4, detalle.getVentaId());
+        stmt.setInt(5, detalle.getProductoId());
+        if (detalle.getCostoUnitario() > 0) {
+            stmt.setDouble(6, detalle.getCostoUnitario());
+        } else {
+            stmt.setNull(6, Types.DECIMAL);
+        }
+    }
+
+    // ========================================================================
+    // MÉTODOS CRUD
+    // ========================================================================
+
     /**
      * Registra un nuevo detalle de venta en la base de datos.
      *
      * IMPORTANTE: Este método modifica el objeto 'detalle' pasado como parámetro,
      * asignándole el ID generado por la base de datos.
+     * Si el detalle no trae costo_unitario, se copia del precio de compra vigente del producto.
      *
      * @param detalle Detalle de venta a registrar (cantidad, precio, subtotal, ventaId, productoId)
      * @return Response indicando éxito o error
@@ -29,42 +90,17 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
         Response response = new Response();
 
         // Validación de entrada
-        if (detalle == null) {
-            response.internal_error("DVRI.save: El detalle de venta no puede ser nulo");
+        String error = validarParaInsertar(detalle);
+        if (error != null) {
+            response.internal_error("DVRI.save: " + error);
             return response;
         }
 
-        if (detalle.getCantidad() <= 0) {
-            response.internal_error("DVRI.save: La cantidad debe ser mayor a 0");
-            return response;
-        }
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS)) {
 
-        if (detalle.getPrecioUnitario() <= 0) {
-            response.internal_error("DVRI.save: El precio unitario debe ser mayor a 0");
-            return response;
-        }
-
-        if (detalle.getVentaId() <= 0) {
-            response.internal_error("DVRI.save: El ID de venta debe ser mayor a 0");
-            return response;
-        }
-
-        if (detalle.getProductoId() <= 0) {
-            response.internal_error("DVRI.save: El ID de producto debe ser mayor a 0");
-            return response;
-        }
-
-        String sql = "INSERT INTO detalle_venta (cantidad, precio_unitario, subtotal, id_venta, id_producto) " +
-                "VALUES (?, ?, ?, ?, ?)";
-
-        try (Connection conn = ConfiguracionBaseDatos.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            stmt.setInt(1, detalle.getCantidad());
-            stmt.setDouble(2, detalle.getPrecioUnitario());
-            stmt.setDouble(3, detalle.getSubtotal());
-            stmt.setInt(4, detalle.getVentaId());
-            stmt.setInt(5, detalle.getProductoId());
+            asignarParametrosInsert(stmt, detalle);
 
             int rows = stmt.executeUpdate();
 
@@ -73,6 +109,15 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
                     if (rs.next()) {
                         int generatedId = rs.getInt(1);
                         detalle.setId(generatedId);
+
+                        if (detalle.getCostoUnitario() <= 0) {
+                            try (PreparedStatement fijar = conn.prepareStatement(SQL_FIJAR_COSTO + "WHERE d.id_detalle_venta = ?")) {
+                                fijar.setInt(1, generatedId);
+                                fijar.executeUpdate();
+                            }
+                        }
+
+                        uow.confirmar();
                         response.exito();
                         return response;
                     }
@@ -91,6 +136,83 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
         return response;
     }
 
+    /**
+     * Registra varios detalles de venta con un solo envío (addBatch/executeBatch).
+     *
+     * IMPORTANTE: Asigna a cada detalle el ID generado por la base de datos, en el mismo orden de la lista.
+     * Es todo o nada: si un detalle falla, no se inserta ninguno.
+     * En la misma transacción copia a costo_unitario el precio de compra vigente de cada producto.
+     *
+     * @param detalles Detalles de venta a registrar (no vacía)
+     * @return Response indicando éxito o error
+     */
+    @Override
+    public Response saveAll(List<DetalleVenta> detalles) {
+        Response response = new Response();
+
+        // Validación de entrada
+        if (detalles == null || detalles.isEmpty()) {
+            response.internal_error("DVRI.saveAll: La lista de detalles no puede estar vacía");
+            return response;
+        }
+
+        for (DetalleVenta detalle : detalles) {
+            String error = validarParaInsertar(detalle);
+            if (error != null) {
+                response.internal_error("DVRI.saveAll: " + error);
+                return response;
+            }
+        }
+
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS)) {
+
+            for (DetalleVenta detalle : detalles) {
+                asignarParametrosInsert(stmt, detalle);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            int i = 0;
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                while (rs.next() && i < detalles.size()) {
+                    detalles.get(i++).setId(rs.getInt(1));
+                }
+            }
+
+            if (i < detalles.size()) {
+                // Sin confirmar: al cerrar la unidad se revierte el lote
+                response.internal_error("DVRI.saveAll: Se insertaron los detalles pero solo se recuperaron " + i + " IDs");
+                return response;
+            }
+
+            // Solo las ventas con detalles sin costo; normalmente todos son de la misma venta: una sola sentencia
+            Set<Integer> ventas = new LinkedHashSet<>();
+            for (DetalleVenta detalle : detalles) {
+                if (detalle.getCostoUnitario() <= 0) {
+                    ventas.add(detalle.getVentaId());
+                }
+            }
+            if (!ventas.isEmpty()) {
+                try (PreparedStatement fijar = conn.prepareStatement(SQL_FIJAR_COSTO + "WHERE d.id_venta = ? AND d.costo_unitario IS NULL")) {
+                    for (int ventaId : ventas) {
+                        fijar.setInt(1, ventaId);
+                        fijar.executeUpdate();
+                    }
+                }
+            }
+
+            uow.confirmar();
+            response.exito();
+
+        } catch (SQLException e) {
+            response.internal_error("DVRI.saveAll: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Actualiza un detalle de venta existente en la base de datos.
      *
@@ -225,7 +347,8 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
                 "  precio_unitario, " +
                 "  subtotal, " +
                 "  id_venta, " +
-                "  id_producto " +
+                "  id_producto, " +
+                "  costo_unitario " +
                 "FROM detalle_venta " +
                 "WHERE id_detalle_venta = ?";
 
@@ -243,6 +366,7 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
                     d.setSubtotal(rs.getDouble("subtotal"));
                     d.setVentaId(rs.getInt("id_venta"));
                     d.setProductoId(rs.getInt("id_producto"));
+                    d.setCostoUnitario(rs.getDouble("costo_unitario"));
 
                     response.exito(d);
                     return response;
@@ -281,7 +405,8 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
                 "  precio_unitario, " +
                 "  subtotal, " +
                 "  id_venta, " +
-                "  id_producto " +
+                "  id_producto, " +
+                "  costo_unitario " +
                 "FROM detalle_venta " +
                 "WHERE id_venta = ? " +
                 "ORDER BY id_detalle_venta ASC";
@@ -300,6 +425,7 @@ public class DetalleVentaRepositoryImplementacion implements DetalleVentaReposit
                     d.setSubtotal(rs.getDouble("subtotal"));
                     d.setVentaId(rs.getInt("id_venta"));
                     d.setProductoId(rs.getInt("id_producto"));
+                    d.setCostoUnitario(rs.getDouble("costo_unitario"));
                     lista.add(d);
                 }
             }
@@ -0,0 +1,434 @@
+package io.carpets.repositories.implementacion;
+
+import io.carpets.DTOs.CambiosCatalogoDTO;
+import io.carpets.entidades.Producto;
+import io.carpets.repositories.ProductoRepository;
+import io.carpets.util.ArbolBK;
+import io.carpets.util.Response;
+import io.carpets.util.Texto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Índice en memoria del catálogo para buscar productos por nombre y categoría sin ir a la base de datos.
+ *
+ * - Los textos se normalizan (minúsculas, sin tildes, espacios simples) y se parten en trigramas.
+ *   Un texto de 3 o más caracteres solo puede estar contenido en los productos que tienen todos sus
+ *   trigramas: se intersecan esas listas (de la más corta a la más larga) y se confirma con contains().
+ * - Textos de 1 o 2 caracteres: se recorre el catálogo (son cientos de productos).
+ * - Los resultados salen por relevancia: nombre igual, nombre que empieza con el texto, alguna palabra
+ *   del nombre que empieza con el texto, nombre que lo contiene y, al final, coincidencias en la categoría.
+ * - idPorCodigo resuelve códigos de barras con un HashMap.
+ * - buscarAproximado tolera errores de tipeo: las palabras de los nombres están además en un ArbolBK,
+ *   que encuentra las que están a una o dos ediciones de lo escrito.
+ *
+ * Se carga con findChangedSince(0) la primera vez y luego se mantiene con findChangedSince desde el
+ * último token, que también trae lo que escriben otros equipos: como mucho cada refrescoMs, o en la
+ * siguiente búsqueda después de una escritura hecha desde este equipo (ver ProductoRepositoryCache.invalidar).
+ */
+final class IndiceProductos {
+
+    static final String CAMPO_NOMBRE = "nombre";
+    static final String CAMPO_CATEGORIA = "categoria";
+
+
+    private final ProductoRepository repo;
+    private final long refrescoMs;
+
+    // Un solo hilo consulta la base de datos a la vez
+    private final Object sincronizando = new Object();
+
+    // Protegidos por 'this'
+    private final Map<Integer, Documento> documentos = new HashMap<>();
+    private final Map<String, Set<Integer>> trigramasNombre = new HashMap<>();
+    private final Map<String, Set<Integer>> trigramasCategoria = new HashMap<>();
+    // Palabras de los nombres, ordenadas para buscar por prefijo
+    private final TreeMap<String, Set<Integer>> palabras = new TreeMap<>();
+    private ArbolBK arbol = new ArbolBK();
+    private final Map<String, Integer> codigos = new HashMap<>();
+    private boolean cargado;
+    private long version;
+
+    private volatile boolean desactualizado = true;
+    private volatile long sincronizadoEn;
+
+    /**
+     * @param repo Repositorio que consulta la base de datos (no la caché)
+     */
+    IndiceProductos(ProductoRepository repo, long refrescoMs) {
+        this.repo = repo;
+        this.refrescoMs = refrescoMs;
+    }
+
+    /**
+     * La siguiente búsqueda traerá los cambios de la base de datos antes de responder.
+     */
+    void marcarDesactualizado() {
+        desactualizado = true;
+    }
+
+    /**
+     * Trae los cambios pendientes si hace falta.
+     *
+     * @return false si el índice no está cargado y no se pudo cargar (el llamador debe ir a la base de datos)
+     */
+    boolean sincronizar() {
+        if (estaVigente()) {
+            return isCargado();
+        }
+        synchronized (sincronizando) {
+            if (estaVigente()) {
+                // Otro hilo sincronizó mientras se esperaba
+                return isCargado();
+            }
+            long inicio = System.currentTimeMillis();
+            // Se baja antes de consultar: una escritura durante la consulta lo vuelve a subir
+            desactualizado = false;
+
+            boolean ok = isCargado() ? aplicarCambios() : cargarTodo();
+            // También si falló: sin conexión no se reintenta en cada tecla, sino al vencer refrescoMs.
+            // Mientras tanto se responde con lo último cargado.
+            sincronizadoEn = inicio;
+            return ok || isCargado();
+        }
+    }
+
+    /**
+     * Busca el texto en el nombre y/o la categoría.
+     *
+     * @param campo CAMPO_NOMBRE, CAMPO_CATEGORIA o null para ambos
+     * @return Copias de los productos encontrados, ordenados por relevancia (vacía si no hay coincidencias)
+     */
+    synchronized List<Producto> buscar(String texto, String campo) {
+        String consulta = normalizar(texto);
+        List<Producto> resultado = new ArrayList<>();
+        if (consulta.isEmpty()) {
+            return resultado;
+        }
+
+        boolean enNombre = !CAMPO_CATEGORIA.equals(campo);
+        boolean enCategoria = !CAMPO_NOMBRE.equals(campo);
+
+        Collection<Integer> candidatos;
+        if (consulta.length() < 3) {
+            candidatos = documentos.keySet();
+        } else {
+            Set<Integer> union = new HashSet<>();
+            if (enNombre) {
+                union.addAll(intersectar(trigramasNombre, consulta));
+            }
+            if (enCategoria) {
+                union.addAll(intersectar(trigramasCategoria, consulta));
+            }
+            candidatos = union;
+        }
+
+        List<Documento> encontrados = new ArrayList<>();
+        Map<Documento, Integer> rangoPorDocumento = new HashMap<>();
+        for (Integer id : candidatos) {
+            Documento d = documentos.get(id);
+            int rango = d.rango(consulta, enNombre, enCategoria);
+            if (rango >= 0) {
+                encontrados.add(d);
+                rangoPorDocumento.put(d, rango);
+            }
+        }
+
+        encontrados.sort(Comparator
+                .comparingInt((Documento d) -> rangoPorDocumento.get(d))
+                .thenComparing(d -> d.nombre)
+                .thenComparingInt(d -> d.producto.getId()));
+
+        for (Documento d : encontrados) {
+            resultado.add(ProductoRepositoryCache.copiar(d.producto));
+        }
+        return resultado;
+    }
+
+    /**
+     * Búsqueda tolerante a errores de tipeo en el nombre ("camisetta" encuentra "Camiseta roja").
+     * Cada palabra escrita debe coincidir con alguna palabra del nombre, como prefijo (puede estar a medio
+     * escribir) o a pocas ediciones (ver toleranciaPara).
+     *
+     * @return Copias de los productos encontrados, de menos a más ediciones en total (vacía si no hay)
+     */
+    synchronized List<Producto> buscarAproximado(String texto) {
+        String consulta = normalizar(texto);
+        List<Producto> resultado = new ArrayList<>();
+        if (consulta.isEmpty()) {
+            return resultado;
+        }
+
+        // El árbol conserva las palabras de productos ya modificados o eliminados: se rearma si sobran muchas
+        if (arbol.getTamano() > 2 * palabras.size() + 100) {
+            arbol = new ArbolBK();
+            for (String palabra : palabras.keySet()) {
+                arbol.agregar(palabra);
+            }
+        }
+
+        Map<Integer, Integer> distancias = null;
+        for (String escrita : consulta.split(" ")) {
+            Map<Integer, Integer> dePalabra = new HashMap<>();
+            for (Set<Integer> ids : palabras.subMap(escrita, true, escrita + Character.MAX_VALUE, true).values()) {
+                for (Integer id : ids) {
+                    dePalabra.put(id, 0);
+                }
+            }
+            int tolerancia = toleranciaPara(escrita);
+            if (tolerancia > 0) {
+                for (Map.Entry<String, Integer> cercana : arbol.buscar(escrita, tolerancia).entrySet()) {
+                    Set<Integer> ids = palabras.get(cercana.getKey());
+                    if (ids == null) {
+                        continue; // Palabra de un producto que ya no la tiene
+                    }
+                    for (Integer id : ids) {
+                        dePalabra.merge(id, cercana.getValue(), Math::min);
+                    }
+                }
+            }
+
+            if (distancias == null) {
+                distancias = dePalabra;
+            } else {
+                distancias.keySet().retainAll(dePalabra.keySet());
+                distancias.replaceAll((id, d) -> d + dePalabra.get(id));
+            }
+            if (distancias.isEmpty()) {
+                return resultado;
+            }
+        }
+
+        Map<Integer, Integer> total = distancias;
+        List<Documento> encontrados = new ArrayList<>();
+        for (Integer id : total.keySet()) {
+            encontrados.add(documentos.get(id));
+        }
+        encontrados.sort(Comparator
+                .comparingInt((Documento d) -> total.get(d.producto.getId()))
+                .thenComparing(d -> d.nombre)
+                .thenComparingInt(d -> d.producto.getId()));
+
+        for (Documento d : encontrados) {
+            resultado.add(ProductoRepositoryCache.copiar(d.producto));
+        }
+        return resultado;
+    }
+
+    /**
+     * @return ID del producto con ese código, o null si el índice no lo conoce
+     */
+    synchronized Integer idPorCodigo(String codigo) {
+        return codigo == null ? null : codigos.get(codigo.trim());
+    }
+
+    /**
+     * @return Cantidad de productos indexados.
+     */
+    synchronized int getTamano() {
+        return documentos.size();
+    }
+
+    // ========================================================================
+    // CARGA Y CAMBIOS
+    // ========================================================================
+
+    private boolean estaVigente() {
+        return !desactualizado && System.currentTimeMillis() - sincronizadoEn < refrescoMs;
+    }
+
+    private synchronized boolean isCargado() {
+        return cargado;
+    }
+
+    private boolean cargarTodo() {
+        // Todo el catálogo desde la versión 0, para partir del token de findChangedSince y no de la mayor
+        // versión leída (que puede adelantarse a escrituras que aún no confirman)
+        Response<CambiosCatalogoDTO> todos = repo.findChangedSince(0);
+        if (!todos.isOk() || todos.getContent() == null) {
+            return false;
+        }
+        synchronized (this) {
+            documentos.clear();
+            trigramasNombre.clear();
+            trigramasCategoria.clear();
+            palabras.clear();
+            arbol = new ArbolBK();
+            codigos.clear();
+            for (Producto p : todos.getContent().getCambiados()) {
+                agregar(p);
+            }
+            version = todos.getContent().getVersion();
+            cargado = true;
+        }
+        return true;
+    }
+
+    private boolean aplicarCambios() {
+        long desde;
+        synchronized (this) {
+            desde = version;
+        }
+        Response<CambiosCatalogoDTO> res = repo.findChangedSince(desde);
+        if (!res.isOk() || res.getContent() == null) {
+            return false;
+        }
+        CambiosCatalogoDTO cambios = res.getContent();
+        synchronized (this) {
+            for (Producto p : cambios.getCambiados()) {
+                quitar(p.getId());
+                agregar(p);
+            }
+            for (Integer id : cambios.getEliminados()) {
+                quitar(id);
+            }
+            version = Math.max(version, cambios.getVersion());
+        }
+        return true;
+    }
+
+    private void agregar(Producto p) {
+        Documento d = new Documento(ProductoRepositoryCache.copiar(p));
+        documentos.put(p.getId(), d);
+        for (String t : d.trigramasNombre) {
+            trigramasNombre.computeIfAbsent(t, k -> new HashSet<>()).add(p.getId());
+        }
+        for (String t : d.trigramasCategoria) {
+            trigramasCategoria.computeIfAbsent(t, k -> new HashSet<>()).add(p.getId());
+        }
+        if (p.getCodigo() != null) {
+            codigos.put(p.getCodigo(), p.getId());
+        }
+        for (String palabra : d.palabras) {
+            palabras.computeIfAbsent(palabra, k -> {
+                arbol.agregar(k);
+                return new HashSet<>();
+            }).add(p.getId());
+        }
+    }
+
+    private void quitar(int id) {
+        Documento d = documentos.remove(id);
+        if (d == null) {
+            return;
+        }
+        quitarDe(trigramasNombre, d.trigramasNombre, id);
+        quitarDe(trigramasCategoria, d.trigramasCategoria, id);
+        quitarDe(palabras, d.palabras, id);
+        String codigo = d.producto.getCodigo();
+        if (codigo != null && Integer.valueOf(id).equals(codigos.get(codigo))) {
+            codigos.remove(codigo);
+        }
+    }
+
+    private static void quitarDe(Map<String, Set<Integer>> indice, Set<String> claves, int id) {
+        for (String t : claves) {
+            Set<Integer> ids = indice.get(t);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    indice.remove(t);
+                }
+            }
+        }
+    }
+
+    // ========================================================================
+    // TEXTO
+    // ========================================================================
+
+    /**
+     * IDs que contienen todos los trigramas de la consulta (pueden incluir falsos positivos).
+     */
+    private static Set<Integer> intersectar(Map<String, Set<Integer>> indice, String consulta) {
+        List<Set<Integer>> listas = new ArrayList<>();
+        for (String t : trigramas(consulta)) {
+            Set<Integer> ids = indice.get(t);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            listas.add(ids);
+        }
+        listas.sort(Comparator.comparingInt(Set::size));
+
+        Set<Integer> resultado = new HashSet<>();
+        for (Integer id : listas.get(0)) {
+            boolean enTodas = true;
+            for (int i = 1; i < listas.size() && enTodas; i++) {
+                enTodas = listas.get(i).contains(id);
+            }
+            if (enTodas) {
+                resultado.add(id);
+            }
+        }
+        return resultado;
+    }
+
+    private static Set<String> trigramas(String texto) {
+        Set<String> resultado = new HashSet<>();
+        for (int i = 0; i + 3 <= texto.length(); i++) {
+            resultado.add(texto.substring(i, i + 3));
+        }
+        return resultado;
+    }
+
+    /**
+     * Ediciones permitidas según el largo de la palabra: en las cortas, una sola edición ya coincide
+     * con demasiadas palabras distintas.
+     */
+    private static int toleranciaPara(String palabra) {
+        if (palabra.length() <= 3) {
+            return 0;
+        }
+        return palabra.length() <= 7 ? 1 : 2;
+    }
+
+    static String normalizar(String texto) {
+        return Texto.normalizar(texto);
+    }
+
+    private static final class Documento {
+        final Producto producto;
+        final String nombre;
+        final String categoria;
+        final Set<String> trigramasNombre;
+        final Set<String> trigramasCategoria;
+        final Set<String> palabras = new HashSet<>();
+
+        Documento(Producto producto) {
+            this.producto = producto;
+            this.nombre = normalizar(producto.getNombre());
+            this.categoria = normalizar(producto.getCategoriaNombre());
+            this.trigramasNombre = trigramas(nombre);
+            this.trigramasCategoria = trigramas(categoria);
+            if (!nombre.isEmpty()) {
+                Collections.addAll(palabras, nombre.split(" "));
+            }
+        }
+
+        /**
+         * @return 0 (más relevante) a 5, o -1 si no coincide
+         */
+        int rango(String consulta, boolean enNombre, boolean enCategoria) {
+            if (enNombre) {
+                if (nombre.equals(consulta)) return 0;
+                if (nombre.startsWith(consulta)) return 1;
+                if (nombre.contains(" " + consulta)) return 2;
+                if (nombre.contains(consulta)) return 3;
+            }
+            if (enCategoria && categoria.contains(consulta)) {
+                return categoria.equals(consulta) ? 4 : 5;
+            }
+            return -1;
+        }
+    }
+}
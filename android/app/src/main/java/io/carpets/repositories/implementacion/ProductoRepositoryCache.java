@@ -0,0 +1,553 @@
+package io.carpets.repositories.implementacion;
+
+import io.carpets.Configuracion.UnidadDeTrabajo;
+import io.carpets.DTOs.CambiosCatalogoDTO;
+import io.carpets.entidades.Producto;
+import io.carpets.repositories.ProductoRepository;
+import io.carpets.util.Response;
+import io.carpets.util.UnVuelo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decorador de ProductoRepository con caché de lectura para findById.
+ *
+ * - LRU acotada por cantidad de productos: al llenarse se descarta el menos usado recientemente.
+ * - Cada entrada vence tras VIGENCIA_MS, porque otros equipos modifican la misma base de datos.
+ * - save/update/delete y los ajustes de stock invalidan las entradas afectadas. Si ocurren dentro
+ *   de una UnidadDeTrabajo se invalidan otra vez al terminarla, para que ninguna lectura concurrente
+ *   deje en caché el valor anterior al commit.
+ * - Dentro de una UnidadDeTrabajo no se lee ni se llena la caché (la transacción debe ver la fila actual,
+ *   y podría ver datos sin confirmar).
+ * - Se entregan copias: los Servicios modifican el Producto recibido antes de llamar a update().
+ *
+ * Las búsquedas por texto (buscar) se resuelven en un IndiceProductos en memoria; cada invalidación
+ * lo marca para traer los cambios antes de la siguiente búsqueda.
+ *
+ * Además, las lecturas idénticas que coinciden en el tiempo (p. ej. obtenerProductos y buscarProductos("")
+ * al abrir dos pantallas, ambas terminan en findAll) comparten una sola consulta (ver UnVuelo).
+ * Fuera de una UnidadDeTrabajo, los seguidores reciben copias de los productos.
+ */
+public class ProductoRepositoryCache implements ProductoRepository {
+
+    private static final int CAPACIDAD_MAXIMA = 500;
+    private static final long VIGENCIA_MS = 30_000;
+    private static final long REFRESCO_INDICE_MS = 5_000;
+
+    private static final ProductoRepositoryCache INSTANCIA =
+            new ProductoRepositoryCache(new ProductoRepositoryImplementacion(), CAPACIDAD_MAXIMA, VIGENCIA_MS);
+
+    private final ProductoRepository repo;
+    private final long vigenciaMs;
+    private final Map<Integer, Entrada> entradas;
+    private final IndiceProductos indice;
+
+    private final UnVuelo<Response<Producto>> vueloProducto = new UnVuelo<>();
+    private final UnVuelo<Response<List<Producto>>> vueloLista = new UnVuelo<>();
+    private final UnVuelo<Response<Double>> vueloGanancia = new UnVuelo<>();
+
+    // Aumenta con cada invalidación; evita guardar lecturas que empezaron antes de una escritura.
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong descartes = new AtomicLong();
+
+    /**
+     * Instancia compartida por todos los Servicios, para que una escritura invalide lo que lee cualquier otro.
+     */
+    public static ProductoRepositoryCache instancia() {
+        return INSTANCIA;
+    }
+
+    public ProductoRepositoryCache(ProductoRepository repo, int capacidadMaxima, long vigenciaMs) {
+        this.repo = repo;
+        this.vigenciaMs = vigenciaMs;
+        this.indice = new IndiceProductos(repo, REFRESCO_INDICE_MS);
+        // accessOrder = true: get() mueve la entrada al final, la primera es la menos usada.
+        this.entradas = new LinkedHashMap<Integer, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entrada> eldest) {
+                if (size() > capacidadMaxima) {
+                    descartes.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // ========================================================================
+    // LECTURAS CON CACHÉ
+    // ========================================================================
+
+    @Override
+    public Response<Producto> findById(int id) {
+        // En una transacción se lee siempre de la base de datos: la caché puede ir hasta VIGENCIA_MS atrás
+        if (UnidadDeTrabajo.estaActiva()) {
+            return repo.findById(id);
+        }
+
+        Producto enCache = leer(id);
+        if (enCache != null) {
+            aciertos.incrementAndGet();
+            Response<Producto> response = new Response<>();
+            response.exito(copiar(enCache));
+            return response;
+        }
+        fallos.incrementAndGet();
+
+        return vueloProducto.ejecutar(Arrays.asList("findById", id), () -> {
+            long generacionLeida = generacion.get();
+            Response<Producto> response = repo.findById(id);
+            if (response.isOk()) {
+                guardar(copiar(response.getContent()), generacionLeida);
+            }
+            return response;
+        }, ProductoRepositoryCache::copiarRespuesta);
+    }
+
+    /**
+     * Código de barras: el índice de búsqueda lo traduce a ID (HashMap) y el producto sale de findById,
+     * normalmente desde memoria. Si el índice no conoce el código se consulta la base de datos (puede
+     * ser un producto creado en otro equipo después de la última sincronización), salvo que el texto sea
+     * un número que cabe en un int: así un ID escrito a mano, que también se prueba como código, no
+     * cuesta una consulta. Un código de ese tipo creado en otro equipo aparece al refrescarse el índice.
+     */
+    @Override
+    public Response<Producto> findByCodigo(String codigo) {
+        if (UnidadDeTrabajo.estaActiva() || !indice.sincronizar()) {
+            return repo.findByCodigo(codigo);
+        }
+
+        Integer id = indice.idPorCodigo(codigo);
+        if (id != null) {
+            Response<Producto> response = findById(id);
+            if (response.isOk() && codigo.trim().equals(response.getContent().getCodigo())) {
+                return response;
+            }
+            // El código cambió de producto después de la última sincronización
+            return repo.findByCodigo(codigo);
+        }
+
+        if (pareceId(codigo)) {
+            Response<Producto> response = new Response<>();
+            response.exito();
+            return response;
+        }
+        return repo.findByCodigo(codigo);
+    }
+
+    /**
+     * Los que están en caché salen de memoria; el resto se trae con una sola consulta (IN) y queda en caché.
+     */
+    @Override
+    public Response<List<Producto>> findByIds(Collection<Integer> ids) {
+        if (UnidadDeTrabajo.estaActiva()) {
+            return repo.findByIds(ids);
+        }
+
+        List<Producto> encontrados = new ArrayList<>();
+        Set<Integer> faltantes = new LinkedHashSet<>();
+        if (ids != null) {
+            for (Integer id : new LinkedHashSet<>(ids)) {
+                Producto enCache = id != null ? leer(id) : null;
+                if (enCache != null) {
+                    aciertos.incrementAndGet();
+                    encontrados.add(copiar(enCache));
+                } else if (id != null) {
+                    fallos.incrementAndGet();
+                    faltantes.add(id);
+                }
+            }
+        }
+
+        if (!faltantes.isEmpty()) {
+            long generacionLeida = generacion.get();
+            Response<List<Producto>> leidos = repo.findByIds(faltantes);
+            if (!leidos.isOk()) {
+                return leidos;
+            }
+            for (Producto p : leidos.getContent()) {
+                guardar(copiar(p), generacionLeida);
+                encontrados.add(p);
+            }
+        }
+
+        Response<List<Producto>> response = new Response<>();
+        response.exito(encontrados);
+        return response;
+    }
+
+    /**
+     * Los códigos se traducen a ID con el índice de búsqueda y los productos salen de findByIds.
+     * Como en findByCodigo, los que el índice no conoce (salvo los que parecen un ID) se buscan en la
+     * base de datos, todos en una sola consulta.
+     */
+    @Override
+    public Response<List<Producto>> findByCodigos(Collection<String> codigos) {
+        if (UnidadDeTrabajo.estaActiva() || !indice.sincronizar()) {
+            return repo.findByCodigos(codigos);
+        }
+
+        Set<Integer> ids = new LinkedHashSet<>();
+        Set<String> desconocidos = new LinkedHashSet<>();
+        if (codigos != null) {
+            for (String codigo : codigos) {
+                Integer id = indice.idPorCodigo(codigo);
+                if (id != null) {
+                    ids.add(id);
+                } else if (codigo != null && !codigo.trim().isEmpty() && !pareceId(codigo)) {
+                    desconocidos.add(codigo.trim());
+                }
+            }
+        }
+
+        Response<List<Producto>> response = findByIds(ids);
+        if (!response.isOk() || desconocidos.isEmpty()) {
+            return response;
+        }
+        Response<List<Producto>> nuevos = repo.findByCodigos(desconocidos);
+        if (!nuevos.isOk()) {
+            return nuevos;
+        }
+        for (Producto p : nuevos.getContent()) {
+            if (!ids.contains(p.getId())) {
+                response.getContent().add(p);
+            }
+        }
+        return response;
+    }
+
+    /** Un texto que cabe en un int también se prueba como ID; no merece una consulta como código. */
+    private static boolean pareceId(String codigo) {
+        try {
+            Integer.parseInt(codigo.trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Response<Boolean> existeIdById(int id) {
+        if (!UnidadDeTrabajo.estaActiva() && leer(id) != null) {
+            aciertos.incrementAndGet();
+            Response<Boolean> response = new Response<>();
+            response.exito(true);
+            return response;
+        }
+        return repo.existeIdById(id);
+    }
+
+    // ========================================================================
+    // ESCRITURAS (INVALIDAN)
+    // ========================================================================
+
+    @Override
+    public Response save(Producto producto) {
+        try {
+            return repo.save(producto);
+        } finally {
+            // Un producto nuevo no puede estar en caché, pero el índice de búsqueda debe incluirlo
+            if (producto != null) {
+                invalidar(producto.getId());
+            }
+        }
+    }
+
+    @Override
+    public Response update(Producto producto) {
+        try {
+            return repo.update(producto);
+        } finally {
+            if (producto != null) {
+                invalidar(producto.getId());
+            }
+        }
+    }
+
+    @Override
+    public Response delete(int id) {
+        try {
+            return repo.delete(id);
+        } finally {
+            invalidar(id);
+        }
+    }
+
+    @Override
+    public Response descontarStock(int id, int cantidad) {
+        try {
+            return repo.descontarStock(id, cantidad);
+        } finally {
+            invalidar(id);
+        }
+    }
+
+    @Override
+    public Response descontarStockLote(Map<Integer, Integer> cantidadesPorProducto) {
+        try {
+            return repo.descontarStockLote(cantidadesPorProducto);
+        } finally {
+            if (cantidadesPorProducto != null) {
+                for (Integer id : cantidadesPorProducto.keySet()) {
+                    if (id != null) {
+                        invalidar(id);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Response incrementarStock(int id, int cantidad) {
+        try {
+            return repo.incrementarStock(id, cantidad);
+        } finally {
+            invalidar(id);
+        }
+    }
+
+    // ========================================================================
+    // CONSULTAS SIN CACHÉ (SOLO SE AGRUPAN LAS QUE COINCIDEN EN EL TIEMPO)
+    // ========================================================================
+
+    @Override
+    public Response<List<Producto>> findAll() {
+        return compartirLista(Arrays.asList("findAll"), repo::findAll);
+    }
+
+    @Override
+    public Response<List<Producto>> findPage(String afterNombre, int afterId, int limit) {
+        return compartirLista(Arrays.asList("findPage", afterNombre, afterId, limit),
+                () -> repo.findPage(afterNombre, afterId, limit));
+    }
+
+    @Override
+    public Response<List<Producto>> findByCategoria(String categoriaNombre) {
+        return compartirLista(Arrays.asList("findByCategoria", categoriaNombre),
+                () -> repo.findByCategoria(categoriaNombre));
+    }
+
+    @Override
+    public Response<List<Producto>> findByNombre(String nombre) {
+        return compartirLista(Arrays.asList("findByNombre", nombre), () -> repo.findByNombre(nombre));
+    }
+
+    /**
+     * Búsqueda en memoria (ver IndiceProductos). Dentro de una UnidadDeTrabajo, o si el índice aún no
+     * se pudo cargar, se consulta la base de datos.
+     */
+    @Override
+    public Response<List<Producto>> buscar(String texto, String campo) {
+        if (UnidadDeTrabajo.estaActiva() || !indice.sincronizar()) {
+            return repo.buscar(texto, campo);
+        }
+        Response<List<Producto>> response = new Response<>();
+        response.exito(indice.buscar(texto, campo));
+        return response;
+    }
+
+    /**
+     * Búsqueda tolerante a errores de tipeo en memoria (ver IndiceProductos.buscarAproximado).
+     */
+    @Override
+    public Response<List<Producto>> buscarAproximado(String texto) {
+        if (UnidadDeTrabajo.estaActiva() || !indice.sincronizar()) {
+            return repo.buscarAproximado(texto);
+        }
+        Response<List<Producto>> response = new Response<>();
+        response.exito(indice.buscarAproximado(texto));
+        return response;
+    }
+
+    @Override
+    public Response<CambiosCatalogoDTO> findChangedSince(long version) {
+        return repo.findChangedSince(version);
+    }
+
+    @Override
+    public Response<Double> getGananciaTotal() {
+        if (UnidadDeTrabajo.estaActiva()) {
+            return repo.getGananciaTotal();
+        }
+        // Double es inmutable: basta con que cada llamador tenga su propia Response
+        return vueloGanancia.ejecutar(Arrays.asList("getGananciaTotal"), repo::getGananciaTotal, original -> {
+            Response<Double> copia = new Response<>();
+            copia.copiarEstado(original);
+            if (original.isOk() && original.getContent() != null) {
+                copia.exito(original.getContent());
+            }
+            return copia;
+        });
+    }
+
+    @Override
+    public Response<Double> getGananciaProducto(int id) {
+        return repo.getGananciaProducto(id);
+    }
+
+    // ========================================================================
+    // ESTADÍSTICAS
+    // ========================================================================
+
+    /**
+     * @return Lecturas servidas desde memoria.
+     */
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    /**
+     * @return Lecturas que tuvieron que ir a la base de datos.
+     */
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    /**
+     * @return Entradas descartadas por falta de capacidad.
+     */
+    public long getDescartes() {
+        return descartes.get();
+    }
+
+    /**
+     * @return Lecturas que reutilizaron la consulta en curso de otro hilo.
+     */
+    public long getLecturasCompartidas() {
+        return vueloProducto.getCompartidas() + vueloLista.getCompartidas() + vueloGanancia.getCompartidas();
+    }
+
+    /**
+     * @return Cantidad de productos en el índice de búsqueda.
+     */
+    public int getProductosIndexados() {
+        return indice.getTamano();
+    }
+
+    /**
+     * @return Cantidad de productos en caché en este momento.
+     */
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    /**
+     * Vacía la caché (los contadores se conservan).
+     */
+    public synchronized void limpiar() {
+        entradas.clear();
+    }
+
+    // ========================================================================
+    // MÉTODOS PRIVADOS AUXILIARES
+    // ========================================================================
+
+    private synchronized Producto leer(int id) {
+        Entrada e = entradas.get(id);
+        if (e == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - e.guardadaEn >= vigenciaMs) {
+            entradas.remove(id);
+            return null;
+        }
+        return e.producto;
+    }
+
+    /**
+     * Guarda el producto solo si no hubo invalidaciones desde que se empezó a leer:
+     * si las hubo, lo leído podría ser anterior a esa escritura.
+     */
+    private synchronized void guardar(Producto producto, long generacionLeida) {
+        if (generacion.get() == generacionLeida) {
+            entradas.put(producto.getId(), new Entrada(producto));
+        }
+    }
+
+    /**
+     * Quita el producto ahora y, si hay una transacción abierta, otra vez cuando termine.
+     */
+    private void invalidar(int id) {
+        quitar(id);
+        if (UnidadDeTrabajo.estaActiva()) {
+            UnidadDeTrabajo.despuesDeTerminar(() -> quitar(id));
+        }
+    }
+
+    private synchronized void quitar(int id) {
+        generacion.incrementAndGet();
+        entradas.remove(id);
+        indice.marcarDesactualizado();
+    }
+
+    private Response<List<Producto>> compartirLista(Object clave, Supplier<Response<List<Producto>>> consulta) {
+        if (UnidadDeTrabajo.estaActiva()) {
+            // La transacción podría ver cambios propios sin confirmar: no se comparte con otros hilos.
+            return consulta.get();
+        }
+        return vueloLista.ejecutar(clave, consulta, ProductoRepositoryCache::copiarRespuestaLista);
+    }
+
+    /**
+     * Copia para cada llamador de una lectura compartida: Response y productos propios, también en los errores.
+     */
+    private static Response<Producto> copiarRespuesta(Response<Producto> original) {
+        Response<Producto> copia = new Response<>();
+        copia.copiarEstado(original);
+        if (original.isOk() && original.getContent() != null) {
+            copia.exito(copiar(original.getContent()));
+        }
+        return copia;
+    }
+
+    private static Response<List<Producto>> copiarRespuestaLista(Response<List<Producto>> original) {
+        Response<List<Producto>> copia = new Response<>();
+        copia.copiarEstado(original);
+        if (original.isOk() && original.getContent() != null) {
+            List<Producto> productos = new ArrayList<>(original.getContent().size());
+            for (Producto p : original.getContent()) {
+                productos.add(copiar(p));
+            }
+            copia.exito(productos);
+        }
+        return copia;
+    }
+
+    static Producto copiar(Producto p) {
+        Producto copia = new Producto();
+        copia.setId(p.getId());
+        copia.setNombre(p.getNombre());
+        copia.setFechaIngreso(p.getFechaIngreso() != null ? new java.util.Date(p.getFechaIngreso().getTime()) : null);
+        copia.setPrecioCompra(p.getPrecioCompra());
+        copia.setPrecioVenta(p.getPrecioVenta());
+        copia.setCantidad(p.getCantidad());
+        copia.setCategoriaNombre(p.getCategoriaNombre());
+        copia.setImagePath(p.getImagePath());
+        copia.setPrecioOferta(p.getPrecioOferta());
+        copia.setVersion(p.getVersion());
+        copia.setCodigo(p.getCodigo());
+        return copia;
+    }
+
+    private static final class Entrada {
+        final Producto producto;
+        final long guardadaEn;
+
+        Entrada(Producto producto) {
+            this.producto = producto;
+            this.guardadaEn = System.currentTimeMillis();
+        }
+    }
+}
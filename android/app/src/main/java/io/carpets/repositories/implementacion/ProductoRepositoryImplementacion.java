@@ -2,13 +2,20 @@ package io.carpets.repositories.implementacion;
 
 import androidx.annotation.NonNull;
 import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.Configuracion.UnidadDeTrabajo;
+import io.carpets.DTOs.CambiosCatalogoDTO;
 import io.carpets.entidades.Producto;
 import io.carpets.repositories.ProductoRepository;
 import io.carpets.util.Response;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementación del repositorio para la gestión de productos.
@@ -16,6 +23,10 @@ import java.util.List;
  */
 public class ProductoRepositoryImplementacion implements ProductoRepository {
 
+    // Cuánto puede tardar en confirmarse una escritura sobre producto desde que recibe su versión.
+    // El token de findChangedSince va este tanto por detrás del reloj del servidor.
+    private static final long MARGEN_CONFIRMACION_MICROS = 60_000_000L;
+
     // ========================================================================
     // MÉTODOS PRIVADOS AUXILIARES
     // ========================================================================
@@ -94,9 +105,32 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
             p.setPrecioOferta(null);
         }
 
+        p.setVersion(rs.getLong("version"));
+        p.setCodigo(rs.getString("codigo"));
+
         return p;
     }
 
+    /**
+     * @return true si el error es por repetir el código de otro producto (índice uq_producto_codigo)
+     */
+    private static boolean esCodigoDuplicado(SQLException e) {
+        return e.getErrorCode() == 1062 && e.getMessage() != null && e.getMessage().contains("uq_producto_codigo");
+    }
+
+    /**
+     * Comprueba si el producto existe usando una conexión ya abierta
+     * (distingue "no existe" de "cambió de versión" tras un UPDATE sin filas afectadas).
+     */
+    private boolean existeProducto(Connection conn, int id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM producto WHERE id_producto = ?")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
     // ========================================================================
     // MÉTODOS CRUD
     // ========================================================================
@@ -153,8 +187,8 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
         }
 
         String sql = "INSERT INTO producto " +
-                "(nombre, fecha_ingreso, precio_compra, precio_venta, cantidad, categoria_nombre, image_path, precio_oferta) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                "(nombre, fecha_ingreso, precio_compra, precio_venta, cantidad, categoria_nombre, image_path, precio_oferta, codigo) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection conn = ConfiguracionBaseDatos.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -183,6 +217,9 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
                 stmt.setNull(8, java.sql.Types.DECIMAL);
             }
 
+            // 9. Código (puede ser NULL)
+            stmt.setString(9, producto.getCodigo());
+
             int rows = stmt.executeUpdate();
 
             if (rows > 0) {
@@ -203,7 +240,11 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
             response.internal_error("PRI.save: No se insertó ningún registro");
 
         } catch (SQLException e) {
-            response.internal_error("PRI.save: Error SQL - " + e.getMessage());
+            if (esCodigoDuplicado(e)) {
+                response.conflicto("Ya existe un producto con el código '" + producto.getCodigo() + "'.");
+            } else {
+                response.internal_error("PRI.save: Error SQL - " + e.getMessage());
+            }
         }
 
         return response;
@@ -212,8 +253,12 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
     /**
      * Actualiza la información de un producto existente.
      *
+     * Si el producto trae la versión con la que se leyó (>= 0), solo se actualiza si sigue siendo esa:
+     * así una edición del inventario no revierte el stock que otra caja acaba de descontar. Sin versión
+     * se actualiza todo menos la cantidad, que entonces solo cambia con incrementarStock/descontarStock.
+     *
      * @param producto Producto con los datos actualizados (debe incluir el ID)
-     * @return Response indicando éxito o error
+     * @return Response indicando éxito, error, o conflicto si otro usuario lo modificó antes
      */
     @Override
     public Response update(Producto producto) {
@@ -250,10 +295,16 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
             return response;
         }
 
+        // Con versión: solo se escribe si nadie modificó el producto desde que se leyó (compare-and-set).
+        // Sin versión (negativa): clientes antiguos, se escribe todo menos la cantidad, que no se puede
+        // comprobar (sobrescribirla revertiría las ventas hechas desde que se leyó).
+        boolean conVersion = producto.getVersion() >= 0;
         String sql = "UPDATE producto " +
                 "SET nombre = ?, fecha_ingreso = ?, precio_compra = ?, precio_venta = ?, " +
-                "    cantidad = ?, categoria_nombre = ?, image_path = ?, precio_oferta = ? " +
-                "WHERE id_producto = ?";
+                (conVersion ? "    cantidad = ?, " : "") +
+                "    categoria_nombre = ?, image_path = ?, precio_oferta = ? " +
+                (producto.isConservarCodigo() ? "" : ", codigo = ? ") +
+                "WHERE id_producto = ?" + (conVersion ? " AND version = ?" : "");
 
         try (Connection conn = ConfiguracionBaseDatos.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -268,33 +319,52 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
                 stmt.setDate(2, new java.sql.Date(System.currentTimeMillis()));
             }
 
-            // 3-7. Datos del producto
+            // 3-4. Precios
             stmt.setDouble(3, producto.getPrecioCompra());
             stmt.setDouble(4, producto.getPrecioVenta());
-            stmt.setInt(5, producto.getCantidad());
-            stmt.setString(6, producto.getCategoriaNombre().trim());
-            stmt.setString(7, producto.getImagePath());
 
-            // 8. Precio de oferta
+            // Cantidad solo con versión (desde aquí los índices se corren uno si no va)
+            int i = 5;
+            if (conVersion) {
+                stmt.setInt(i++, producto.getCantidad());
+            }
+            stmt.setString(i++, producto.getCategoriaNombre().trim());
+            stmt.setString(i++, producto.getImagePath());
+
+            // Precio de oferta
             if (producto.getPrecioOferta() != null && producto.getPrecioOferta() > 0) {
-                stmt.setDouble(8, producto.getPrecioOferta());
+                stmt.setDouble(i++, producto.getPrecioOferta());
             } else {
-                stmt.setNull(8, java.sql.Types.DECIMAL);
+                stmt.setNull(i++, java.sql.Types.DECIMAL);
+            }
+
+            // Código: null lo quita; si el cliente no lo envió no va en el SET y se conserva el actual
+            if (!producto.isConservarCodigo()) {
+                stmt.setString(i++, producto.getCodigo());
             }
 
-            // 9. ID (condición WHERE)
-            stmt.setInt(9, producto.getId());
+            // ID y versión leída (condición WHERE)
+            stmt.setInt(i++, producto.getId());
+            if (conVersion) {
+                stmt.setLong(i, producto.getVersion());
+            }
 
             int rowsAffected = stmt.executeUpdate();
 
             if (rowsAffected > 0) {
                 response.exito();
+            } else if (conVersion && existeProducto(conn, producto.getId())) {
+                response.conflicto("El producto fue modificado por otro usuario. Recargue los datos e intente de nuevo.");
             } else {
                 response.internal_error("PRI.update: No existe un producto con id = " + producto.getId());
             }
 
         } catch (SQLException e) {
-            response.internal_error("PRI.update: Error SQL - " + e.getMessage());
+            if (esCodigoDuplicado(e)) {
+                response.conflicto("Ya existe un producto con el código '" + producto.getCodigo() + "'.");
+            } else {
+                response.internal_error("PRI.update: Error SQL - " + e.getMessage());
+            }
         }
 
         return response;
@@ -365,7 +435,7 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
 
         String sql = "SELECT " +
                 "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
-                "  cantidad, categoria_nombre, image_path, precio_oferta " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
                 "FROM producto " +
                 "WHERE id_producto = ?";
 
@@ -391,6 +461,122 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
         return response;
     }
 
+    /**
+     * Encuentra varios productos por ID con una sola consulta (WHERE id_producto IN (...)).
+     *
+     * @param ids IDs a buscar (los repetidos se consultan una vez)
+     * @return Response<List<Producto>> con los que existen (vacía si ninguno) o error
+     */
+    @Override
+    public Response<List<Producto>> findByIds(Collection<Integer> ids) {
+        Set<Integer> distintos = new LinkedHashSet<>();
+        if (ids != null) {
+            for (Integer id : ids) {
+                if (id != null && id > 0) {
+                    distintos.add(id);
+                }
+            }
+        }
+        return buscarEn("id_producto", new ArrayList<>(distintos), "PRI.findByIds");
+    }
+
+    /**
+     * Encuentra varios productos por código con una sola consulta (WHERE codigo IN (...)).
+     *
+     * @param codigos Códigos a buscar (los vacíos se ignoran)
+     * @return Response<List<Producto>> con los que existen (vacía si ninguno) o error
+     */
+    @Override
+    public Response<List<Producto>> findByCodigos(Collection<String> codigos) {
+        Set<String> distintos = new LinkedHashSet<>();
+        if (codigos != null) {
+            for (String codigo : codigos) {
+                if (codigo != null && !codigo.trim().isEmpty()) {
+                    distintos.add(codigo.trim());
+                }
+            }
+        }
+        return buscarEn("codigo", new ArrayList<>(distintos), "PRI.findByCodigos");
+    }
+
+    private Response<List<Producto>> buscarEn(String columna, List<?> valores, String origen) {
+        Response<List<Producto>> response = new Response<>();
+        List<Producto> lista = new ArrayList<>();
+
+        if (valores.isEmpty()) {
+            response.exito(lista);
+            return response;
+        }
+
+        String sql = "SELECT " +
+                "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
+                "FROM producto " +
+                "WHERE " + columna + " IN (" + String.join(", ", Collections.nCopies(valores.size(), "?")) + ")";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < valores.size(); i++) {
+                stmt.setObject(i + 1, valores.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearProducto(rs));
+                }
+            }
+            response.exito(lista);
+
+        } catch (SQLException e) {
+            response.internal_error(origen + ": Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Encuentra un producto por su código de barras / SKU (índice único uq_producto_codigo).
+     *
+     * @param codigo Código escaneado o escrito
+     * @return Response<Producto> con el producto, éxito sin contenido si ningún producto tiene ese código, o error
+     */
+    @Override
+    public Response<Producto> findByCodigo(String codigo) {
+        Response<Producto> response = new Response<>();
+
+        // Validación de entrada
+        if (codigo == null || codigo.trim().isEmpty()) {
+            response.internal_error("PRI.findByCodigo: El código no puede estar vacío");
+            return response;
+        }
+
+        String sql = "SELECT " +
+                "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
+                "FROM producto " +
+                "WHERE codigo = ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, codigo.trim());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    response.exito(mapearProducto(rs));
+                } else {
+                    response.exito();
+                }
+            }
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.findByCodigo: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Obtiene todos los productos de la base de datos.
      *
@@ -403,7 +589,7 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
 
         String sql = "SELECT " +
                 "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
-                "  cantidad, categoria_nombre, image_path, precio_oferta " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
                 "FROM producto " +
                 "ORDER BY nombre ASC";
 
@@ -428,6 +614,142 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
         return response;
     }
 
+    /**
+     * Obtiene una página del catálogo ordenado por (nombre, id_producto) usando paginación por clave.
+     *
+     * En lugar de OFFSET (que obliga a recorrer todas las filas anteriores), la página siguiente
+     * empieza justo después del último producto recibido, por lo que el costo no crece con la posición.
+     *
+     * @param afterNombre Nombre del último producto de la página anterior (null para la primera página)
+     * @param afterId ID del último producto de la página anterior (se ignora en la primera página)
+     * @param limit Cantidad máxima de productos a retornar (debe ser > 0)
+     * @return Response<List<Producto>> con la página (vacía si no hay más productos) o error
+     */
+    @Override
+    public Response<List<Producto>> findPage(String afterNombre, int afterId, int limit) {
+        Response<List<Producto>> response = new Response<>();
+        List<Producto> lista = new ArrayList<>();
+
+        // Validación de entrada
+        if (limit <= 0) {
+            response.internal_error("PRI.findPage: El límite debe ser mayor a 0");
+            return response;
+        }
+
+        boolean primeraPagina = afterNombre == null;
+
+        // "nombre >= ?" acota el rango en el índice; el OR desempata productos con el mismo nombre
+        String sql = "SELECT " +
+                "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
+                "FROM producto " +
+                (primeraPagina ? "" : "WHERE nombre >= ? AND (nombre > ? OR id_producto > ?) ") +
+                "ORDER BY nombre ASC, id_producto ASC " +
+                "LIMIT ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int paramIndex = 1;
+            if (!primeraPagina) {
+                stmt.setString(paramIndex++, afterNombre);
+                stmt.setString(paramIndex++, afterNombre);
+                stmt.setInt(paramIndex++, afterId);
+            }
+            stmt.setInt(paramIndex, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearProducto(rs));
+                }
+            }
+
+            response.exito(lista);
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.findPage: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Obtiene los cambios del catálogo posteriores a una versión (sincronización incremental).
+     *
+     * Cada escritura sobre producto recibe como versión el instante en que se hizo, en microsegundos
+     * (la asignan los triggers, ver migración 010), y cada eliminación deja una lápida en producto_eliminado.
+     * Las consultas se hacen en la misma transacción para leer una foto consistente.
+     *
+     * Como las versiones no se confirman en orden, el token devuelto es "ahora - MARGEN_CONFIRMACION_MICROS"
+     * y no la mayor versión leída: una escritura que aún no confirma nunca queda por debajo del token.
+     * Los cambios más nuevos que el token se vuelven a enviar en la siguiente llamada.
+     *
+     * @param version Versión de la última sincronización del cliente (0 para traer todo el catálogo)
+     * @return Response<CambiosCatalogoDTO> con los productos modificados, los ids eliminados y la nueva versión
+     */
+    @Override
+    public Response<CambiosCatalogoDTO> findChangedSince(long version) {
+        Response<CambiosCatalogoDTO> response = new Response<>();
+
+        // Validación de entrada
+        if (version < 0) {
+            response.internal_error("PRI.findChangedSince: La versión no puede ser negativa");
+            return response;
+        }
+
+        String sqlCambiados = "SELECT " +
+                "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
+                "FROM producto " +
+                "WHERE version > ? " +
+                "ORDER BY version ASC";
+        String sqlEliminados = "SELECT id_producto, version FROM producto_eliminado WHERE version > ?";
+        String sqlAhora = "SELECT CAST(UNIX_TIMESTAMP(NOW(6)) * 1000000 AS UNSIGNED)";
+
+        CambiosCatalogoDTO cambios = new CambiosCatalogoDTO();
+        long corte = 0;
+
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection()) {
+
+            // Primero el reloj: las escrituras con versión hasta "ahora - margen" ya confirmaron y las ven las lecturas que siguen
+            try (PreparedStatement stmt = conn.prepareStatement(sqlAhora);
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    corte = rs.getLong(1) - MARGEN_CONFIRMACION_MICROS;
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlCambiados)) {
+                stmt.setLong(1, version);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        cambios.getCambiados().add(mapearProducto(rs));
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlEliminados)) {
+                stmt.setLong(1, version);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        cambios.getEliminados().add(rs.getInt("id_producto"));
+                    }
+                }
+            }
+
+            uow.confirmar();
+
+            cambios.setVersion(Math.max(version, corte));
+            response.exito(cambios);
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.findChangedSince: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Busca productos por categoría.
      *
@@ -447,7 +769,7 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
 
         String sql = "SELECT " +
                 "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
-                "  cantidad, categoria_nombre, image_path, precio_oferta " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
                 "FROM producto " +
                 "WHERE categoria_nombre = ? " +
                 "ORDER BY nombre ASC";
@@ -495,7 +817,7 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
 
         String sql = "SELECT " +
                 "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
-                "  cantidad, categoria_nombre, image_path, precio_oferta " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
                 "FROM producto " +
                 "WHERE nombre LIKE ? " +
                 "ORDER BY nombre ASC";
@@ -524,14 +846,117 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
         return response;
     }
 
+    /**
+     * Busca el texto en el nombre y/o la categoría con una sola consulta, ordenando por relevancia:
+     * nombre igual, nombre que empieza con el texto, alguna palabra que empieza con él, el resto.
+     * ProductoRepositoryCache responde lo mismo desde memoria; esta versión es para cuando no puede.
+     *
+     * @param texto Texto a buscar (búsqueda parcial)
+     * @param campo "nombre", "categoria" o null para ambos
+     * @return Response<List<Producto>> con los productos encontrados (vacía si no hay) o error
+     */
+    @Override
+    public Response<List<Producto>> buscar(String texto, String campo) {
+        Response<List<Producto>> response = new Response<>();
+        List<Producto> lista = new ArrayList<>();
+
+        // Validación de entrada
+        if (texto == null || texto.trim().isEmpty()) {
+            response.internal_error("PRI.buscar: El texto a buscar no puede estar vacío");
+            return response;
+        }
+
+        String q = escaparLike(texto.trim());
+        List<String> condiciones = new ArrayList<>();
+        List<String> parametros = new ArrayList<>();
+        if (!"categoria".equals(campo)) {
+            condiciones.add("nombre LIKE ?");
+            parametros.add("%" + q + "%");
+        }
+        if (!"nombre".equals(campo)) {
+            condiciones.add("categoria_nombre LIKE ?");
+            parametros.add("%" + q + "%");
+        }
+
+        String sql = "SELECT " +
+                "  id_producto, nombre, fecha_ingreso, precio_compra, precio_venta, " +
+                "  cantidad, categoria_nombre, image_path, precio_oferta, version, codigo " +
+                "FROM producto " +
+                "WHERE " + String.join(" OR ", condiciones) + " " +
+                "ORDER BY CASE " +
+                "  WHEN nombre LIKE ? THEN 0 " +
+                "  WHEN nombre LIKE ? THEN 1 " +
+                "  WHEN nombre LIKE ? THEN 2 " +
+                "  WHEN nombre LIKE ? THEN 3 " +
+                "  ELSE 4 END, nombre ASC, id_producto ASC";
+        parametros.add(q);
+        parametros.add(q + "%");
+        parametros.add("% " + q + "%");
+        parametros.add("%" + q + "%");
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < parametros.size(); i++) {
+                stmt.setString(i + 1, parametros.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearProducto(rs));
+                }
+            }
+            response.exito(lista);
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.buscar: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Búsqueda tolerante a errores de tipeo. La distancia de edición no se puede resolver con un índice
+     * de MySQL, así que se arma un IndiceProductos temporal con findAll. ProductoRepositoryCache la
+     * responde con su índice ya cargado; esta versión es para cuando no puede.
+     *
+     * @param texto Texto a buscar
+     * @return Response<List<Producto>> con los productos encontrados (vacía si no hay) o error
+     */
+    @Override
+    public Response<List<Producto>> buscarAproximado(String texto) {
+        Response<List<Producto>> response = new Response<>();
+
+        if (texto == null || texto.trim().isEmpty()) {
+            response.internal_error("PRI.buscarAproximado: El texto a buscar no puede estar vacío");
+            return response;
+        }
+
+        IndiceProductos temporal = new IndiceProductos(this, 0);
+        if (!temporal.sincronizar()) {
+            response.internal_error("PRI.buscarAproximado: No se pudo leer el catálogo");
+            return response;
+        }
+        response.exito(temporal.buscarAproximado(texto));
+        return response;
+    }
+
+    /**
+     * Escapa los comodines de LIKE para que el texto se busque tal cual.
+     */
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     // ========================================================================
     // MÉTODOS DE UTILIDAD
     // ========================================================================
 
     /**
-     * Calcula la ganancia total de todas las ventas realizadas.
+     * Ganancia total de todas las ventas realizadas.
      *
-     * La ganancia se calcula como: (precio_venta - precio_compra) * cantidad vendida
+     * La ganancia de cada detalle es (precio_venta - costo_unitario) * cantidad, con el costo copiado al
+     * registrar la venta. Se lee del acumulado ganancia_total (una fila) que mantiene cada venta.
      *
      * @return Response<Double> con la ganancia total o error
      */
@@ -539,24 +964,14 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
     public Response<Double> getGananciaTotal() {
         Response<Double> response = new Response<>();
 
-        String sql = "SELECT SUM((d.precio_unitario - p.precio_compra) * d.cantidad) AS ganancia_total " +
-                "FROM detalle_venta d " +
-                "JOIN producto p ON d.id_producto = p.id_producto";
+        String sql = "SELECT ganancia FROM ganancia_total WHERE id = 1";
 
         try (Connection conn = ConfiguracionBaseDatos.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
-            if (rs.next()) {
-                double ganancia = rs.getDouble("ganancia_total");
-                // Si no hay ventas, SUM retorna NULL
-                if (rs.wasNull()) {
-                    ganancia = 0.0;
-                }
-                response.exito(ganancia);
-            } else {
-                response.exito(0.0);
-            }
+            // Sin ventas aún no existe la fila
+            response.exito(rs.next() ? rs.getDouble("ganancia") : 0.0);
 
         } catch (SQLException e) {
             response.internal_error("PRI.getGananciaTotal: Error SQL - " + e.getMessage());
@@ -565,6 +980,38 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
         return response;
     }
 
+    /**
+     * Ganancia acumulada de un producto (lectura por clave primaria en ganancia_producto).
+     *
+     * @param id ID del producto
+     * @return Response<Double> con la ganancia (0 si el producto aún no tiene ventas) o error
+     */
+    @Override
+    public Response<Double> getGananciaProducto(int id) {
+        Response<Double> response = new Response<>();
+
+        if (id <= 0) {
+            response.internal_error("PRI.getGananciaProducto: El ID debe ser mayor a 0");
+            return response;
+        }
+
+        String sql = "SELECT ganancia FROM ganancia_producto WHERE id_producto = ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                response.exito(rs.next() ? rs.getDouble("ganancia") : 0.0);
+            }
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.getGananciaProducto: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
     /**
      * Verifica si existe un producto con el ID especificado.
      *
@@ -605,4 +1052,183 @@ public class ProductoRepositoryImplementacion implements ProductoRepository {
 
         return response;
     }
-}
\ No newline at end of file
+
+    // ========================================================================
+    // AJUSTES DE STOCK
+    // ========================================================================
+
+    /**
+     * Descuenta stock de un producto en una sola sentencia.
+     *
+     * La condición "cantidad >= ?" se evalúa en la base de datos, por lo que dos terminales
+     * vendiendo el mismo producto no pueden pisarse ni dejar el stock en negativo.
+     *
+     * @param id Identificador del producto (debe ser > 0)
+     * @param cantidad Unidades a descontar (debe ser > 0)
+     * @return Response con exito, o message_error si el stock no alcanza
+     */
+    @Override
+    public Response descontarStock(int id, int cantidad) {
+        Response response = new Response();
+
+        // Validación de entrada
+        if (id <= 0) {
+            response.internal_error("PRI.descontarStock: El ID debe ser mayor a 0");
+            return response;
+        }
+
+        if (cantidad <= 0) {
+            response.internal_error("PRI.descontarStock: La cantidad debe ser mayor a 0");
+            return response;
+        }
+
+        String sql = "UPDATE producto SET cantidad = cantidad - ? " +
+                "WHERE id_producto = ? AND cantidad >= ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, cantidad);
+            stmt.setInt(2, id);
+            stmt.setInt(3, cantidad);
+
+            if (stmt.executeUpdate() > 0) {
+                response.exito();
+                return response;
+            }
+
+            // No se actualizó: el producto no existe o no tiene stock suficiente
+            Response<Producto> actual = findById(id);
+            if (!actual.isOk()) {
+                response.internal_error("PRI.descontarStock: No existe un producto con id = " + id);
+            } else {
+                Producto p = actual.getContent();
+                response.message_error("Stock insuficiente para '" + p.getNombre() + "': disponible "
+                        + p.getCantidad() + ", solicitado " + cantidad);
+            }
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.descontarStock: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Descuenta el stock de varios productos (un carrito completo) en una sola sentencia.
+     *
+     * Es todo o nada: si algún producto no tiene stock suficiente, no se descuenta ninguno.
+     * Si se llama dentro de una UnidadDeTrabajo, la falla marca la transacción externa para rollback.
+     *
+     * @param cantidadesPorProducto Mapa id_producto -> unidades a descontar (ids únicos)
+     * @return Response con exito, o message_error si algún producto no tiene stock suficiente
+     */
+    @Override
+    public Response descontarStockLote(Map<Integer, Integer> cantidadesPorProducto) {
+        Response response = new Response();
+
+        // Validación de entrada
+        if (cantidadesPorProducto == null || cantidadesPorProducto.isEmpty()) {
+            response.internal_error("PRI.descontarStockLote: No hay productos para descontar");
+            return response;
+        }
+
+        for (Map.Entry<Integer, Integer> e : cantidadesPorProducto.entrySet()) {
+            if (e.getKey() == null || e.getKey() <= 0 || e.getValue() == null || e.getValue() <= 0) {
+                response.internal_error("PRI.descontarStockLote: Par id/cantidad inválido (" + e.getKey() + ", " + e.getValue() + ")");
+                return response;
+            }
+        }
+
+        // UPDATE producto SET cantidad = cantidad - CASE id_producto WHEN ? THEN ? ... END
+        // WHERE id_producto IN (?, ...) AND cantidad >= CASE id_producto WHEN ? THEN ? ... END
+        StringBuilder caso = new StringBuilder("CASE id_producto");
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < cantidadesPorProducto.size(); i++) {
+            caso.append(" WHEN ? THEN ?");
+            ids.append(i == 0 ? "?" : ", ?");
+        }
+        caso.append(" END");
+
+        String sql = "UPDATE producto SET cantidad = cantidad - " + caso +
+                " WHERE id_producto IN (" + ids + ") AND cantidad >= " + caso;
+
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int paramIndex = 1;
+            for (Map.Entry<Integer, Integer> e : cantidadesPorProducto.entrySet()) {
+                stmt.setInt(paramIndex++, e.getKey());
+                stmt.setInt(paramIndex++, e.getValue());
+            }
+            for (Integer id : cantidadesPorProducto.keySet()) {
+                stmt.setInt(paramIndex++, id);
+            }
+            for (Map.Entry<Integer, Integer> e : cantidadesPorProducto.entrySet()) {
+                stmt.setInt(paramIndex++, e.getKey());
+                stmt.setInt(paramIndex++, e.getValue());
+            }
+
+            int rowsAffected = stmt.executeUpdate();
+
+            if (rowsAffected == cantidadesPorProducto.size()) {
+                uow.confirmar();
+                response.exito();
+                return response;
+            }
+
+            // Sin confirmar: al cerrar la unidad se revierten los descuentos parciales
+            response.message_error("Stock insuficiente: solo " + rowsAffected + " de "
+                    + cantidadesPorProducto.size() + " productos tienen stock suficiente");
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.descontarStockLote: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Devuelve stock a un producto (reversión de una venta o ingreso por compra) en una sola sentencia.
+     *
+     * @param id Identificador del producto (debe ser > 0)
+     * @param cantidad Unidades a sumar (debe ser > 0)
+     * @return Response indicando éxito o error
+     */
+    @Override
+    public Response incrementarStock(int id, int cantidad) {
+        Response response = new Response();
+
+        // Validación de entrada
+        if (id <= 0) {
+            response.internal_error("PRI.incrementarStock: El ID debe ser mayor a 0");
+            return response;
+        }
+
+        if (cantidad <= 0) {
+            response.internal_error("PRI.incrementarStock: La cantidad debe ser mayor a 0");
+            return response;
+        }
+
+        String sql = "UPDATE producto SET cantidad = cantidad + ? WHERE id_producto = ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, cantidad);
+            stmt.setInt(2, id);
+
+            if (stmt.executeUpdate() > 0) {
+                response.exito();
+            } else {
+                response.internal_error("PRI.incrementarStock: No existe un producto con id = " + id);
+            }
+
+        } catch (SQLException e) {
+            response.internal_error("PRI.incrementarStock: Error SQL - " + e.getMessage());
+        }
+
+        return response;
+    }
+}
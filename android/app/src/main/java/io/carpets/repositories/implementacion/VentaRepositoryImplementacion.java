@@ -1,6 +1,7 @@
 package io.carpets.repositories.implementacion;
 
 import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.Configuracion.UnidadDeTrabajo;
 import io.carpets.entidades.Venta;
 import io.carpets.repositories.VentaRepository;
 import io.carpets.DTOs.VentaCompletaDTO;
@@ -12,6 +13,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -21,6 +23,21 @@ import java.util.Map;
 
 public class VentaRepositoryImplementacion implements VentaRepository {
 
+    /**
+     * Mapea la fila actual del ResultSet a una Venta.
+     */
+    private Venta mapearVenta(ResultSet rs) throws SQLException {
+        Venta v = new Venta();
+        v.setId(rs.getInt("id_venta"));
+        v.setFecha(rs.getTimestamp("fecha"));
+        v.setMonto(rs.getDouble("monto"));
+        v.setDescripcion(rs.getString("descripcion"));
+        v.setNumeroBoleta(rs.getString("numero_boleta"));
+        v.setVendedorId(rs.getInt("id_vendedor"));
+        v.setClaveIdempotencia(rs.getString("clave_idempotencia"));
+        return v;
+    }
+
     /**
      * Registra una nueva venta en la base de datos.
      */
@@ -28,27 +45,32 @@ public class VentaRepositoryImplementacion implements VentaRepository {
     public Response save(Venta venta) {
         Response response = new Response();
         // Integrado id_cliente de la rama entrante
-        String sql = "INSERT INTO venta (numero_boleta, fecha, monto, descripcion, id_vendedor, id_cliente) VALUES (?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO venta (numero_boleta, fecha, monto, descripcion, id_vendedor, id_cliente, clave_idempotencia) VALUES (?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection conn = ConfiguracionBaseDatos.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, venta.getNumeroBoleta());
-            stmt.setTimestamp(2, new java.sql.Timestamp(System.currentTimeMillis()));
+            // Una venta registrada sin conexión conserva la hora en que se hizo, no la del reenvío
+            long fecha = venta.getFecha() != null ? venta.getFecha().getTime() : System.currentTimeMillis();
+            stmt.setTimestamp(2, new java.sql.Timestamp(fecha));
             stmt.setDouble(3, venta.getMonto());
             stmt.setString(4, venta.getDescripcion());
             stmt.setInt(5, venta.getVendedorId());
             // Valor por defecto temporal para evitar romper la integridad referencial
             stmt.setInt(6, 1);
+            stmt.setString(7, venta.getClaveIdempotencia());
 
             int rows = stmt.executeUpdate();
             if (rows > 0) {
                 try (ResultSet rs = stmt.getGeneratedKeys()) {
                     if (rs.next()) {
                         venta.setId(rs.getInt(1));
+                        response.exito();
+                        return response;
                     }
                 }
-                response.exito();
+                response.internal_error("VRI.save: Venta insertada pero no se pudo recuperar el ID");
             } else {
                 response.message_error("No se pudo registrar la venta en la base de datos.");
             }
@@ -127,14 +149,7 @@ public class VentaRepositoryImplementacion implements VentaRepository {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Venta v = new Venta();
-                    v.setId(rs.getInt("id_venta"));
-                    v.setFecha(rs.getTimestamp("fecha"));
-                    v.setMonto(rs.getDouble("monto"));
-                    v.setDescripcion(rs.getString("descripcion"));
-                    v.setNumeroBoleta(rs.getString("numero_boleta"));
-                    v.setVendedorId(rs.getInt("id_vendedor"));
-                    response.exito(v);
+                    response.exito(mapearVenta(rs));
                 } else {
                     response.message_error("Venta no encontrada con ID: " + id);
                 }
@@ -159,14 +174,7 @@ public class VentaRepositoryImplementacion implements VentaRepository {
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Venta v = new Venta();
-                v.setId(rs.getInt("id_venta"));
-                v.setFecha(rs.getTimestamp("fecha"));
-                v.setMonto(rs.getDouble("monto"));
-                v.setDescripcion(rs.getString("descripcion"));
-                v.setNumeroBoleta(rs.getString("numero_boleta"));
-                v.setVendedorId(rs.getInt("id_vendedor"));
-                lista.add(v);
+                lista.add(mapearVenta(rs));
             }
             response.exito(lista);
 
@@ -181,6 +189,161 @@ public class VentaRepositoryImplementacion implements VentaRepository {
         return null;
     }
 
+    /**
+     * Encuentra las ventas en el intervalo [desde, hasta) usando el índice sobre venta.fecha.
+     * El límite superior es exclusivo: para un día completo se pasa el inicio del día siguiente.
+     */
+    @Override
+    public Response<List<Venta>> findByFechaRange(Timestamp desde, Timestamp hasta) {
+        Response<List<Venta>> response = new Response<>();
+        List<Venta> lista = new ArrayList<>();
+
+        if (desde == null || hasta == null || !desde.before(hasta)) {
+            response.internal_error("VRI.findByFechaRange: Rango de fechas inválido");
+            return response;
+        }
+
+        String sql = "SELECT * FROM venta WHERE fecha >= ? AND fecha < ? ORDER BY fecha ASC";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, desde);
+            stmt.setTimestamp(2, hasta);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearVenta(rs));
+                }
+            }
+            response.exito(lista);
+
+        } catch (SQLException e) {
+            response.internal_error("VRI.findByFechaRange: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Busca la venta registrada con una clave de idempotencia.
+     * Que no exista no es un error: se responde con éxito y sin contenido.
+     */
+    @Override
+    public Response<Venta> findByClaveIdempotencia(String clave) {
+        Response<Venta> response = new Response<>();
+
+        if (clave == null || clave.isEmpty()) {
+            response.internal_error("VRI.findByClaveIdempotencia: La clave no puede estar vacía");
+            return response;
+        }
+
+        String sql = "SELECT * FROM venta WHERE clave_idempotencia = ?";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, clave);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    response.exito(mapearVenta(rs));
+                } else {
+                    response.exito();
+                }
+            }
+
+        } catch (SQLException e) {
+            response.internal_error("VRI.findByClaveIdempotencia: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Obtiene el siguiente correlativo de boleta desde la tabla 'secuencia'.
+     *
+     * Usa una conexión propia en autocommit (fuera de la transacción de la venta): así el bloqueo
+     * de la fila dura una sola sentencia y dos cajeros no se esperan entre sí. Si la venta se revierte,
+     * el número se pierde (la secuencia admite huecos, pero nunca repite).
+     *
+     * @return Response<Long> con el correlativo reservado
+     */
+    @Override
+    public Response<Long> siguienteNumeroBoleta() {
+        Response<Long> response = new Response<>();
+        // LAST_INSERT_ID(expr) deja el nuevo valor disponible para esta sesión sin otra consulta
+        String sql = "UPDATE secuencia SET valor = LAST_INSERT_ID(valor + 1) WHERE nombre = 'boleta'";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnectionAutonoma();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            if (stmt.executeUpdate() == 0) {
+                response.internal_error("VRI.siguienteNumeroBoleta: No existe la secuencia 'boleta'");
+                return response;
+            }
+
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    response.exito(rs.getLong(1));
+                    return response;
+                }
+            }
+
+            // Respaldo por si el driver no expone el valor como clave generada
+            try (PreparedStatement stmtId = conn.prepareStatement("SELECT LAST_INSERT_ID()");
+                 ResultSet rs = stmtId.executeQuery()) {
+                if (rs.next()) {
+                    response.exito(rs.getLong(1));
+                } else {
+                    response.internal_error("VRI.siguienteNumeroBoleta: No se pudo leer la secuencia");
+                }
+            }
+
+        } catch (SQLException e) {
+            response.internal_error("VRI.siguienteNumeroBoleta: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Unidades vendidas de cada producto desde la fecha indicada (filtra por el índice de venta.fecha).
+     *
+     * @param desde Fecha desde la que se cuentan las ventas
+     * @return Response con id_producto -> unidades (solo productos con ventas)
+     */
+    @Override
+    public Response<Map<Integer, Integer>> unidadesVendidasDesde(Timestamp desde) {
+        Response<Map<Integer, Integer>> response = new Response<>();
+
+        if (desde == null) {
+            response.internal_error("VRI.unidadesVendidasDesde: La fecha no puede ser nula");
+            return response;
+        }
+
+        String sql = "SELECT d.id_producto, SUM(d.cantidad) AS unidades " +
+                "FROM venta v " +
+                "JOIN detalle_venta d ON d.id_venta = v.id_venta " +
+                "WHERE v.fecha >= ? " +
+                "GROUP BY d.id_producto";
+
+        try (Connection conn = ConfiguracionBaseDatos.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, desde);
+
+            Map<Integer, Integer> unidades = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    unidades.put(rs.getInt("id_producto"), rs.getInt("unidades"));
+                }
+            }
+            response.exito(unidades);
+
+        } catch (SQLException e) {
+            response.internal_error("VRI.unidadesVendidasDesde: " + e.getMessage());
+        }
+        return response;
+    }
+
     /**
      * Registra un intento de compra de un producto que no está en el inventario.
      *
@@ -279,13 +442,174 @@ public class VentaRepositoryImplementacion implements VentaRepository {
         return response;
     }
 
+    // ========================================================================
+    // RESUMEN DIARIO Y GANANCIAS (venta_resumen_diario, ganancia_producto, ganancia_total)
+    // ========================================================================
+
+    // Ganancia: (precio de venta - costo al momento de la venta) * cantidad, sin IGV
+    private static final String SQL_SUMA_GANANCIA = "SUM((d.precio_unitario - d.costo_unitario) * d.cantidad)";
+
+    private static final String SQL_GANANCIA_POR_VENTA =
+            "SELECT d.id_venta, " + SQL_SUMA_GANANCIA + " AS ganancia " +
+            "FROM detalle_venta d ";
+
+    /**
+     * Suma (signo = 1) o resta (signo = -1) una venta al resumen de su día, a la ganancia de cada
+     * producto vendido y a la ganancia total.
+     *
+     * Debe llamarse dentro de la misma UnidadDeTrabajo que registra o elimina la venta, con sus detalles
+     * aún presentes (y su costo_unitario ya fijado): así los acumulados nunca quedan distintos de las
+     * ventas confirmadas.
+     *
+     * @param ventaId ID de la venta
+     * @param signo 1 al registrarla, -1 al eliminarla
+     * @param igvPorcentaje Tasa de IGV incluida en venta.monto (p. ej. 0.18)
+     */
+    @Override
+    public Response acumularResumenDiario(int ventaId, int signo, double igvPorcentaje) {
+        Response response = new Response();
+
+        if (signo != 1 && signo != -1) {
+            response.internal_error("VRI.acumularResumenDiario: El signo debe ser 1 o -1");
+            return response;
+        }
+
+        String sqlDia = "INSERT INTO venta_resumen_diario (dia, total_vendido, cantidad_ventas, igv, ganancia) " +
+                "SELECT DATE(v.fecha), ? * v.monto, ?, ? * v.monto * ? / (1 + ?), ? * COALESCE(g.ganancia, 0) " +
+                "FROM venta v " +
+                "LEFT JOIN (" + SQL_GANANCIA_POR_VENTA + "WHERE d.id_venta = ? GROUP BY d.id_venta) g " +
+                "  ON g.id_venta = v.id_venta " +
+                "WHERE v.id_venta = ? " +
+                "ON DUPLICATE KEY UPDATE " +
+                "  total_vendido = total_vendido + VALUES(total_vendido), " +
+                "  cantidad_ventas = cantidad_ventas + VALUES(cantidad_ventas), " +
+                "  igv = igv + VALUES(igv), " +
+                "  ganancia = ganancia + VALUES(ganancia)";
+
+        String sqlProducto = "INSERT INTO ganancia_producto (id_producto, unidades_vendidas, ganancia) " +
+                "SELECT d.id_producto, ? * SUM(d.cantidad), ? * " + SQL_SUMA_GANANCIA + " " +
+                "FROM detalle_venta d " +
+                "WHERE d.id_venta = ? " +
+                "GROUP BY d.id_producto " +
+                "ON DUPLICATE KEY UPDATE " +
+                "  unidades_vendidas = unidades_vendidas + VALUES(unidades_vendidas), " +
+                "  ganancia = ganancia + VALUES(ganancia)";
+
+        String sqlTotal = "INSERT INTO ganancia_total (id, ganancia) " +
+                "SELECT 1, ? * COALESCE(" + SQL_SUMA_GANANCIA + ", 0) " +
+                "FROM detalle_venta d " +
+                "WHERE d.id_venta = ? " +
+                "ON DUPLICATE KEY UPDATE ganancia = ganancia + VALUES(ganancia)";
+
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection()) {
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlDia)) {
+                stmt.setInt(1, signo);
+                stmt.setInt(2, signo);
+                stmt.setInt(3, signo);
+                stmt.setDouble(4, igvPorcentaje);
+                stmt.setDouble(5, igvPorcentaje);
+                stmt.setInt(6, signo);
+                stmt.setInt(7, ventaId);
+                stmt.setInt(8, ventaId);
+
+                if (stmt.executeUpdate() == 0) {
+                    response.internal_error("VRI.acumularResumenDiario: No existe la venta con ID: " + ventaId);
+                    return response;
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlProducto)) {
+                stmt.setInt(1, signo);
+                stmt.setInt(2, signo);
+                stmt.setInt(3, ventaId);
+                stmt.executeUpdate();
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlTotal)) {
+                stmt.setInt(1, signo);
+                stmt.setInt(2, ventaId);
+                stmt.executeUpdate();
+            }
+
+            uow.confirmar();
+            response.exito();
+
+        } catch (SQLException e) {
+            response.internal_error("VRI.acumularResumenDiario: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Recalcula el resumen diario y las ganancias acumuladas desde el historial de ventas
+     * (p. ej. tras corregir datos a mano). Usa el costo_unitario guardado en cada detalle.
+     * Se hace en una transacción: mientras tanto, los lectores ven los acumulados anteriores.
+     *
+     * @param igvPorcentaje Tasa de IGV incluida en venta.monto (p. ej. 0.18)
+     * @return Response con la cantidad de días recalculados
+     */
+    @Override
+    public Response<Integer> reconstruirResumenDiario(double igvPorcentaje) {
+        Response<Integer> response = new Response<>();
+
+        String sqlDias = "INSERT INTO venta_resumen_diario (dia, total_vendido, cantidad_ventas, igv, ganancia) " +
+                "SELECT DATE(v.fecha), SUM(v.monto), COUNT(*), SUM(v.monto) * ? / (1 + ?), COALESCE(SUM(g.ganancia), 0) " +
+                "FROM venta v " +
+                "LEFT JOIN (" + SQL_GANANCIA_POR_VENTA + "GROUP BY d.id_venta) g ON g.id_venta = v.id_venta " +
+                "GROUP BY DATE(v.fecha)";
+
+        String sqlProductos = "INSERT INTO ganancia_producto (id_producto, unidades_vendidas, ganancia) " +
+                "SELECT d.id_producto, SUM(d.cantidad), " + SQL_SUMA_GANANCIA + " " +
+                "FROM detalle_venta d " +
+                "GROUP BY d.id_producto";
+
+        String sqlTotal = "INSERT INTO ganancia_total (id, ganancia) " +
+                "SELECT 1, COALESCE(" + SQL_SUMA_GANANCIA + ", 0) FROM detalle_venta d";
+
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar();
+             Connection conn = ConfiguracionBaseDatos.getConnection()) {
+
+            for (String tabla : new String[] {"venta_resumen_diario", "ganancia_producto", "ganancia_total"}) {
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + tabla)) {
+                    stmt.executeUpdate();
+                }
+            }
+
+            int dias;
+            try (PreparedStatement stmt = conn.prepareStatement(sqlDias)) {
+                stmt.setDouble(1, igvPorcentaje);
+                stmt.setDouble(2, igvPorcentaje);
+                dias = stmt.executeUpdate();
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlProductos)) {
+                stmt.executeUpdate();
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sqlTotal)) {
+                stmt.executeUpdate();
+            }
+
+            uow.confirmar();
+            response.exito(dias);
+
+        } catch (SQLException e) {
+            response.internal_error("VRI.reconstruirResumenDiario: " + e.getMessage());
+        }
+        return response;
+    }
+
     /**
      * Retorna un reporte agrupado por días de los últimos 30 días de operación.
+     * Lee el resumen mantenido (venta_resumen_diario): a lo más 30 filas por clave primaria.
      */
+    @Override
     public Response<List<Map<String, Object>>> obtenerReporteDiario() {
         Response<List<Map<String, Object>>> response = new Response<>();
-        String sql = "SELECT DATE(fecha) AS dia, SUM(monto) AS total_dia, COUNT(id_venta) AS cant_ventas " +
-                "FROM venta GROUP BY DATE(fecha) ORDER BY dia DESC LIMIT 30";
+        String sql = "SELECT dia, total_vendido, cantidad_ventas, igv, ganancia " +
+                "FROM venta_resumen_diario WHERE cantidad_ventas > 0 ORDER BY dia DESC LIMIT 30";
 
         List<Map<String, Object>> reporte = new ArrayList<>();
 
@@ -296,8 +620,10 @@ public class VentaRepositoryImplementacion implements VentaRepository {
             while (rs.next()) {
                 Map<String, Object> fila = new HashMap<>();
                 fila.put("fecha", rs.getString("dia"));
-                fila.put("totalVendido", rs.getDouble("total_dia"));
-                fila.put("cantidadVentas", rs.getInt("cant_ventas"));
+                fila.put("totalVendido", rs.getDouble("total_vendido"));
+                fila.put("cantidadVentas", rs.getInt("cantidad_ventas"));
+                fila.put("igv", rs.getDouble("igv"));
+                fila.put("ganancia", rs.getDouble("ganancia"));
                 reporte.add(fila);
             }
             response.exito(reporte);
@@ -308,4 +634,4 @@ public class VentaRepositoryImplementacion implements VentaRepository {
 
         return response;
     }
-}
\ No newline at end of file
+}
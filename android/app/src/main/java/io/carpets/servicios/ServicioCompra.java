@@ -17,6 +17,7 @@ public interface ServicioCompra {
     Response agregarProductoNuevoACompra(DetalleCompra detalle);
 
     Response<List<Map<String, Object>>> listarCompras();
+    Response<List<Map<String, Object>>> listarCompras(int beforeId, int limit);
 
     Response actualizarDescripcionCompra(Compra compra);
     Response actualizarStockPorCompra(List<DetalleCompra> detalles);
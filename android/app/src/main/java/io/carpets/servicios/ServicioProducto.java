@@ -1,5 +1,6 @@
 package io.carpets.servicios;
 
+import io.carpets.DTOs.CambiosCatalogoDTO;
 import io.carpets.entidades.Producto;
 import io.carpets.util.Response;
 
@@ -7,14 +8,21 @@ import java.util.List;
 
 public interface ServicioProducto {
 
+    // Tope de productos por página, para que un cliente no pueda pedir todo el catálogo de golpe
+    int TAMANO_PAGINA_MAXIMO = 500;
 
     Response<Producto> validarStock(int productoId, int cantidad);
     Response actualizarInventario(Producto producto);
     public Response<List<Producto>> obtenerTodos();
+    Response<List<Producto>> obtenerPagina(String afterNombre, int afterId, int limit);
+    Response<CambiosCatalogoDTO> obtenerCambiosDesde(long version);
     Response<Producto> obtenerPorId(int id);
+    Response<Producto> obtenerPorCodigo(String codigo);
     Response<List<Producto>> buscarProductos(String criterio, String tipo);
+    Response<List<Producto>> buscarProductosAproximados(String criterio);
 
     Response<Double> getGananciaTotal();
+    Response<Double> getGananciaProducto(int productoId);
 
     Response agregarProducto(Producto producto);
 
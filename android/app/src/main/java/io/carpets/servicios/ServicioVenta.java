@@ -7,15 +7,19 @@ import io.carpets.DTOs.MontosCalculados;
 import io.carpets.DTOs.BoletaVentaDTO;
 import io.carpets.DTOs.VentaCompletaDTO;
 import io.carpets.DTOs.DetalleVentaDTO;
+import io.carpets.DTOs.ProductoEscaneadoDTO;
 import io.carpets.util.Response;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ServicioVenta {
     int registrarVenta(Venta venta, List<DetalleVenta> detalles);
     List<Venta> obtenerVentasPorDia(String fecha);
     List<Venta> obtenerVentasPorRango(String fechaInicio, String fechaFin);
     List<Producto> buscarProductoEnVentaPorIdONombre(String criterio);
+    // Ráfaga de escaneos (IDs o códigos) resuelta en una sola llamada, con validación de stock
+    Response<List<ProductoEscaneadoDTO>> resolverEscaneos(List<String> entradas);
     List<VentaCompletaDTO> listarVentasConDetalles();
     Response eliminarDetalleVenta(int detalleId);
     boolean validarProductoExiste(int productoId);
@@ -29,8 +33,14 @@ public interface ServicioVenta {
     double calcularGananciaTotal();
 
     BoletaVentaDTO generarBoleta(int ventaId, List<DetalleVenta> detalles);
+    // Valida, registra y devuelve la boleta en una sola llamada (una transacción)
+    BoletaVentaDTO checkout(Venta venta, List<DetalleVenta> detalles);
 
     List<Venta> listarVentas();
 
     Response eliminarVenta(int ventaId);
+
+    // Resumen diario de ventas
+    Response<List<Map<String, Object>>> obtenerReporteDiario();
+    Response<Integer> reconstruirResumenDiario();
 }
\ No newline at end of file
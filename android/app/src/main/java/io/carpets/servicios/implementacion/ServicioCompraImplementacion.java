@@ -1,6 +1,8 @@
 package io.carpets.servicios.implementacion;
 
+import io.carpets.Configuracion.UnidadDeTrabajo;
 import io.carpets.DTOs.CompraCompletaDTO;
+import io.carpets.DTOs.CompraResumenDTO;
 import io.carpets.entidades.Compra;
 import io.carpets.entidades.DetalleCompra;
 import io.carpets.entidades.Producto;
@@ -9,22 +11,26 @@ import io.carpets.repositories.DetalleCompraRepository;
 import io.carpets.repositories.ProductoRepository;
 import io.carpets.repositories.implementacion.CompraRepositoryImplementacion;
 import io.carpets.repositories.implementacion.DetalleCompraRepositoryImplementacion;
-import io.carpets.repositories.implementacion.ProductoRepositoryImplementacion;
+import io.carpets.repositories.implementacion.ProductoRepositoryCache;
 import io.carpets.servicios.ServicioCompra;
 import io.carpets.servicios.ServicioProducto;
+import io.carpets.util.ClavesRecientes;
 import io.carpets.util.Response;
+import io.carpets.util.UnVuelo;
 
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class ServicioCompraImplementacion implements ServicioCompra {
 
     final private CompraRepository compraRepo = new CompraRepositoryImplementacion();
     final private DetalleCompraRepository detalleCompraRepo = new DetalleCompraRepositoryImplementacion();
-    final private ProductoRepository productoRepo = new ProductoRepositoryImplementacion();
+    final private ProductoRepository productoRepo = ProductoRepositoryCache.instancia();
     final private ServicioProducto servicioProducto = new ServicioProductoImplementacion();
 
     // Límites para validación de datos del producto
@@ -33,36 +39,127 @@ public class ServicioCompraImplementacion implements ServicioCompra {
     private static final int CANTIDAD_MINIMA = 1;
     private static final int CANTIDAD_MAXIMA = 10000;
 
+    // Compartidas por todas las instancias: el reintento puede llegar por otro hilo u otro Servicio
+    private static final ClavesRecientes CLAVES_RECIENTES = new ClavesRecientes(256);
+    private static final UnVuelo<Response<Integer>> COMPRAS_EN_CURSO = new UnVuelo<>();
+
+    /**
+     * Registra la compra. Si trae clave de idempotencia y ya se registró una compra con esa clave,
+     * responde con éxito sin volver a registrarla ni sumar stock.
+     */
     @Override
-    public Response registrarCompra(Compra compra, List<DetalleCompra> detalles) {
-        Response response = new Response();
+    public Response<Void> registrarCompra(Compra compra, List<DetalleCompra> detalles) {
+        String clave = compra.getClaveIdempotencia();
+        if (clave == null || clave.isEmpty()) {
+            return registrarCompraEnBD(compra, detalles);
+        }
 
-        // Guardar la cabecera de la compra
-        if (!compraRepo.save(compra).isOk()) {
-            response.internal_error("SCI.registrarCompra: Error guardando compra.");
+        Integer registrada = CLAVES_RECIENTES.buscar(clave);
+        if (registrada != null) {
+            compra.setId(registrada);
+            Response<Void> response = new Response<>();
+            response.exito();
             return response;
         }
 
-        // Guardar cada detalle asociándolo al ID de la compra generada
-        for (DetalleCompra detalle : detalles) {
-            detalle.setCompraId(compra.getId());
-            if (!detalleCompraRepo.save(detalle).isOk()) {
-                response.internal_error("SCI.registrarCompra: Error al guardar detalle de compra.");
-                return response;
+        // Un reintento que llega mientras el primero sigue en curso espera su resultado: el ID registrado,
+        // que se asigna a la Compra de cada llamador (la del reintento no pasó por registrarCompraEnBD)
+        Response<Integer> resultado = COMPRAS_EN_CURSO.ejecutar(clave, () -> {
+            Response<Void> registro = registrarCompraEnBD(compra, detalles);
+            Response<Integer> conId = new Response<>();
+            conId.copiarEstado(registro);
+            if (registro.isOk()) {
+                conId.exito(compra.getId());
             }
+            return conId;
+        }, ServicioCompraImplementacion::copiarResultado);
+
+        Response<Void> response = new Response<>();
+        response.copiarEstado(resultado);
+        if (resultado.isOk() && resultado.getContent() != null && resultado.getContent() > 0) {
+            compra.setId(resultado.getContent());
+            CLAVES_RECIENTES.recordar(clave, resultado.getContent());
         }
+        return response;
+    }
 
-        // Actualizar el stock en el inventario
-        Response stockUpdate = actualizarStockPorCompra(detalles);
-        if (!stockUpdate.isOk()) {
-            response.internal_error("SCI.registrarCompra: Error al actualizar Stock -> " + stockUpdate.getMap().get("mensaje"));
-            return response;
+    private static Response<Integer> copiarResultado(Response<Integer> original) {
+        Response<Integer> copia = new Response<>();
+        copia.copiarEstado(original);
+        if (original.isOk()) {
+            copia.exito(original.getContent());
         }
+        return copia;
+    }
 
-        response.exito();
+    private Response<Void> registrarCompraEnBD(Compra compra, List<DetalleCompra> detalles) {
+        Response<Void> response = new Response<>();
+
+        // Cabecera, detalles y stock se confirman juntos; si algo falla no queda una compra a medias.
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar()) {
+
+            // Reintento de una compra ya registrada
+            if (buscarPorClave(compra)) {
+                response.exito();
+                return response;
+            }
+
+            // Guardar la cabecera de la compra
+            if (!compraRepo.save(compra).isOk()) {
+                response.internal_error("SCI.registrarCompra: Error guardando compra.");
+                return response;
+            }
+
+            // Guardar todos los detalles en un lote, asociados al ID de la compra generada
+            for (DetalleCompra detalle : detalles) {
+                detalle.setCompraId(compra.getId());
+            }
+            if (!detalleCompraRepo.saveAll(detalles).isOk()) {
+                response.internal_error("SCI.registrarCompra: Error al guardar detalles de compra.");
+                return response;
+            }
+
+            // Actualizar el stock en el inventario
+            Response<Void> stockUpdate = actualizarStockPorCompra(detalles);
+            if (!stockUpdate.isOk()) {
+                response.internal_error("SCI.registrarCompra: Error al actualizar Stock -> " + stockUpdate.getMensaje());
+                return response;
+            }
+
+            uow.confirmar();
+            response.exito();
+
+        } catch (SQLException e) {
+            response.internal_error("SCI.registrarCompra: Error en la transacción -> " + e.getMessage());
+        }
+
+        // Otro envío con la misma clave pudo confirmarse mientras tanto (el índice único rechazó este)
+        if (!response.isOk() && buscarPorClave(compra)) {
+            Response<Void> registrada = new Response<>();
+            registrada.exito();
+            return registrada;
+        }
         return response;
     }
 
+    /**
+     * Si ya hay una compra registrada con la clave de esta, le asigna su ID.
+     *
+     * @return true si la compra ya estaba registrada
+     */
+    private boolean buscarPorClave(Compra compra) {
+        String clave = compra.getClaveIdempotencia();
+        if (clave == null || clave.isEmpty()) {
+            return false;
+        }
+        Response<Compra> res = compraRepo.findByClaveIdempotencia(clave);
+        if (res.isOk() && res.getContent() != null) {
+            compra.setId(res.getContent().getId());
+            return true;
+        }
+        return false;
+    }
+
     public Response actualizarDescripcionCompra(Compra compra) {
         Response response = compraRepo.update(compra);
         if (!response.isOk()) {
@@ -73,30 +170,21 @@ public class ServicioCompraImplementacion implements ServicioCompra {
 
     /**
      * Suma la cantidad comprada al stock actual de los productos en la base de datos.
+     *
+     * Dentro de la transacción de registrarCompra cada suma bloquea la fila del producto hasta confirmar:
+     * se hacen por ID ascendente, el mismo orden en que las bloquean las ventas, para no esperarse en cruz.
      */
-    public Response actualizarStockPorCompra(List<DetalleCompra> detalles) {
-        Response response = new Response();
+    public Response<Void> actualizarStockPorCompra(List<DetalleCompra> detalles) {
+        Response<Void> response = new Response<>();
         try {
+            Map<Integer, Integer> unidadesPorProducto = new TreeMap<>();
             for (DetalleCompra detalle : detalles) {
-                Response<Producto> request = productoRepo.findById(detalle.getProductoId());
-
-                if (!request.isOk()) {
-                    response.internal_error("SCI.actualizarStockPorCompra: Error al obtener el producto, id= " + detalle.getProductoId());
-                    return response;
-                }
-
-                Producto producto = request.getContent();
-
-                if (producto.getId() < 0) {
-                    continue; // Ignorar productos temporales
-                }
-
-                int nuevoStock = producto.getCantidad() + detalle.getUnidades();
-                producto.setCantidad(nuevoStock);
-
-                // Persistir el nuevo stock
-                if (!productoRepo.update(producto).isOk()) {
-                    response.internal_error("SCI.actualizarStockPorCompra: Error al actualizar stock del producto ID: " + producto.getId());
+                unidadesPorProducto.merge(detalle.getProductoId(), detalle.getUnidades(), Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> e : unidadesPorProducto.entrySet()) {
+                // Suma atómica en la base de datos (sin leer y reescribir el producto)
+                if (!productoRepo.incrementarStock(e.getKey(), e.getValue()).isOk()) {
+                    response.internal_error("SCI.actualizarStockPorCompra: Error al actualizar stock del producto ID: " + e.getKey());
                     return response;
                 }
             }
@@ -160,41 +248,42 @@ public class ServicioCompraImplementacion implements ServicioCompra {
     }
 
     /**
-     * Construye un resumen en forma de mapas (diccionarios) de las compras y extrae
+     * Construye un resumen en forma de mapas (diccionarios) de todas las compras, con
      * una imagen de muestra del primer producto adquirido para la interfaz.
      */
     @Override
     public Response<List<Map<String, Object>>> listarCompras() {
+        return listarCompras(0, 0);
+    }
+
+    /**
+     * Igual que listarCompras(), pero por páginas (más recientes primero).
+     * La imagen y la cantidad de líneas vienen en la misma consulta, sin consultar cada compra.
+     *
+     * @param beforeId ID de la última compra ya recibida (<= 0 para la primera página)
+     * @param limit Tamaño de la página (<= 0 para traer todas)
+     */
+    @Override
+    public Response<List<Map<String, Object>>> listarCompras(int beforeId, int limit) {
         Response<List<Map<String, Object>>> response = new Response<>();
 
-        Response<List<Compra>> request = compraRepo.findAll();
+        Response<List<CompraResumenDTO>> request = compraRepo.listarResumen(beforeId, limit);
         if (!request.isOk()) {
             response.internal_error("SCI.listarCompras: Error al listar las compras.");
             return response;
         }
 
-        List<Compra> compras = request.getContent();
         List<Map<String, Object>> listaMapas = new ArrayList<>();
 
-        for (Compra c : compras) {
+        for (CompraResumenDTO c : request.getContent()) {
             Map<String, Object> map = new HashMap<>();
             map.put("id", c.getId());
             map.put("descripcion", c.getDescripcion());
             map.put("monto", c.getMonto());
-
-            Response<List<DetalleCompra>> det_request = detalleCompraRepo.findByCompraId(c.getId());
-            if(!det_request.isOk()) {
-                response.internal_error("SCI.listaCompras: Error al obtener detalles id=" + c.getId());
-                return response;
-            }
-
-            List<DetalleCompra> detalles = det_request.getContent();
-            if (!detalles.isEmpty()) {
-                Response<Producto> prod_request = productoRepo.findById(detalles.get(0).getProductoId());
-                if(prod_request.isOk()) {
-                    Producto p = prod_request.getContent();
-                    map.put("imagePath", p.getImagePath());
-                }
+            map.put("fecha", c.getFecha());
+            map.put("lineas", c.getCantidadLineas());
+            if (c.getImagePath() != null) {
+                map.put("imagePath", c.getImagePath());
             }
             listaMapas.add(map);
         }
@@ -253,35 +342,16 @@ public class ServicioCompraImplementacion implements ServicioCompra {
                 return response;
             }
 
-            Response<Producto> prod_request = productoRepo.findById(detalle_local.getProductoId());
-            if (!prod_request.isOk()) {
-                response.internal_error("SCI.editarDetalleCompra: Error obteniendo producto original.");
-                return response;
-            }
-
-            Producto producto = prod_request.getContent();
-            producto.setCantidad(producto.getCantidad() + diferencia);
-
-            if (!productoRepo.update(producto).isOk()) {
+            // Ajuste atómico en la base de datos: leer y reescribir el producto pisaría las ventas concurrentes
+            if (!ajustarStock(detalle_local.getProductoId(), diferencia).isOk()) {
                 response.internal_error("SCI.editarDetalleCompra: Error actualizando stock.");
                 return response;
             }
 
         } else {
             // Producto cambió: Restaurar stock antiguo y asignar al nuevo
-            Response<Producto> prod_down_request = productoRepo.findById(detalle_remoto.getProductoId());
-            if (prod_down_request.isOk()) {
-                Producto producto_down = prod_down_request.getContent();
-                producto_down.setCantidad(producto_down.getCantidad() - detalle_remoto.getUnidades());
-                productoRepo.update(producto_down);
-            }
-
-            Response<Producto> prod_up_request = productoRepo.findById(detalle_local.getProductoId());
-            if (prod_up_request.isOk()) {
-                Producto producto_up = prod_up_request.getContent();
-                producto_up.setCantidad(producto_up.getCantidad() + detalle_local.getUnidades());
-                productoRepo.update(producto_up);
-            }
+            ajustarStock(detalle_remoto.getProductoId(), -detalle_remoto.getUnidades());
+            ajustarStock(detalle_local.getProductoId(), detalle_local.getUnidades());
         }
 
         if (!detalleCompraRepo.update(detalle_local).isOk()) {
@@ -293,6 +363,21 @@ public class ServicioCompraImplementacion implements ServicioCompra {
         return response;
     }
 
+    /**
+     * Suma (positivo) o resta (negativo) unidades al stock en una sola sentencia.
+     */
+    private Response<?> ajustarStock(int productoId, int diferencia) {
+        if (diferencia == 0) {
+            Response<Void> sinCambios = new Response<>();
+            sinCambios.exito();
+            return sinCambios;
+        }
+        if (diferencia > 0) {
+            return productoRepo.incrementarStock(productoId, diferencia);
+        }
+        return productoRepo.descontarStock(productoId, -diferencia);
+    }
+
     /**
      * Elimina una compra y todos sus detalles.
      * En lugar de construir un String SQL masivo, utiliza el patrón Repository
@@ -319,19 +404,11 @@ public class ServicioCompraImplementacion implements ServicioCompra {
 
             // 1. Revertir el stock y eliminar los detalles individuales
             for (DetalleCompra detalle : detalles) {
-                Response<Producto> prod_request = productoRepo.findById(detalle.getProductoId());
-
-                if (prod_request.isOk()) {
-                    Producto producto = prod_request.getContent();
-
-                    if (producto.getId() >= 0) {
-                        int nuevoStock = producto.getCantidad() - detalle.getUnidades();
-                        if (nuevoStock < 0) {
-                            response.internal_error("Error: Revertir esta compra causaría stock negativo en ID: " + producto.getId());
-                            return response;
-                        }
-                        producto.setCantidad(nuevoStock);
-                        productoRepo.update(producto);
+                if (productoRepo.existeIdById(detalle.getProductoId()).isOk()) {
+                    // descontarStock falla en la base de datos si el stock quedaría negativo
+                    if (!productoRepo.descontarStock(detalle.getProductoId(), detalle.getUnidades()).isOk()) {
+                        response.internal_error("Error: Revertir esta compra causaría stock negativo en ID: " + detalle.getProductoId());
+                        return response;
                     }
                 }
                 // Eliminar el detalle después de ajustar stock
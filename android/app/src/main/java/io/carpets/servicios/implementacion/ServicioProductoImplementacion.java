@@ -1,8 +1,9 @@
 package io.carpets.servicios.implementacion;
 
+import io.carpets.DTOs.CambiosCatalogoDTO;
 import io.carpets.entidades.Producto;
 import io.carpets.repositories.ProductoRepository;
-import io.carpets.repositories.implementacion.ProductoRepositoryImplementacion;
+import io.carpets.repositories.implementacion.ProductoRepositoryCache;
 import io.carpets.servicios.ServicioProducto;
 import io.carpets.util.Response;
 
@@ -12,7 +13,7 @@ import java.util.List;
 
 public class    ServicioProductoImplementacion implements ServicioProducto {
 
-    private final ProductoRepository repo = new ProductoRepositoryImplementacion();
+    private final ProductoRepository repo = ProductoRepositoryCache.instancia();
 
     /**
      * Validación de stock(??) no se para q se usa.
@@ -39,7 +40,8 @@ public class    ServicioProductoImplementacion implements ServicioProducto {
 
     /**
      * Actualización del inventario.
-     * @param producto Contiene el nuevo Stock. Esto reemplazará toda la información del producto.
+     * @param producto Contiene el nuevo Stock. Esto reemplazará toda la información del producto; el stock
+     *                 solo si trae la versión con la que se leyó (ver ProductoRepositoryImplementacion.update).
      * @return Response, que indica si la función llegó a ejecutarse correctamente.
      */
     @Override
@@ -54,6 +56,14 @@ public class    ServicioProductoImplementacion implements ServicioProducto {
         return repo.getGananciaTotal();
     }
 
+    /**
+     * @return Ganancia acumulada de un producto en la base de datos.
+     */
+    @Override
+    public Response<Double> getGananciaProducto(int productoId) {
+        return repo.getGananciaProducto(productoId);
+    }
+
     /**
      * Lista todos los productos
      * @return Lista de productos
@@ -63,6 +73,30 @@ public class    ServicioProductoImplementacion implements ServicioProducto {
         return repo.findAll();
     }
 
+    /**
+     * Obtiene una página del catálogo ordenado por nombre (paginación por clave).
+     * @param afterNombre Nombre del último producto ya recibido, null para la primera página.
+     * @param afterId Id del último producto ya recibido.
+     * @param limit Tamaño de la página, se acota entre 1 y TAMANO_PAGINA_MAXIMO + 1 (el extra es el que
+     *              pide quien pagina para saber si hay una página siguiente).
+     * @return Página de productos (puede estar vacía si ya no hay más).
+     */
+    @Override
+    public Response<List<Producto>> obtenerPagina(String afterNombre, int afterId, int limit) {
+        int limite = Math.max(1, Math.min(limit, TAMANO_PAGINA_MAXIMO + 1));
+        return repo.findPage(afterNombre, afterId, limite);
+    }
+
+    /**
+     * Obtiene lo que cambió en el catálogo desde la última sincronización del cliente.
+     * @param version Token devuelto por la sincronización anterior (0 la primera vez).
+     * @return Productos modificados, ids eliminados y el nuevo token.
+     */
+    @Override
+    public Response<CambiosCatalogoDTO> obtenerCambiosDesde(long version) {
+        return repo.findChangedSince(Math.max(0, version));
+    }
+
     /**
      * Encuentra un producto utilizando su id.
      *
@@ -75,10 +109,27 @@ public class    ServicioProductoImplementacion implements ServicioProducto {
     }
 
     /**
-     * Filtra los productos por nombre y categoría.
-     * @param criterio Nombre del producto (Supongo)
-     * @param tipo Me imagino que la categoría...
-     * @return Lista de productos filtrados.
+     * Encuentra un producto por su código de barras / SKU.
+     *
+     * @param codigo Código escaneado o escrito.
+     * @return Respuesta con el producto, o éxito sin contenido si ningún producto tiene ese código.
+     */
+    @Override
+    public Response<Producto> obtenerPorCodigo(String codigo) {
+        if (codigo == null || codigo.trim().isEmpty()) {
+            Response<Producto> response = new Response<>();
+            response.exito();
+            return response;
+        }
+        return repo.findByCodigo(codigo.trim());
+    }
+
+    /**
+     * Filtra los productos por nombre y/o categoría, ordenados por relevancia.
+     * Se resuelve en memoria con el índice de búsqueda de ProductoRepositoryCache.
+     * @param criterio Texto a buscar (búsqueda parcial, sin distinguir mayúsculas ni tildes).
+     * @param tipo "nombre", "categoria" o "all"/null para ambos.
+     * @return Lista de productos filtrados (vacía si no hay coincidencias).
      */
     @Override
     public Response<List<Producto>> buscarProductos(String criterio, String tipo) {
@@ -87,39 +138,33 @@ public class    ServicioProductoImplementacion implements ServicioProducto {
             return repo.findAll();
         }
 
-        Response<List<Producto>> porNombre = repo.findByNombre(criterio);
-        Response<List<Producto>> porCategoria = repo.findByCategoria(criterio);
-
-        if(!porNombre.isOk()){
-            porNombre.internal_error("SPI.buscarProductos: Error al filtrar productos por nombre.");
-            return porNombre;
-        }
-
-        if(!porCategoria.isOk()){
-            porNombre.internal_error("SPI.buscarProductos: Error al filtrar productos por categoría.");
-            return porCategoria;
-        }
-
         if (tipo == null || "all".equalsIgnoreCase(tipo)) {
             // Búsqueda en todos los campos disponibles
-            List<Producto> resultados = new java.util.ArrayList<>();
-            resultados.addAll(porNombre.getContent());
-            resultados.addAll(porCategoria.getContent());
-
-            Response<List<Producto>> response = new Response<List<Producto>>();
-            response.exito(resultados.stream().distinct().collect(java.util.stream.Collectors.toList()));
-
-            // Eliminar duplicados
-            return response;
+            return repo.buscar(criterio, null);
         }
 
         return switch (tipo.toLowerCase()) {
-            case "nombre" -> porNombre;
-            case "categoria" -> porCategoria;
+            case "nombre" -> repo.buscar(criterio, "nombre");
+            case "categoria" -> repo.buscar(criterio, "categoria");
             default -> repo.findAll();
         };
     }
 
+    /**
+     * Busca por nombre tolerando errores de tipeo ("camisetta" encuentra "Camiseta").
+     * @param criterio Texto escrito por el usuario.
+     * @return Productos de menos a más ediciones (vacía si no hay coincidencias).
+     */
+    @Override
+    public Response<List<Producto>> buscarProductosAproximados(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            Response<List<Producto>> response = new Response<>();
+            response.exito(new java.util.ArrayList<>());
+            return response;
+        }
+        return repo.buscarAproximado(criterio);
+    }
+
     /**
      * Agrega un producto a la base de datos.
      * @param producto Información del producto.
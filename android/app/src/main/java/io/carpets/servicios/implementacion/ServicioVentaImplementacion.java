@@ -1,5 +1,9 @@
 package io.carpets.servicios.implementacion;
 
+import io.carpets.Configuracion.ConfiguracionBaseDatos;
+import io.carpets.Configuracion.SinConexionException;
+import io.carpets.Configuracion.VentaRechazadaException;
+import io.carpets.Configuracion.UnidadDeTrabajo;
 import io.carpets.DTOs.VentaCompletaDTO;
 import io.carpets.entidades.Venta;
 import io.carpets.entidades.DetalleVenta;
@@ -8,6 +12,7 @@ import io.carpets.entidades.Cliente;
 import io.carpets.entidades.Usuario;
 import io.carpets.DTOs.MontosCalculados;
 import io.carpets.DTOs.BoletaVentaDTO;
+import io.carpets.DTOs.ProductoEscaneadoDTO;
 import io.carpets.repositories.VentaRepository;
 import io.carpets.repositories.DetalleVentaRepository;
 import io.carpets.repositories.ProductoRepository;
@@ -15,14 +20,25 @@ import io.carpets.repositories.ClienteRepository;
 import io.carpets.repositories.UsuarioRepository;
 import io.carpets.repositories.implementacion.VentaRepositoryImplementacion;
 import io.carpets.repositories.implementacion.DetalleVentaRepositoryImplementacion;
-import io.carpets.repositories.implementacion.ProductoRepositoryImplementacion;
+import io.carpets.repositories.implementacion.ProductoRepositoryCache;
 import io.carpets.repositories.implementacion.ClienteRepositoryImplementacion;
 import io.carpets.repositories.implementacion.UsuarioRepositoryImplementacion;
 import io.carpets.servicios.ServicioVenta;
+import io.carpets.util.ClavesRecientes;
+import io.carpets.util.Registro;
+import io.carpets.util.Texto;
 import io.carpets.util.Response;
+import io.carpets.util.UnVuelo;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
@@ -32,7 +48,7 @@ public class ServicioVentaImplementacion implements ServicioVenta {
 
     private VentaRepository ventaRepo = new VentaRepositoryImplementacion();
     private DetalleVentaRepository detalleVentaRepo = new DetalleVentaRepositoryImplementacion();
-    private ProductoRepository productoRepo = new ProductoRepositoryImplementacion();
+    private ProductoRepository productoRepo = ProductoRepositoryCache.instancia();
     private ClienteRepository clienteRepo = new ClienteRepositoryImplementacion();
     private UsuarioRepository usuarioRepo = new UsuarioRepositoryImplementacion();
     private io.carpets.servicios.ServicioProducto servicioProducto = new io.carpets.servicios.implementacion.ServicioProductoImplementacion();
@@ -43,23 +59,97 @@ public class ServicioVentaImplementacion implements ServicioVenta {
     // Límites para validación de precio razonable
     private static final double PRECIO_MINIMO = 0.01;
     private static final double PRECIO_MAXIMO = 100000.0; // Límite máximo razonable
-    private static final double PORCENTAJE_DESVIACION_MAXIMA = 2.0; // 200% de desviación máxima
+    private static final double PORCENTAJE_DESVIACION_MAXIMA = 200.0; // 200% de desviación máxima (se compara en porcentaje)
 
+    // Tope de entradas por lote de escaneos (una canasta grande son 20-30)
+    private static final int MAXIMO_ESCANEOS = 200;
+
+    // Compartidas por todas las instancias: el reintento puede llegar por otro hilo u otro Servicio
+    private static final ClavesRecientes CLAVES_RECIENTES = new ClavesRecientes(1024);
+    private static final UnVuelo<Integer> VENTAS_EN_CURSO = new UnVuelo<>();
+    private static final VelocidadVentas VELOCIDAD_VENTAS = new VelocidadVentas(new VentaRepositoryImplementacion());
+
+    /**
+     * Registra la venta. Si trae clave de idempotencia y ya se registró una venta con esa clave,
+     * devuelve su ID sin volver a registrarla ni descontar stock: desde memoria si es reciente,
+     * esperando al primer envío si aún está en curso, o desde la base de datos si no.
+     */
     @Override
     public int registrarVenta(Venta venta, List<DetalleVenta> detalles) {
-        try {
+        return registrar(venta, detalles, null);
+    }
+
+    /**
+     * Cobra en una sola llamada lo que antes eran tres (calcMontVentCom, regVenta y genBoletaVenta):
+     * valida precios y stock, calcula los montos, registra la venta en una transacción y arma la boleta
+     * con lo que ya se leyó en ella (cliente, vendedor y productos), sin volver a consultarlo.
+     *
+     * Si la venta ya se había registrado con la misma clave, la boleta se arma desde la venta guardada.
+     */
+    @Override
+    public BoletaVentaDTO checkout(Venta venta, List<DetalleVenta> detalles) {
+        if (detalles == null || detalles.isEmpty()) {
+            throw new RuntimeException("La venta no tiene productos");
+        }
+
+        BoletaVentaDTO boleta = new BoletaVentaDTO();
+        int idVenta = registrar(venta, detalles, boleta);
+
+        if (boleta.getVenta() == null) {
+            // Reenvío de una venta ya registrada: no pasó por esta transacción
+            Response<Venta> ventaRes = ventaRepo.findById(idVenta);
+            if (!ventaRes.isOk() || ventaRes.getContent() == null) {
+                throw new RuntimeException("Venta no encontrada con ID: " + idVenta);
+            }
+            Response<Cliente> clienteRes = clienteRepo.findByDni(ventaRes.getContent().getClienteDni());
+            Response<Usuario> vendedorRes = usuarioRepo.findById(ventaRes.getContent().getVendedorId());
+            llenarBoleta(boleta, ventaRes.getContent(), clienteRes.isOk() ? clienteRes.getContent() : null,
+                    vendedorRes.isOk() ? vendedorRes.getContent() : null, detalles);
+        }
+        return boleta;
+    }
+
+    /**
+     * @param boleta Si no es null, la venta se valida como en checkout (precios y stock) y, al confirmarse,
+     *               la boleta se llena con lo leído en la transacción. Queda vacía si la venta ya existía.
+     */
+    private int registrar(Venta venta, List<DetalleVenta> detalles, BoletaVentaDTO boleta) {
+        String clave = venta.getClaveIdempotencia();
+        if (clave == null || clave.isEmpty()) {
+            return registrarVentaEnBD(venta, detalles, boleta);
+        }
+
+        Integer registrada = CLAVES_RECIENTES.buscar(clave);
+        if (registrada == null) {
+            registrada = VENTAS_EN_CURSO.ejecutar(clave, () -> registrarVentaEnBD(venta, detalles, boleta), id -> id);
+            CLAVES_RECIENTES.recordar(clave, registrada);
+        }
+        venta.setId(registrada);
+        return registrada;
+    }
+
+    private int registrarVentaEnBD(Venta venta, List<DetalleVenta> detalles, BoletaVentaDTO boleta) {
+        // Toda la venta se registra en una sola transacción: o se guarda completa o no se guarda nada.
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar()) {
+            // 0. Reenvío de una venta ya registrada (misma clave): se devuelve la original sin tocar el stock
+            Integer registrada = buscarPorClave(venta.getClaveIdempotencia());
+            if (registrada != null) {
+                Registro.info("Venta con clave " + venta.getClaveIdempotencia() + " ya registrada (ID " + registrada + ")");
+                return registrada;
+            }
+
             // 1. Validar DNI (Formato básico)
             if (venta.getClienteDni() == null || venta.getClienteDni().length() != 8) {
-                throw new RuntimeException("DNI inválido: " + venta.getClienteDni());
+                throw new VentaRechazadaException("DNI inválido: " + venta.getClienteDni());
             }
 
             // --- AUTO-REGISTRO DE CLIENTE ---
             // Extraer el cliente verificando el Response
             Response<Cliente> resCliente = clienteRepo.findByDni(venta.getClienteDni());
-            Cliente clienteExistente = resCliente.isOk() ? resCliente.getContent() : null;
+            Cliente cliente = resCliente.isOk() ? resCliente.getContent() : null;
 
-            if (clienteExistente == null) {
-                System.out.println("Cliente nuevo detectado (" + venta.getClienteDni() + "). Registrando automáticamente...");
+            if (cliente == null) {
+                Registro.info("Cliente nuevo detectado (" + venta.getClienteDni() + "). Registrando automáticamente...");
                 Cliente nuevoCliente = new Cliente();
                 nuevoCliente.setDni(venta.getClienteDni());
                 nuevoCliente.setNombre("Cliente " + venta.getClienteDni());
@@ -68,57 +158,142 @@ public class ServicioVentaImplementacion implements ServicioVenta {
                 if (!resGuardar.isOk()) {
                     throw new RuntimeException("No se pudo auto-registrar al cliente " + venta.getClienteDni());
                 }
+                cliente = nuevoCliente;
             }
 
-            // 2. Validar que todos los productos existen
+            // 2. Validar que todos los productos existen (una sola consulta para todo el carrito)
+            Map<Integer, Integer> cantidadesPorProducto = new LinkedHashMap<>();
             for (DetalleVenta detalle : detalles) {
-                if (!validarProductoExiste(detalle.getProductoId())) {
-                    throw new RuntimeException("Producto no encontrado ID: " + detalle.getProductoId());
+                if (detalle.getCantidad() <= 0) {
+                    throw new VentaRechazadaException("Cantidad inválida para el producto ID: " + detalle.getProductoId());
+                }
+                cantidadesPorProducto.merge(detalle.getProductoId(), detalle.getCantidad(), Integer::sum);
+            }
+
+            Response<List<Producto>> resProductos = productoRepo.findByIds(cantidadesPorProducto.keySet());
+            if (!resProductos.isOk()) {
+                throw new RuntimeException("No se pudo leer los productos: " + resProductos.getMensaje());
+            }
+            Map<Integer, Producto> productos = new HashMap<>();
+            for (Producto p : resProductos.getContent()) {
+                productos.put(p.getId(), p);
+            }
+            for (Integer productoId : cantidadesPorProducto.keySet()) {
+                if (!productos.containsKey(productoId)) {
+                    throw new VentaRechazadaException("Producto no encontrado ID: " + productoId);
                 }
             }
 
+            // En checkout también el precio y el stock, contra los productos recién leídos
+            if (boleta != null) {
+                for (DetalleVenta detalle : detalles) {
+                    Producto producto = productos.get(detalle.getProductoId());
+                    if (!validarPrecioUnitario(detalle.getPrecioUnitario(), producto)) {
+                        throw new VentaRechazadaException("Precio inválido para " + producto.getNombre() + ": " + detalle.getPrecioUnitario());
+                    }
+                }
+                for (Map.Entry<Integer, Integer> e : cantidadesPorProducto.entrySet()) {
+                    Producto producto = productos.get(e.getKey());
+                    if (producto.getCantidad() < e.getValue()) {
+                        throw new VentaRechazadaException("Stock insuficiente para " + producto.getNombre()
+                                + " (disponible: " + producto.getCantidad() + ", pedido: " + e.getValue() + ")");
+                    }
+                }
+            }
+
+            // El vendedor de la boleta se lee antes de descontar stock, para no alargar los bloqueos de producto
+            // y del resumen diario
+            Usuario vendedor = null;
+            if (boleta != null) {
+                Response<Usuario> resVendedor = usuarioRepo.findById(venta.getVendedorId());
+                if (!resVendedor.isOk()) {
+                    throw new RuntimeException("SVI.checkout: Error al obtener el vendedor.");
+                }
+                vendedor = resVendedor.getContent();
+            }
+
             // 3. Calcular montos totales
             MontosCalculados montosVenta = calcularMontosVentaCompleta(detalles);
             venta.setMonto(montosVenta.getTotalConIGV());
 
-            // 4. Obtener ID y Numero Boleta
-            int proximoId = obtenerProximoIdVenta();
-            String numeroBoletaReal = generarNumeroBoleta(proximoId);
-            venta.setNumeroBoleta(numeroBoletaReal);
+            // 4. Numero de boleta desde la secuencia de la BD (sin recorrer el historial de ventas)
+            Response<Long> resNumero = ventaRepo.siguienteNumeroBoleta();
+            if (!resNumero.isOk()) {
+                throw new RuntimeException("No se pudo generar el número de boleta");
+            }
+            venta.setNumeroBoleta(generarNumeroBoleta(resNumero.getContent()));
 
-            // Guardar venta
+            // Guardar venta (save asigna el ID generado por la BD)
             Response resVenta = ventaRepo.save(venta);
             if (!resVenta.isOk()) {
                 throw new RuntimeException("Error al guardar la venta en BD");
             }
 
-            Venta ventaConId = obtenerVentaReciente();
-            if (ventaConId == null) {
-                throw new RuntimeException("Error al recuperar la venta registrada");
+            // Guardar detalles en un solo lote, con el costo de los productos ya leídos: así saveAll no vuelve
+            // a leer producto (con bloqueo compartido) antes de que el descuento de stock lo bloquee
+            for (DetalleVenta detalle : detalles) {
+                detalle.setVentaId(venta.getId());
+                detalle.setCostoUnitario(productos.get(detalle.getProductoId()).getPrecioCompra());
             }
 
-            // Guardar detalles
-            for (DetalleVenta detalle : detalles) {
-                detalle.setVentaId(ventaConId.getId());
-                detalleVentaRepo.save(detalle);
-
-                // Actualizar Stock mediante extracción segura del Response
-                Response<Producto> resProducto = productoRepo.findById(detalle.getProductoId());
-                if (resProducto.isOk()) {
-                    Producto producto = resProducto.getContent();
-                    producto.setCantidad(producto.getCantidad() - detalle.getCantidad());
-                    productoRepo.update(producto);
+            Response resDetalles = detalleVentaRepo.saveAll(detalles);
+            if (!resDetalles.isOk()) {
+                throw new RuntimeException("Error al guardar los detalles de la venta: " + resDetalles.getMensaje());
+            }
+
+            // Descontar el stock de todo el carrito en una sola sentencia (falla si alguno no alcanza)
+            Response resStock = productoRepo.descontarStockLote(cantidadesPorProducto);
+            if (!resStock.isOk()) {
+                // MESSAGE_ERROR: no alcanzó el stock (la venta no entra tal cual); lo demás es un error de la BD
+                if (Response.MESSAGE_ERROR.equals(resStock.getStatus())) {
+                    throw new VentaRechazadaException(resStock.getMensaje());
                 }
+                throw new RuntimeException(resStock.getMensaje());
             }
 
-            return ventaConId.getId();
+            // Sumar la venta al resumen de su día (se confirma junto con la venta)
+            Response resResumen = ventaRepo.acumularResumenDiario(venta.getId(), 1, IGV_PORCENTAJE);
+            if (!resResumen.isOk()) {
+                throw new RuntimeException("Error al actualizar el resumen diario: " + resResumen.getMensaje());
+            }
+
+            uow.confirmar();
+            VELOCIDAD_VENTAS.sumar(detalles);
+            if (boleta != null) {
+                llenarBoleta(boleta, venta, cliente, vendedor, detalles);
+            }
+            return venta.getId();
 
         } catch (Exception e) {
-            e.printStackTrace();
+            if (ConfiguracionBaseDatos.esFallaDeConexion(e)) {
+                throw new SinConexionException("SVI.registrarVenta: Sin conexión con la base de datos", e);
+            }
+            // Otro envío con la misma clave pudo confirmarse mientras tanto (el índice único rechazó este)
+            Integer registrada = buscarPorClave(venta.getClaveIdempotencia());
+            if (registrada != null) {
+                return registrada;
+            }
+            if (e instanceof VentaRechazadaException) {
+                // Error de negocio: se informa tal cual (ReplicadorVentas no la reintenta)
+                Registro.advertencia("SVI.registrarVenta: " + e.getMessage());
+                throw (VentaRechazadaException) e;
+            }
+            Registro.error("SVI.registrarVenta: " + e);
             throw new RuntimeException("Error al registrar venta: " + e.getMessage());
         }
     }
 
+    /**
+     * @return ID de la venta registrada con esa clave, o null si no hay clave o aún no existe.
+     */
+    private Integer buscarPorClave(String clave) {
+        if (clave == null || clave.isEmpty()) {
+            return null;
+        }
+        Response<Venta> res = ventaRepo.findByClaveIdempotencia(clave);
+        return res.isOk() && res.getContent() != null ? res.getContent().getId() : null;
+    }
+
     @Override
     public List<VentaCompletaDTO> listarVentasConDetalles() {
         Response<List<VentaCompletaDTO>> res = ventaRepo.listarVentasConDetalles();
@@ -130,121 +305,83 @@ public class ServicioVentaImplementacion implements ServicioVenta {
         return null;
     }
 
-    private int obtenerProximoIdVenta() {
-        try {
-            Response<List<Venta>> res = ventaRepo.findAll();
-            if (!res.isOk() || res.getContent().isEmpty()) {
-                return 1;
-            }
-
-            List<Venta> ventas = res.getContent();
-            int maxId = ventas.stream()
-                    .mapToInt(Venta::getId)
-                    .max()
-                    .orElse(0);
-
-            return maxId + 1;
-
-        } catch (Exception e) {
-            System.err.println("Error al obtener próximo ID de venta: " + e.getMessage());
-            return -1;
-        }
-    }
-
     @Override
     public List<Venta> obtenerVentasPorDia(String fecha) {
-        Response<List<Venta>> res = ventaRepo.findAll();
-        List<Venta> todasVentas = res.isOk() ? res.getContent() : new ArrayList<>();
-        return filtrarVentasPorFecha(todasVentas, fecha);
+        return obtenerVentasPorRango(fecha, fecha);
     }
 
+    /**
+     * Ventas entre dos días (ambos inclusive, formato yyyy-MM-dd). El filtro se resuelve en SQL
+     * como [inicio 00:00, día siguiente a fin 00:00).
+     */
     @Override
     public List<Venta> obtenerVentasPorRango(String fechaInicio, String fechaFin) {
-        Response<List<Venta>> res = ventaRepo.findAll();
-        List<Venta> todasVentas = res.isOk() ? res.getContent() : new ArrayList<>();
-        return filtrarVentasPorRango(todasVentas, fechaInicio, fechaFin);
-    }
+        try {
+            Timestamp desde = new Timestamp(java.sql.Date.valueOf(fechaInicio.trim()).getTime());
 
-    private Venta obtenerVentaReciente() {
-        Response<List<Venta>> res = ventaRepo.findAll();
-        if (!res.isOk() || res.getContent().isEmpty()) {
-            return null;
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(java.sql.Date.valueOf(fechaFin.trim()));
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            Timestamp hasta = new Timestamp(cal.getTimeInMillis());
+
+            Response<List<Venta>> res = ventaRepo.findByFechaRange(desde, hasta);
+            return res.isOk() ? res.getContent() : new ArrayList<>();
+
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Registro.advertencia("SVI.obtenerVentasPorRango: Fecha inválida (" + fechaInicio + " - " + fechaFin + ")");
+            return new ArrayList<>();
         }
-        List<Venta> ventas = res.getContent();
-        return ventas.get(ventas.size() - 1);
     }
 
-    private String generarNumeroBoleta(int ventaId) {
+    private String generarNumeroBoleta(long correlativo) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
         String fecha = sdf.format(new Date());
-        return "B" + fecha + "-" + String.format("%04d", ventaId);
-    }
-
-    private List<Venta> filtrarVentasPorFecha(List<Venta> ventas, String fecha) {
-        List<Venta> resultado = new java.util.ArrayList<>();
-        for (Venta venta : ventas) {
-            if (venta.getFecha() != null && venta.getFecha().toString().startsWith(fecha)) {
-                resultado.add(venta);
-            }
-        }
-        return resultado;
+        return "B" + fecha + "-" + String.format("%04d", correlativo);
     }
 
-    private List<Venta> filtrarVentasPorRango(List<Venta> ventas, String fechaInicio, String fechaFin) {
-        List<Venta> resultado = new java.util.ArrayList<>();
-        for (Venta venta : ventas) {
-            if (venta.getFecha() != null) {
-                String fechaVenta = venta.getFecha().toString().split(" ")[0];
-                if (fechaVenta.compareTo(fechaInicio) >= 0 && fechaVenta.compareTo(fechaFin) <= 0) {
-                    resultado.add(venta);
-                }
-            }
+    private boolean validarPrecioUnitario(double precioUnitario, int productoId) {
+        Response<Producto> resProducto = productoRepo.findById(productoId);
+        if (!resProducto.isOk() || resProducto.getContent() == null) {
+            return precioUnitario >= PRECIO_MINIMO && precioUnitario <= PRECIO_MAXIMO;
         }
-        return resultado;
+        return validarPrecioUnitario(precioUnitario, resProducto.getContent());
     }
 
-    private boolean validarPrecioUnitario(double precioUnitario, int productoId) {
+    private boolean validarPrecioUnitario(double precioUnitario, Producto producto) {
         if (precioUnitario < PRECIO_MINIMO) {
-            System.out.println("Precio demasiado bajo: " + precioUnitario);
+            Registro.advertencia("Precio demasiado bajo: " + precioUnitario);
             return false;
         }
 
         if (precioUnitario > PRECIO_MAXIMO) {
-            System.out.println("Precio excesivamente alto: " + precioUnitario);
+            Registro.advertencia("Precio excesivamente alto: " + precioUnitario);
             return false;
         }
 
-        Response<Producto> resProducto = productoRepo.findById(productoId);
-        if (resProducto.isOk()) {
-            Producto producto = resProducto.getContent();
-            double precioOriginal = producto.getPrecioVenta();
+        double precioOriginal = producto.getPrecioVenta();
+        if (precioOriginal <= 0) {
+            return true;
+        }
 
-            double porcentajeDesviacion = Math.abs((precioUnitario - precioOriginal) / precioOriginal) * 100;
+        double porcentajeDesviacion = Math.abs((precioUnitario - precioOriginal) / precioOriginal) * 100;
 
-            if (porcentajeDesviacion > PORCENTAJE_DESVIACION_MAXIMA) {
-                System.out.println("Desviación de precio excesiva: " + porcentajeDesviacion + "%");
-                System.out.println("Precio original: " + precioOriginal + ", Precio ingresado: " + precioUnitario);
-                return false;
-            }
+        if (porcentajeDesviacion > PORCENTAJE_DESVIACION_MAXIMA) {
+            Registro.advertencia("Desviación de precio excesiva: " + porcentajeDesviacion + "%"
+                    + " (precio original: " + precioOriginal + ", precio ingresado: " + precioUnitario + ")");
+            return false;
+        }
 
-            if (porcentajeDesviacion > 50.0) {
-                System.out.println("ADVERTENCIA: Desviación de precio significativa: " + porcentajeDesviacion + "%");
-                System.out.println("Producto: " + producto.getNombre() + " (ID: " + productoId + ")");
-                System.out.println("Precio original: " + precioOriginal + ", Precio ingresado: " + precioUnitario);
-                registrarAdvertenciaPrecio(productoId, precioOriginal, precioUnitario, porcentajeDesviacion);
-            }
+        if (porcentajeDesviacion > 50.0) {
+            registrarAdvertenciaPrecio(producto.getId(), precioOriginal, precioUnitario, porcentajeDesviacion);
         }
         return true;
     }
 
     private void registrarAdvertenciaPrecio(int productoId, double precioOriginal, double precioIngresado, double porcentajeDesviacion) {
-        System.out.println("=== ADVERTENCIA DE PRECIO ===");
-        System.out.println("Producto ID: " + productoId);
-        System.out.println("Precio original: " + precioOriginal);
-        System.out.println("Precio ingresado: " + precioIngresado);
-        System.out.println("Desviación: " + String.format("%.2f", porcentajeDesviacion) + "%");
-        System.out.println("Fecha: " + new Date());
-        System.out.println("=============================");
+        Registro.advertencia("Desviación de precio significativa: producto ID " + productoId
+                + ", precio original " + precioOriginal
+                + ", precio ingresado " + precioIngresado
+                + ", desviación " + String.format("%.2f", porcentajeDesviacion) + "%");
     }
 
     public boolean validarPrecioUnitarioConAutorizacion(double precioUnitario, int productoId, boolean autorizado) {
@@ -253,7 +390,7 @@ public class ServicioVentaImplementacion implements ServicioVenta {
         }
 
         if (autorizado) {
-            System.out.println("Precio override autorizado para producto ID: " + productoId);
+            Registro.info("Precio override autorizado para producto ID: " + productoId);
             return true;
         }
 
@@ -302,11 +439,26 @@ public class ServicioVentaImplementacion implements ServicioVenta {
             );
 
         } catch (Exception e) {
-            e.printStackTrace();
+            Registro.error("SVI.generarBoleta: " + e);
             throw new RuntimeException("Error al generar boleta: " + e.getMessage());
         }
     }
 
+    private void llenarBoleta(BoletaVentaDTO boleta, Venta venta, Cliente cliente, Usuario vendedor, List<DetalleVenta> detalles) {
+        MontosCalculados montos = calcularMontosVentaCompleta(detalles);
+        venta.setIgv(montos.getIgvSolo());
+        venta.setIgvAplicado(IGV_PORCENTAJE * 100);
+        venta.setTotalFinal(montos.getTotalConIGV());
+
+        boleta.setVenta(venta);
+        boleta.setCliente(cliente);
+        boleta.setVendedor(vendedor);
+        boleta.setDetalles(detalles);
+        boleta.setSubtotal(montos.getSubtotal());
+        boleta.setIgv(montos.getIgvSolo());
+        boleta.setTotal(montos.getTotalConIGV());
+    }
+
     @Override
     public MontosCalculados calcularMontos(double precioUnitario, int cantidad) {
         double subtotal = precioUnitario * cantidad;
@@ -360,8 +512,19 @@ public class ServicioVentaImplementacion implements ServicioVenta {
         List<Producto> resultado = new java.util.ArrayList<>();
         if (criterio == null || criterio.trim().isEmpty()) return resultado;
 
+        // Código de barras / SKU (un código numérico largo no cabe en un int y terminaría buscándose por nombre)
+        Response<Producto> porCodigo = servicioProducto.obtenerPorCodigo(criterio);
+        if (porCodigo.isOk() && porCodigo.getContent() != null) {
+            if (porCodigo.getContent().getCantidad() > 0) {
+                resultado.add(porCodigo.getContent());
+            } else {
+                ventaRepo.registrarProductoNoEncontrado(porCodigo.getContent().getId(), criterio, null);
+            }
+            return resultado;
+        }
+
         try {
-            int id = Integer.parseInt(criterio);
+            int id = Integer.parseInt(criterio.trim());
             Response<Producto> pReq = servicioProducto.obtenerPorId(id);
 
             if (pReq.isOk() && pReq.getContent() != null && pReq.getContent().getCantidad() > 0) {
@@ -370,14 +533,19 @@ public class ServicioVentaImplementacion implements ServicioVenta {
                 ventaRepo.registrarProductoNoEncontrado(id, criterio, null);
             }
         } catch (NumberFormatException e) {
-            Response<List<Producto>> listReq = servicioProducto.buscarProductos(criterio, "nombre");
+            String consulta = Texto.normalizar(criterio);
 
-            if (listReq.isOk() && listReq.getContent() != null) {
-                for (Producto p : listReq.getContent()) {
-                    if (p.getCantidad() > 0) {
-                        resultado.add(p);
-                    }
-                }
+            // Se resuelve en memoria con el índice de búsqueda, ya ordenado por relevancia
+            agregarConStock(resultado, servicioProducto.buscarProductos(criterio, "nombre"));
+
+            if (!resultado.isEmpty()) {
+                // Dentro de cada nivel (exacto, prefijo, palabra, contiene) primero lo que más se vende
+                VELOCIDAD_VENTAS.ordenar(resultado, p -> nivelDeCoincidencia(consulta, p));
+            } else {
+                // Sin coincidencia: se toleran errores de tipeo ("camisetta" -> "camiseta"); a igual
+                // cantidad de ediciones, primero lo que más se vende
+                agregarConStock(resultado, servicioProducto.buscarProductosAproximados(criterio));
+                VELOCIDAD_VENTAS.ordenar(resultado, p -> Texto.ediciones(consulta, Texto.normalizar(p.getNombre())));
             }
 
             if (resultado.isEmpty()) {
@@ -387,25 +555,151 @@ public class ServicioVentaImplementacion implements ServicioVenta {
         return resultado;
     }
 
+    /**
+     * Resuelve de una vez lo escaneado en una ráfaga, con a lo más dos lecturas: una por códigos y otra por IDs
+     * (ProductoRepositoryCache las atiende desde memoria y solo consulta, con un IN, los que no tiene).
+     * Cada entrada se prueba primero como código y, si no lo es y es un número, como ID.
+     * El stock se valida contra el total escaneado de cada producto en el lote, no escaneo por escaneo.
+     *
+     * @param entradas IDs o códigos, en el orden en que se escanearon
+     * @return Un resultado por entrada, en el mismo orden (producto null si no se encontró)
+     */
+    @Override
+    public Response<List<ProductoEscaneadoDTO>> resolverEscaneos(List<String> entradas) {
+        Response<List<ProductoEscaneadoDTO>> response = new Response<>();
+        List<ProductoEscaneadoDTO> resultado = new ArrayList<>();
+
+        if (entradas == null || entradas.isEmpty()) {
+            response.exito(resultado);
+            return response;
+        }
+        if (entradas.size() > MAXIMO_ESCANEOS) {
+            response.internal_error("SVI.resolverEscaneos: Máximo " + MAXIMO_ESCANEOS + " productos por lote");
+            return response;
+        }
+
+        List<String> limpias = new ArrayList<>(entradas.size());
+        for (String entrada : entradas) {
+            limpias.add(entrada != null ? entrada.trim() : "");
+        }
+
+        // 1. Códigos
+        Response<List<Producto>> resCodigos = productoRepo.findByCodigos(limpias);
+        if (!resCodigos.isOk()) {
+            response.internal_error("SVI.resolverEscaneos: " + resCodigos.getMensaje());
+            return response;
+        }
+        Map<String, Producto> porCodigo = new HashMap<>();
+        for (Producto p : resCodigos.getContent()) {
+            if (p.getCodigo() != null) {
+                porCodigo.put(p.getCodigo(), p);
+            }
+        }
+
+        // 2. IDs (solo lo que no resultó ser un código)
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String entrada : limpias) {
+            Integer id = porCodigo.containsKey(entrada) ? null : parsearId(entrada);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        Map<Integer, Producto> porId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Response<List<Producto>> resIds = productoRepo.findByIds(ids);
+            if (!resIds.isOk()) {
+                response.internal_error("SVI.resolverEscaneos: " + resIds.getMensaje());
+                return response;
+            }
+            for (Producto p : resIds.getContent()) {
+                porId.put(p.getId(), p);
+            }
+        }
+
+        // 3. Cuántas veces se escaneó cada producto, para validar el stock contra el total
+        List<Producto> resueltos = new ArrayList<>(limpias.size());
+        Map<Integer, Integer> escaneados = new HashMap<>();
+        for (String entrada : limpias) {
+            Producto p = porCodigo.get(entrada);
+            if (p == null) {
+                Integer id = parsearId(entrada);
+                p = id != null ? porId.get(id) : null;
+            }
+            resueltos.add(p);
+            if (p != null) {
+                escaneados.merge(p.getId(), 1, Integer::sum);
+            }
+        }
+
+        for (int i = 0; i < limpias.size(); i++) {
+            Producto p = resueltos.get(i);
+            if (p == null) {
+                resultado.add(new ProductoEscaneadoDTO(entradas.get(i), null, 0, false));
+                ventaRepo.registrarProductoNoEncontrado(parsearId(limpias.get(i)), limpias.get(i), null);
+            } else {
+                int cantidad = escaneados.get(p.getId());
+                resultado.add(new ProductoEscaneadoDTO(entradas.get(i), p, cantidad, p.getCantidad() >= cantidad));
+            }
+        }
+
+        response.exito(resultado);
+        return response;
+    }
+
+    /**
+     * 0 nombre igual, 1 empieza igual, 2 alguna palabra empieza igual, 3 lo contiene en otra parte.
+     */
+    private static int nivelDeCoincidencia(String consulta, Producto producto) {
+        String nombre = Texto.normalizar(producto.getNombre());
+        if (nombre.equals(consulta)) {
+            return 0;
+        }
+        if (nombre.startsWith(consulta)) {
+            return 1;
+        }
+        return nombre.contains(" " + consulta) ? 2 : 3;
+    }
+
+    private static Integer parsearId(String texto) {
+        try {
+            int id = Integer.parseInt(texto);
+            return id > 0 ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void agregarConStock(List<Producto> resultado, Response<List<Producto>> encontrados) {
+        if (encontrados.isOk() && encontrados.getContent() != null) {
+            for (Producto p : encontrados.getContent()) {
+                if (p.getCantidad() > 0) {
+                    resultado.add(p);
+                }
+            }
+        }
+    }
+
     @Override
     public List<Venta> listarVentas() {
         try {
             Response<List<Venta>> res = ventaRepo.findAll();
             List<Venta> ventas = res.isOk() ? res.getContent() : new ArrayList<>();
-            System.out.println("Se obtuvieron " + ventas.size() + " ventas");
+            Registro.debug("Se obtuvieron " + ventas.size() + " ventas");
             return ventas;
 
         } catch (Exception e) {
-            System.err.println("Error en listarVentas: " + e.getMessage());
-            e.printStackTrace();
+            Registro.error("Error en listarVentas: " + e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Elimina la venta, devuelve su stock y la resta del resumen diario, todo en una sola transacción.
+     */
     @Override
     public Response eliminarVenta(int ventaId) {
         Response finalResponse = new Response();
-        try {
+        try (UnidadDeTrabajo uow = UnidadDeTrabajo.iniciar()) {
             Response<Venta> vRes = ventaRepo.findById(ventaId);
             if (!vRes.isOk()) {
                 finalResponse.internal_error("Venta no encontrada con ID: " + ventaId);
@@ -413,40 +707,47 @@ public class ServicioVentaImplementacion implements ServicioVenta {
             }
             Venta venta = vRes.getContent();
 
-            System.out.println("Eliminando venta ID: " + ventaId + " - Boleta: " + venta.getNumeroBoleta());
+            Registro.info("Eliminando venta ID: " + ventaId + " - Boleta: " + venta.getNumeroBoleta());
 
             Response<List<DetalleVenta>> detRes = detalleVentaRepo.findByVenta(ventaId);
             List<DetalleVenta> detalles = detRes.isOk() ? detRes.getContent() : new ArrayList<>();
 
+            // Los bloqueos se toman en el mismo orden que registrarVenta para no cruzarse con una venta en
+            // curso: primero las filas de producto (por ID ascendente, como descontarStockLote) y después
+            // los resúmenes (día, ganancia por producto y ganancia total).
+            Map<Integer, Integer> cantidadesPorProducto = new TreeMap<>();
             for (DetalleVenta detalle : detalles) {
-                Response<Producto> prodRes = productoRepo.findById(detalle.getProductoId());
-                if (prodRes.isOk()) {
-                    Producto producto = prodRes.getContent();
-                    int stockActual = producto.getCantidad();
-                    int nuevoStock = stockActual + detalle.getCantidad();
-
-                    producto.setCantidad(nuevoStock);
-                    boolean stockActualizado = productoRepo.update(producto).isOk();
-
-                    if (!stockActualizado) {
-                        finalResponse.internal_error("Error al revertir stock del producto ID: " + producto.getId());
-                        return finalResponse;
-                    }
+                cantidadesPorProducto.merge(detalle.getProductoId(), detalle.getCantidad(), Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> e : cantidadesPorProducto.entrySet()) {
+                boolean stockActualizado = productoRepo.incrementarStock(e.getKey(), e.getValue()).isOk();
+
+                if (!stockActualizado) {
+                    finalResponse.internal_error("Error al revertir stock del producto ID: " + e.getKey());
+                    return finalResponse;
                 }
             }
 
+            // Restar de los resúmenes mientras los detalles siguen presentes
+            Response resResumen = ventaRepo.acumularResumenDiario(ventaId, -1, IGV_PORCENTAJE);
+            if (!resResumen.isOk()) {
+                finalResponse.internal_error("Error al actualizar el resumen diario: " + resResumen.getMensaje());
+                return finalResponse;
+            }
+
             for (DetalleVenta detalle : detalles) {
                 boolean detalleEliminado = detalleVentaRepo.delete(detalle.getId()).isOk();
                 if (!detalleEliminado) {
-                    System.err.println("Error al eliminar detalle ID: " + detalle.getId());
+                    Registro.error("Error al eliminar detalle ID: " + detalle.getId());
                 }
             }
 
             Response ventaEliminadaRes = ventaRepo.delete(ventaId);
 
             if (ventaEliminadaRes.isOk()) {
+                uow.confirmar();
                 finalResponse.exito();
-                System.out.println("Venta eliminada exitosamente. Stock revertido para " + detalles.size() + " productos");
+                Registro.info("Venta eliminada exitosamente. Stock revertido para " + detalles.size() + " productos");
             } else {
                 finalResponse.internal_error("Error al eliminar la venta de la base de datos");
             }
@@ -455,8 +756,28 @@ public class ServicioVentaImplementacion implements ServicioVenta {
 
         } catch (Exception e) {
             finalResponse.internal_error("Error en eliminarVenta: " + e.getMessage());
-            e.printStackTrace();
+            Registro.error("Error en eliminarVenta: " + e);
             return finalResponse;
         }
     }
+
+    /**
+     * @return Totales de los últimos 30 días con ventas, leídos del resumen diario.
+     */
+    @Override
+    public Response<List<Map<String, Object>>> obtenerReporteDiario() {
+        return ventaRepo.obtenerReporteDiario();
+    }
+
+    /**
+     * Recalcula el resumen diario desde el historial de ventas.
+     */
+    @Override
+    public Response<Integer> reconstruirResumenDiario() {
+        Response<Integer> res = ventaRepo.reconstruirResumenDiario(IGV_PORCENTAJE);
+        if (res.isOk()) {
+            Registro.info("Resumen diario reconstruido: " + res.getContent() + " días");
+        }
+        return res;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package io.carpets.servicios.implementacion;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import io.carpets.Configuracion.SinConexionException;
+import io.carpets.DTOs.BoletaVentaDTO;
+import io.carpets.DTOs.MontosCalculados;
+import io.carpets.DTOs.ProductoEscaneadoDTO;
+import io.carpets.DTOs.VentaCompletaDTO;
+import io.carpets.entidades.DetalleVenta;
+import io.carpets.entidades.Producto;
+import io.carpets.entidades.Venta;
+import io.carpets.local.AlmacenLocal;
+import io.carpets.servicios.ServicioVenta;
+import io.carpets.util.Registro;
+import io.carpets.util.Response;
+
+/**
+ * Decorador de ServicioVenta que sigue vendiendo cuando la base de datos no responde.
+ *
+ * Si registrarVenta no llega a la base de datos (SinConexionException), la venta se valida contra el
+ * catálogo del AlmacenLocal y se guarda en el equipo con un ID provisional negativo; ReplicadorVentas la
+ * reenvía al volver la conexión. Mientras el almacén esté sin conexión ni siquiera se intenta la base de
+ * datos, así la caja no espera el tiempo de conexión en cada venta.
+ *
+ * Las búsquedas de la pantalla de venta también usan el catálogo local mientras no haya conexión.
+ * El resto de métodos se delegan sin cambios.
+ *
+ * El almacén se abre en segundo plano al iniciar la aplicación: hasta que esté listo, todo va directo
+ * a la base de datos como si no hubiera modo sin conexión.
+ */
+public class ServicioVentaSinConexion implements ServicioVenta {
+
+    private final ServicioVenta servicio;
+    private final Supplier<AlmacenLocal> almacen;
+
+    public ServicioVentaSinConexion(ServicioVenta servicio, AlmacenLocal almacen) {
+        this(servicio, () -> almacen);
+    }
+
+    /**
+     * @param almacen Devuelve el almacén, o null mientras todavía no se abrió (p. ej. AlmacenLocal::instancia)
+     */
+    public ServicioVentaSinConexion(ServicioVenta servicio, Supplier<AlmacenLocal> almacen) {
+        this.servicio = servicio;
+        this.almacen = almacen;
+    }
+
+    @Override
+    public int registrarVenta(Venta venta, List<DetalleVenta> detalles) {
+        // La clave acompaña a la venta en todos sus envíos: si la respuesta se pierde, el reenvío no la duplica
+        if (venta.getClaveIdempotencia() == null || venta.getClaveIdempotencia().isEmpty()) {
+            venta.setClaveIdempotencia(UUID.randomUUID().toString());
+        }
+
+        AlmacenLocal almacen = this.almacen.get();
+        if (almacen == null) {
+            return servicio.registrarVenta(venta, detalles);
+        }
+        if (!almacen.isSinConexion()) {
+            try {
+                return servicio.registrarVenta(venta, detalles);
+            } catch (SinConexionException e) {
+                almacen.marcarSinConexion();
+            }
+        }
+        return registrarEnEquipo(almacen, venta, detalles);
+    }
+
+    /**
+     * Sin conexión la venta se guarda en el equipo y la boleta sale sin número, cliente ni vendedor:
+     * se completan cuando ReplicadorVentas la registra.
+     */
+    @Override
+    public BoletaVentaDTO checkout(Venta venta, List<DetalleVenta> detalles) {
+        if (venta.getClaveIdempotencia() == null || venta.getClaveIdempotencia().isEmpty()) {
+            venta.setClaveIdempotencia(UUID.randomUUID().toString());
+        }
+
+        AlmacenLocal almacen = this.almacen.get();
+        if (almacen == null) {
+            return servicio.checkout(venta, detalles);
+        }
+        if (!almacen.isSinConexion()) {
+            try {
+                return servicio.checkout(venta, detalles);
+            } catch (SinConexionException e) {
+                almacen.marcarSinConexion();
+            }
+        }
+        registrarEnEquipo(almacen, venta, detalles);
+
+        MontosCalculados montos = servicio.calcularMontosVentaCompleta(detalles);
+        venta.setIgv(montos.getIgvSolo());
+        venta.setTotalFinal(montos.getTotalConIGV());
+        return new BoletaVentaDTO(venta, null, null, detalles,
+                montos.getSubtotal(), montos.getIgvSolo(), montos.getTotalConIGV());
+    }
+
+    @Override
+    public List<Producto> buscarProductoEnVentaPorIdONombre(String criterio) {
+        AlmacenLocal almacen = almacenSinConexion();
+        if (almacen == null) {
+            return servicio.buscarProductoEnVentaPorIdONombre(criterio);
+        }
+
+        List<Producto> resultado = new ArrayList<>();
+        if (criterio == null || criterio.trim().isEmpty()) return resultado;
+
+        Producto porCodigo = almacen.buscarPorCodigo(criterio);
+        if (porCodigo != null) {
+            if (porCodigo.getCantidad() > 0) {
+                resultado.add(porCodigo);
+            }
+            return resultado;
+        }
+
+        try {
+            Producto p = almacen.buscarProducto(Integer.parseInt(criterio.trim()));
+            if (p != null && p.getCantidad() > 0) {
+                resultado.add(p);
+            }
+        } catch (NumberFormatException e) {
+            resultado.addAll(almacen.buscarPorNombre(criterio));
+        }
+        return resultado;
+    }
+
+    @Override
+    public Response<List<ProductoEscaneadoDTO>> resolverEscaneos(List<String> entradas) {
+        AlmacenLocal almacen = almacenSinConexion();
+        if (almacen == null) {
+            return servicio.resolverEscaneos(entradas);
+        }
+
+        // Sin conexión: desde el catálogo local, con el stock disponible en el equipo
+        List<Producto> resueltos = new ArrayList<>();
+        Map<Integer, Integer> escaneados = new HashMap<>();
+        if (entradas != null) {
+            for (String entrada : entradas) {
+                Producto p = entrada != null ? almacen.buscarPorCodigo(entrada) : null;
+                if (p == null && entrada != null) {
+                    try {
+                        p = almacen.buscarProducto(Integer.parseInt(entrada.trim()));
+                    } catch (NumberFormatException e) {
+                        // No es código ni ID
+                    }
+                }
+                resueltos.add(p);
+                if (p != null) {
+                    escaneados.merge(p.getId(), 1, Integer::sum);
+                }
+            }
+        }
+
+        List<ProductoEscaneadoDTO> resultado = new ArrayList<>();
+        for (int i = 0; i < resueltos.size(); i++) {
+            Producto p = resueltos.get(i);
+            int cantidad = p != null ? escaneados.get(p.getId()) : 0;
+            resultado.add(new ProductoEscaneadoDTO(entradas.get(i), p, cantidad, p != null && p.getCantidad() >= cantidad));
+        }
+
+        Response<List<ProductoEscaneadoDTO>> response = new Response<>();
+        response.exito(resultado);
+        return response;
+    }
+
+    @Override
+    public boolean validarProductoExiste(int productoId) {
+        AlmacenLocal almacen = almacenSinConexion();
+        if (almacen != null) {
+            return almacen.buscarProducto(productoId) != null;
+        }
+        return servicio.validarProductoExiste(productoId);
+    }
+
+    // ========================================================================
+    // DELEGADOS
+    // ========================================================================
+
+    @Override
+    public List<Venta> obtenerVentasPorDia(String fecha) {
+        return servicio.obtenerVentasPorDia(fecha);
+    }
+
+    @Override
+    public List<Venta> obtenerVentasPorRango(String fechaInicio, String fechaFin) {
+        return servicio.obtenerVentasPorRango(fechaInicio, fechaFin);
+    }
+
+    @Override
+    public List<VentaCompletaDTO> listarVentasConDetalles() {
+        return servicio.listarVentasConDetalles();
+    }
+
+    @Override
+    public Response eliminarDetalleVenta(int detalleId) {
+        return servicio.eliminarDetalleVenta(detalleId);
+    }
+
+    @Override
+    public MontosCalculados calcularMontos(double precioUnitario, int cantidad) {
+        return servicio.calcularMontos(precioUnitario, cantidad);
+    }
+
+    @Override
+    public MontosCalculados calcularMontosVentaCompleta(List<DetalleVenta> detalles) {
+        return servicio.calcularMontosVentaCompleta(detalles);
+    }
+
+    @Override
+    public double calcularTotalVenta(List<DetalleVenta> detalles) {
+        return servicio.calcularTotalVenta(detalles);
+    }
+
+    @Override
+    public double calcularGananciaTotal() {
+        return servicio.calcularGananciaTotal();
+    }
+
+    @Override
+    public BoletaVentaDTO generarBoleta(int ventaId, List<DetalleVenta> detalles) {
+        return servicio.generarBoleta(ventaId, detalles);
+    }
+
+    @Override
+    public List<Venta> listarVentas() {
+        return servicio.listarVentas();
+    }
+
+    @Override
+    public Response eliminarVenta(int ventaId) {
+        return servicio.eliminarVenta(ventaId);
+    }
+
+    @Override
+    public Response<List<Map<String, Object>>> obtenerReporteDiario() {
+        return servicio.obtenerReporteDiario();
+    }
+
+    @Override
+    public Response<Integer> reconstruirResumenDiario() {
+        return servicio.reconstruirResumenDiario();
+    }
+
+    // ========================================================================
+    // MÉTODOS PRIVADOS AUXILIARES
+    // ========================================================================
+
+    /**
+     * @return El almacén si ya se abrió y está sin conexión; null si hay que ir a la base de datos.
+     */
+    private AlmacenLocal almacenSinConexion() {
+        AlmacenLocal almacen = this.almacen.get();
+        return almacen != null && almacen.isSinConexion() ? almacen : null;
+    }
+
+    /**
+     * Mismas validaciones que la venta en línea que no requieren la base de datos; el stock se valida
+     * contra el catálogo local al encolarla.
+     */
+    private int registrarEnEquipo(AlmacenLocal almacen, Venta venta, List<DetalleVenta> detalles) {
+        if (venta.getClienteDni() == null || venta.getClienteDni().length() != 8) {
+            throw new RuntimeException("DNI inválido: " + venta.getClienteDni());
+        }
+        if (venta.getFecha() == null) {
+            venta.setFecha(new Date());
+        }
+        venta.setMonto(servicio.calcularMontosVentaCompleta(detalles).getTotalConIGV());
+
+        int idLocal = almacen.encolarVenta(venta, detalles);
+        venta.setId(idLocal);
+        Registro.info("Venta guardada en el equipo (ID provisional " + idLocal + "), se enviará al volver la conexión");
+        return idLocal;
+    }
+}
@@ -0,0 +1,105 @@
+package io.carpets.servicios.implementacion;
+
+import io.carpets.entidades.DetalleVenta;
+import io.carpets.entidades.Producto;
+import io.carpets.repositories.VentaRepository;
+import io.carpets.util.Registro;
+import io.carpets.util.Response;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Unidades vendidas por producto en los últimos DIAS_VENTANA días, para que las búsquedas del punto de
+ * venta muestren primero lo que más sale dentro de cada nivel de coincidencia (nunca por encima de uno mejor).
+ *
+ * Se lee de la base de datos como mucho cada REFRESCO_MS (una consulta agrupada por producto); entre
+ * lecturas, las ventas registradas desde este equipo se suman en memoria. Si la consulta falla se sigue
+ * con lo anterior: el orden es solo una ayuda y no debe frenar la búsqueda.
+ */
+final class VelocidadVentas {
+
+    private static final int DIAS_VENTANA = 30;
+    private static final long REFRESCO_MS = 10 * 60_000;
+
+    private final VentaRepository ventaRepo;
+
+    // Un solo hilo consulta la base de datos a la vez
+    private final Object leyendo = new Object();
+
+    // Protegidos por 'this'
+    private Map<Integer, Integer> unidades = new HashMap<>();
+    private long leidoEn;
+
+    VelocidadVentas(VentaRepository ventaRepo) {
+        this.ventaRepo = ventaRepo;
+    }
+
+    /**
+     * Ordena por nivel de coincidencia y, dentro de cada nivel, de más a menos vendido: una coincidencia
+     * exacta queda primera aunque otra parcial se venda más. El orden es estable: a igual nivel y venta
+     * se conserva el orden recibido (la relevancia de la búsqueda).
+     *
+     * @param nivel Nivel de coincidencia de cada producto (menor es mejor)
+     */
+    void ordenar(List<Producto> productos, ToIntFunction<Producto> nivel) {
+        if (productos.size() < 2) {
+            return;
+        }
+        actualizarSiHaceFalta();
+
+        Map<Integer, Integer> vendidas = new HashMap<>();
+        Map<Integer, Integer> niveles = new HashMap<>();
+        synchronized (this) {
+            for (Producto p : productos) {
+                vendidas.put(p.getId(), unidades.getOrDefault(p.getId(), 0));
+            }
+        }
+        for (Producto p : productos) {
+            niveles.put(p.getId(), nivel.applyAsInt(p));
+        }
+        productos.sort(Comparator.comparingInt((Producto p) -> niveles.get(p.getId()))
+                .thenComparing(Comparator.comparingInt((Producto p) -> vendidas.get(p.getId())).reversed()));
+    }
+
+    /**
+     * Suma una venta recién confirmada, sin esperar a la siguiente lectura.
+     */
+    synchronized void sumar(List<DetalleVenta> detalles) {
+        for (DetalleVenta d : detalles) {
+            unidades.merge(d.getProductoId(), d.getCantidad(), Integer::sum);
+        }
+    }
+
+    private void actualizarSiHaceFalta() {
+        if (!estaVencido()) {
+            return;
+        }
+        synchronized (leyendo) {
+            if (!estaVencido()) {
+                return;
+            }
+            long ahora = System.currentTimeMillis();
+            Timestamp desde = new Timestamp(ahora - DIAS_VENTANA * 24L * 60 * 60 * 1000);
+            Response<Map<Integer, Integer>> res = ventaRepo.unidadesVendidasDesde(desde);
+
+            synchronized (this) {
+                // También si falló: se reintenta al vencer REFRESCO_MS y no en cada búsqueda
+                leidoEn = ahora;
+                if (res.isOk() && res.getContent() != null) {
+                    unidades = res.getContent();
+                } else {
+                    Registro.advertencia("VelocidadVentas: No se pudo leer las ventas recientes: " + res.getMensaje());
+                }
+            }
+        }
+    }
+
+    private synchronized boolean estaVencido() {
+        return System.currentTimeMillis() - leidoEn >= REFRESCO_MS;
+    }
+}
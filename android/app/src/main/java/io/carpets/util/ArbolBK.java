@@ -0,0 +1,108 @@
+package io.carpets.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Árbol BK de palabras para encontrar las que están a pocas ediciones (distancia de Levenshtein) de otra.
+ *
+ * Cada hijo cuelga de su nodo según la distancia entre ambos. Por la desigualdad triangular, al buscar
+ * con tolerancia k desde un nodo a distancia d solo hace falta bajar por los hijos entre d - k y d + k,
+ * así que se compara contra una fracción de las palabras.
+ *
+ * No admite quitar palabras: quien lo use filtra las que ya no existen (o lo vuelve a armar).
+ * No es thread-safe; el llamador sincroniza.
+ */
+public final class ArbolBK {
+
+    private Nodo raiz;
+    private int tamano;
+
+    /**
+     * Agrega la palabra si no estaba.
+     */
+    public void agregar(String palabra) {
+        if (raiz == null) {
+            raiz = new Nodo(palabra);
+            tamano++;
+            return;
+        }
+        Nodo actual = raiz;
+        while (true) {
+            int d = distancia(palabra, actual.palabra);
+            if (d == 0) {
+                return;
+            }
+            Nodo hijo = actual.hijos.get(d);
+            if (hijo == null) {
+                actual.hijos.put(d, new Nodo(palabra));
+                tamano++;
+                return;
+            }
+            actual = hijo;
+        }
+    }
+
+    /**
+     * @return Palabras a distancia menor o igual a distanciaMaxima, con su distancia.
+     */
+    public Map<String, Integer> buscar(String palabra, int distanciaMaxima) {
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        if (raiz == null) {
+            return resultado;
+        }
+        Deque<Nodo> pendientes = new ArrayDeque<>();
+        pendientes.push(raiz);
+        while (!pendientes.isEmpty()) {
+            Nodo nodo = pendientes.pop();
+            int d = distancia(palabra, nodo.palabra);
+            if (d <= distanciaMaxima) {
+                resultado.put(nodo.palabra, d);
+            }
+            for (Map.Entry<Integer, Nodo> hijo : nodo.hijos.entrySet()) {
+                if (Math.abs(hijo.getKey() - d) <= distanciaMaxima) {
+                    pendientes.push(hijo.getValue());
+                }
+            }
+        }
+        return resultado;
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    /**
+     * Distancia de Levenshtein (inserciones, borrados y reemplazos de un carácter), con dos filas.
+     */
+    public static int distancia(String a, String b) {
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + costo);
+            }
+            int[] t = anterior;
+            anterior = actual;
+            actual = t;
+        }
+        return anterior[b.length()];
+    }
+
+    private static final class Nodo {
+        final String palabra;
+        final Map<Integer, Nodo> hijos = new HashMap<>();
+
+        Nodo(String palabra) {
+            this.palabra = palabra;
+        }
+    }
+}
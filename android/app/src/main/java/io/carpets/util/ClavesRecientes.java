@@ -0,0 +1,39 @@
+package io.carpets.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Últimas claves de idempotencia atendidas y el ID que se registró con cada una.
+ *
+ * Un reintento del cliente (misma clave) se responde desde memoria en O(1), sin consultar la base de datos.
+ * Es acotada (se descartan las menos usadas), así que no reemplaza a la columna única en la base de datos:
+ * una clave antigua, o una que atendió otro equipo, se resuelve allí.
+ */
+public final class ClavesRecientes {
+
+    private final Map<String, Integer> claves;
+
+    public ClavesRecientes(int capacidadMaxima) {
+        // accessOrder = true: la primera entrada es la menos usada
+        this.claves = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > capacidadMaxima;
+            }
+        };
+    }
+
+    /**
+     * @return ID registrado con la clave, o null si no se atendió hace poco.
+     */
+    public synchronized Integer buscar(String clave) {
+        return clave == null ? null : claves.get(clave);
+    }
+
+    public synchronized void recordar(String clave, int id) {
+        if (clave != null) {
+            claves.put(clave, id);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package io.carpets.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Métricas de latencia y errores por operación (método del puente, método de Servicio, sentencia SQL, etc.).
+ *
+ * Cada operación tiene un histograma de cubetas en potencias de 2 (en microsegundos): registrar una
+ * medición solo incrementa contadores atómicos, sin crear objetos, por lo que puede quedar activo en producción.
+ * Los percentiles se estiman con el límite superior de la cubeta (sin pasar del máximo observado).
+ *
+ * Prefijos usados:
+ * - "bridge."    llamada completa del MethodChannel (incluye la conversión a Map)
+ * - "servicio."  método de un Servicio
+ * - "sql."       ejecución de una sentencia (sin contar la obtención de la conexión), agrupada por forma
+ * - "conexion."  préstamo de una conexión del pool y apertura de conexiones físicas
+ * - "local."     reenvío de ventas guardadas en el equipo (ReplicadorVentas)
+ */
+public final class Metricas {
+
+    private static final ConcurrentHashMap<String, Histograma> HISTOGRAMAS = new ConcurrentHashMap<>();
+
+    // Las sentencias SQL se agrupan por su forma (ver normalizarSql); el nombre legible se arma solo al pedir el resumen.
+    private static final ConcurrentHashMap<String, Histograma> SENTENCIAS = new ConcurrentHashMap<>();
+
+    // Pasado este número de formas distintas, las nuevas se acumulan en SQL_OTRAS
+    private static final int MAXIMO_SENTENCIAS = 200;
+    private static final String SQL_OTRAS = "sql.(otras)";
+
+    // Listas de parámetros armadas según el tamaño del lote: IN (?, ?, ...), VALUES (?, ?), (?, ?) y CASE ... WHEN ? THEN ?
+    private static final Pattern LISTA_PARAMETROS = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern LISTA_TUPLAS = Pattern.compile("\\(\\?…?\\)(\\s*,\\s*\\(\\?…?\\))+");
+    private static final Pattern LISTA_CASOS = Pattern.compile("(WHEN \\? THEN \\?\\s*)+");
+
+    private static final int LARGO_MAXIMO_SQL = 90;
+
+    private Metricas() {
+    }
+
+    /**
+     * Registra la duración de una operación iniciada en 'inicioNanos' (System.nanoTime()).
+     */
+    public static void registrar(String operacion, long inicioNanos, boolean error) {
+        HISTOGRAMAS.computeIfAbsent(operacion, k -> new Histograma()).registrar(System.nanoTime() - inicioNanos, error);
+    }
+
+    /**
+     * Envuelve una implementación para medir cada método de su interfaz como "prefijo.metodo".
+     * Se cuenta como error una excepción o un Response que no sea exitoso.
+     */
+    @SuppressWarnings("unchecked")
+    public static <I> I instrumentar(Class<I> interfaz, I implementacion, String prefijo) {
+        Map<String, String> nombres = new ConcurrentHashMap<>();
+        return (I) Proxy.newProxyInstance(
+                interfaz.getClassLoader(),
+                new Class<?>[]{interfaz},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(implementacion, args);
+                    }
+                    String nombre = nombres.computeIfAbsent(method.getName(), m -> prefijo + "." + m);
+                    long inicio = System.nanoTime();
+                    boolean error = true;
+                    try {
+                        Object resultado = method.invoke(implementacion, args);
+                        error = resultado instanceof Response && !((Response<?>) resultado).isOk();
+                        return resultado;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        registrar(nombre, inicio, error);
+                    }
+                });
+    }
+
+    /**
+     * Envuelve una sentencia para medir sus execute*() bajo el texto SQL con el que se preparó.
+     */
+    public static Statement instrumentarSentencia(Statement sentencia, String sql) {
+        // Una PreparedStatement se resuelve una vez al prepararla, no en cada ejecución
+        Histograma preparada = sql != null ? histogramaSentencia(sql) : null;
+        Class<?> interfaz = sentencia instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+                Metricas.class.getClassLoader(),
+                new Class<?>[]{interfaz},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        try {
+                            return method.invoke(sentencia, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                    long inicio = System.nanoTime();
+                    boolean error = true;
+                    try {
+                        Object resultado = method.invoke(sentencia, args);
+                        error = false;
+                        return resultado;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        // Statement.execute*(sql): el texto viene como argumento.
+                        Histograma h = preparada != null ? preparada
+                                : histogramaSentencia(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "?");
+                        h.registrar(System.nanoTime() - inicio, error);
+                    }
+                });
+    }
+
+    /**
+     * @return Resumen ordenado por nombre: conteo, errores, promedio, p50, p95, p99 y máximo (en ms).
+     */
+    public static Map<String, Object> resumen() {
+        Map<String, Object> resumen = new TreeMap<>();
+        for (Map.Entry<String, Histograma> e : HISTOGRAMAS.entrySet()) {
+            resumen.put(e.getKey(), e.getValue().resumen());
+        }
+        for (Map.Entry<String, Histograma> e : SENTENCIAS.entrySet()) {
+            String nombre = "sql." + abreviarSql(e.getKey());
+            Map<String, Object> actual = e.getValue().resumen();
+            // Dos textos distintos pueden abreviarse igual; se conserva el más usado.
+            Object previo = resumen.get(nombre);
+            if (previo == null || (long) ((Map<?, ?>) previo).get("conteo") < (long) actual.get("conteo")) {
+                resumen.put(nombre, actual);
+            }
+        }
+        return resumen;
+    }
+
+    /**
+     * Borra todas las mediciones.
+     */
+    public static void reiniciar() {
+        HISTOGRAMAS.clear();
+        SENTENCIAS.clear();
+    }
+
+    private static Histograma histogramaSentencia(String sql) {
+        String clave = normalizarSql(sql);
+        Histograma h = SENTENCIAS.get(clave);
+        if (h != null) {
+            return h;
+        }
+        if (SENTENCIAS.size() >= MAXIMO_SENTENCIAS) {
+            return HISTOGRAMAS.computeIfAbsent(SQL_OTRAS, k -> new Histograma());
+        }
+        return SENTENCIAS.computeIfAbsent(clave, k -> new Histograma());
+    }
+
+    /**
+     * Reduce las listas de parámetros a un solo "?…", para que un IN de 3 o de 30 productos cuente
+     * como la misma sentencia. Las sentencias de texto fijo (casi todas) se devuelven tal cual.
+     */
+    static String normalizarSql(String sql) {
+        if (!tieneListas(sql)) {
+            return sql;
+        }
+        String clave = LISTA_CASOS.matcher(sql).replaceAll("WHEN ? THEN ? … ");
+        clave = LISTA_PARAMETROS.matcher(clave).replaceAll("?…");
+        return LISTA_TUPLAS.matcher(clave).replaceAll("(?…), …");
+    }
+
+    /**
+     * @return true si algún "?" va seguido de una coma o de otro parámetro en un CASE (sin usar expresiones regulares).
+     */
+    private static boolean tieneListas(String sql) {
+        for (int i = sql.indexOf('?'); i >= 0; i = sql.indexOf('?', i + 1)) {
+            int j = i + 1;
+            while (j < sql.length() && (Character.isWhitespace(sql.charAt(j)) || sql.charAt(j) == ')')) {
+                j++;
+            }
+            if (j < sql.length() && (sql.charAt(j) == ',' || sql.startsWith("WHEN", j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String abreviarSql(String sql) {
+        String compacto = sql.trim().replaceAll("\\s+", " ");
+        return compacto.length() > LARGO_MAXIMO_SQL ? compacto.substring(0, LARGO_MAXIMO_SQL) + "…" : compacto;
+    }
+
+    /**
+     * Histograma de latencias con cubetas en potencias de 2 microsegundos (la última acumula >= ~16 s).
+     */
+    private static final class Histograma {
+        private static final int CUBETAS = 25;
+
+        private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+        private final LongAdder conteo = new LongAdder();
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder sumaNanos = new LongAdder();
+        private final AtomicLong maximoNanos = new AtomicLong();
+
+        void registrar(long nanos, boolean error) {
+            long micros = Math.max(0, nanos / 1_000);
+            int cubeta = Math.min(CUBETAS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            cubetas.incrementAndGet(cubeta);
+            conteo.increment();
+            sumaNanos.add(nanos);
+            if (error) {
+                errores.increment();
+            }
+            long max;
+            while (nanos > (max = maximoNanos.get())) {
+                if (maximoNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        Map<String, Object> resumen() {
+            long[] copia = new long[CUBETAS];
+            long total = 0;
+            for (int i = 0; i < CUBETAS; i++) {
+                copia[i] = cubetas.get(i);
+                total += copia[i];
+            }
+
+            Map<String, Object> r = new LinkedHashMap<>();
+            long n = conteo.sum();
+            double maxMs = maximoNanos.get() / 1e6;
+            r.put("conteo", n);
+            r.put("errores", errores.sum());
+            r.put("promedioMs", n > 0 ? sumaNanos.sum() / 1e6 / n : 0.0);
+            r.put("p50Ms", Math.min(maxMs, percentil(copia, total, 0.50)));
+            r.put("p95Ms", Math.min(maxMs, percentil(copia, total, 0.95)));
+            r.put("p99Ms", Math.min(maxMs, percentil(copia, total, 0.99)));
+            r.put("maxMs", maxMs);
+            return r;
+        }
+
+        private static double percentil(long[] cubetas, long total, double p) {
+            if (total == 0) {
+                return 0.0;
+            }
+            long objetivo = (long) Math.ceil(total * p);
+            long acumulado = 0;
+            for (int i = 0; i < cubetas.length; i++) {
+                acumulado += cubetas[i];
+                if (acumulado >= objetivo) {
+                    // Límite superior de la cubeta i: 2^i microsegundos
+                    return (1L << i) / 1000.0;
+                }
+            }
+            return (1L << (cubetas.length - 1)) / 1000.0;
+        }
+    }
+}
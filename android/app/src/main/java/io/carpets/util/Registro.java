@@ -0,0 +1,103 @@
+package io.carpets.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registro (log) por niveles y asíncrono.
+ *
+ * Quien registra solo encola el mensaje; un hilo en segundo plano lo escribe en consola (Logcat).
+ * Así las operaciones (por ejemplo una venta) no esperan a la E/S de consola.
+ * Los mensajes por debajo del nivel mínimo se descartan sin armar el texto final.
+ * Si la cola está llena, el mensaje se descarta y se cuenta, nunca se bloquea a quien registra.
+ */
+public final class Registro {
+
+    public enum Nivel { DEBUG, INFO, ADVERTENCIA, ERROR }
+
+    private static final int COLA_MAXIMA = 1024;
+
+    private static final BlockingQueue<Mensaje> COLA = new ArrayBlockingQueue<>(COLA_MAXIMA);
+    private static final AtomicLong DESCARTADOS = new AtomicLong();
+    private static volatile Nivel nivelMinimo = Nivel.INFO;
+
+    static {
+        Thread escritor = new Thread(Registro::escribir, "registro");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    private Registro() {
+    }
+
+    public static void debug(String mensaje) {
+        registrar(Nivel.DEBUG, mensaje);
+    }
+
+    public static void info(String mensaje) {
+        registrar(Nivel.INFO, mensaje);
+    }
+
+    public static void advertencia(String mensaje) {
+        registrar(Nivel.ADVERTENCIA, mensaje);
+    }
+
+    public static void error(String mensaje) {
+        registrar(Nivel.ERROR, mensaje);
+    }
+
+    /**
+     * @return true si los mensajes de ese nivel se registran (para no armar textos costosos en vano).
+     */
+    public static boolean activo(Nivel nivel) {
+        return nivel.compareTo(nivelMinimo) >= 0;
+    }
+
+    public static void setNivelMinimo(Nivel nivel) {
+        nivelMinimo = nivel;
+    }
+
+    /**
+     * @return Mensajes descartados porque la cola estaba llena.
+     */
+    public static long getDescartados() {
+        return DESCARTADOS.get();
+    }
+
+    private static void registrar(Nivel nivel, String mensaje) {
+        if (!activo(nivel)) {
+            return;
+        }
+        if (!COLA.offer(new Mensaje(nivel, mensaje))) {
+            DESCARTADOS.incrementAndGet();
+        }
+    }
+
+    private static void escribir() {
+        while (true) {
+            Mensaje m;
+            try {
+                m = COLA.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            String linea = m.nivel + " " + m.mensaje;
+            if (m.nivel.compareTo(Nivel.ADVERTENCIA) >= 0) {
+                System.err.println(linea);
+            } else {
+                System.out.println(linea);
+            }
+        }
+    }
+
+    private static final class Mensaje {
+        final Nivel nivel;
+        final String mensaje;
+
+        Mensaje(Nivel nivel, String mensaje) {
+            this.nivel = nivel;
+            this.mensaje = mensaje;
+        }
+    }
+}
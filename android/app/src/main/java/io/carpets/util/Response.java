@@ -6,39 +6,46 @@ import java.util.regex.Pattern;
 
 public class Response<T>{
 
-    private Map<String, Object> response = new HashMap<>();
     public static final String EXITO = "ok";
     public static final String INTERNAL_ERROR = "internal_error";
     public static final String MESSAGE_ERROR = "error";
+    public static final String CONFLICTO = "conflict";
     /*
     // Patrón para validar DNI peruano (8 dígitos exactos)
     private static final Pattern DNI_PATTERN = Pattern.compile("^\\d{8}$");
 */
 
+    // Campos simples: el Map solo se arma en getMap(), al cruzar el MethodChannel.
+    private String status;
+    private T content;
+    private boolean tieneContenido = false;
+    private String mensaje;
+
 
     /**
      * En caso el flujo sea exitoso, agrega los datos y un verificador (status).
      * @param datos Son los datos que retornarás.
      */
     public void exito(T datos) {
-        response.put("status", EXITO);
-        response.put("Content", datos);
+        status = EXITO;
+        content = datos;
+        tieneContenido = true;
     }
     /**
      * En caso el flujo sea exitoso. Se usa esta sobrecarga en caso no se pase ningun dato.
      */
     public void exito() {
-        response.put("status", EXITO);
+        status = EXITO;
     }
 
     /**
-     * En caso el flujo tenga un error, Response conservará el error y lo imprimirá.
-     * @param mensaje El mensaje a conservar/imprimir.
+     * En caso el flujo tenga un error, Response conservará el error y lo registrará (sin bloquear).
+     * @param mensaje El mensaje a conservar/registrar.
      */
     public void internal_error(String mensaje) {
-        response.put("status", INTERNAL_ERROR);
-        response.put("mensaje", mensaje);
-        System.out.println(mensaje);
+        status = INTERNAL_ERROR;
+        this.mensaje = mensaje;
+        Registro.error(mensaje);
     }
 
     /**
@@ -46,43 +53,77 @@ public class Response<T>{
      * @param mensaje Es el mensaje a mostrar.
      */
     public void message_error(String mensaje){
-        response.put("status", MESSAGE_ERROR);
-        response.put("mensaje", mensaje);
+        status = MESSAGE_ERROR;
+        this.mensaje = mensaje;
     }
 
     /**
-     * @return El estado de la respuesta: Ok, InternalError, MessageError.
+     * El registro cambió desde que el usuario lo leyó (otro equipo lo modificó) y no se sobrescribió.
+     * No es una falla: la aplicación debe recargar el registro y mostrar el mensaje.
+     * @param mensaje El mensaje a mostrar.
      */
-    public String getStatus(){
+    public void conflicto(String mensaje) {
+        status = CONFLICTO;
+        this.mensaje = mensaje;
+    }
 
-        Object status = response.get("status");
-        return status != null ? status.toString() : "undefined";
+    /**
+     * Copia el estado y el mensaje de otra respuesta (no el contenido), sin volver a registrar el error.
+     * Sirve para entregar a cada llamador su propia respuesta cuando un resultado se comparte (ver UnVuelo).
+     * @param otra Respuesta de la que se copia.
+     */
+    public void copiarEstado(Response<?> otra) {
+        status = otra.status;
+        mensaje = otra.mensaje;
+    }
+
+    /**
+     * @return El estado de la respuesta: Ok, InternalError, MessageError, Conflict.
+     */
+    public String getStatus(){
+        return status != null ? status : "undefined";
     }
 
     /**
      * @return El contenido de la respuesta. Pueden ser listas, objetos, etc.
      */
     public boolean isOk(){
-        return EXITO.equals(response.get("status"));    }
+        return EXITO.equals(status);    }
+
+    /**
+     * @return true si la operación no se aplicó porque el registro había cambiado (ver conflicto()).
+     */
+    public boolean isConflicto() {
+        return CONFLICTO.equals(status);
+    }
 
     /**
      * @return El contenido de la respuesta. Pueden ser listas, objetos, etc.
      */
-    @SuppressWarnings("unchecked")
     public T getContent(){
-        return (T) response.get("Content");
+        return content;
     }
     /* Recupera el mensaje de error almacenado.
      * @return El mensaje de error o null si no hay ninguno.
      */
     public String getMensaje() {
-        Object mensaje = response.get("mensaje");
-        return mensaje != null ? mensaje.toString() : "";
+        return mensaje != null ? mensaje : "";
     }
     /**
-     * @return Retorna el mapa almacenado. Usado para enviarlo por el MethodChannels.
+     * @return Retorna la respuesta como mapa. Usado para enviarlo por el MethodChannels.
+     * Se arma en cada llamada, por lo que solo debe usarse al final del flujo.
      */
     public Map<String, Object> getMap(){
+        Map<String, Object> response = new HashMap<>(4);
+        if (status != null) {
+            response.put("status", status);
+        }
+        if (tieneContenido) {
+            response.put("Content", content);
+        }
+        if (mensaje != null) {
+            response.put("mensaje", mensaje);
+        }
         return response;
     }
 
@@ -0,0 +1,48 @@
+package io.carpets.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Comparación de textos escritos por el usuario con nombres de productos.
+ */
+public final class Texto {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private Texto() {
+    }
+
+    /**
+     * Minúsculas, sin tildes y con un solo espacio entre palabras ("  Camión  Rojo" -> "camion rojo").
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinTildes.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    /**
+     * Ediciones que separan lo escrito del nombre: por cada palabra escrita, la menor distancia a alguna
+     * palabra del nombre (0 si es su prefijo). Ambos textos ya normalizados.
+     */
+    public static int ediciones(String consulta, String nombre) {
+        String[] palabrasNombre = nombre.split(" ");
+        int total = 0;
+        for (String escrita : consulta.split(" ")) {
+            int menor = Integer.MAX_VALUE;
+            for (String palabra : palabrasNombre) {
+                menor = Math.min(menor, palabra.startsWith(escrita) ? 0 : ArbolBK.distancia(escrita, palabra));
+                if (menor == 0) {
+                    break;
+                }
+            }
+            total += menor;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,64 @@
+package io.carpets.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Agrupa lecturas idénticas que están en curso al mismo tiempo ("single-flight").
+ *
+ * La primera llamada con una clave ejecuta la operación; las que llegan con la misma clave mientras
+ * tanto esperan y reciben el mismo resultado, en lugar de repetir la consulta. Al terminar, la clave
+ * se libera: no es una caché, una llamada posterior vuelve a ejecutar la operación.
+ *
+ * Como el resultado se comparte entre hilos, todos (también el primero) reciben lo que devuelva 'copiar':
+ * el original queda solo en el futuro y nadie lo modifica mientras otros lo copian.
+ */
+public final class UnVuelo<T> {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<T>> enVuelo = new ConcurrentHashMap<>();
+    private final AtomicLong compartidas = new AtomicLong();
+
+    /**
+     * @param clave Identifica la lectura (método y argumentos); debe implementar equals/hashCode
+     * @param operacion Lectura a ejecutar si no hay otra igual en curso
+     * @param copiar Copia del resultado para cada llamador (el original no se entrega a nadie)
+     */
+    public T ejecutar(Object clave, Supplier<T> operacion, UnaryOperator<T> copiar) {
+        CompletableFuture<T> propio = new CompletableFuture<>();
+        CompletableFuture<T> existente = enVuelo.putIfAbsent(clave, propio);
+
+        if (existente != null) {
+            compartidas.incrementAndGet();
+            try {
+                return copiar.apply(existente.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            T resultado = operacion.get();
+            propio.complete(resultado);
+            return copiar.apply(resultado);
+        } catch (RuntimeException | Error e) {
+            propio.completeExceptionally(e);
+            throw e;
+        } finally {
+            enVuelo.remove(clave, propio);
+        }
+    }
+
+    /**
+     * @return Cantidad de llamadas que recibieron el resultado de otra en lugar de ejecutar la suya.
+     */
+    public long getCompartidas() {
+        return compartidas.get();
+    }
+}
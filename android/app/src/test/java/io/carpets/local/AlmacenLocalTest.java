@@ -0,0 +1,196 @@
+package io.carpets.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.carpets.Configuracion.VentaRechazadaException;
+import io.carpets.DTOs.CambiosCatalogoDTO;
+import io.carpets.entidades.DetalleVenta;
+import io.carpets.entidades.Producto;
+import io.carpets.entidades.Venta;
+
+public class AlmacenLocalTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private File directorio;
+    private AlmacenLocal almacen;
+
+    @Before
+    public void abrirConCatalogo() throws IOException {
+        directorio = carpeta.newFolder("almacen");
+        almacen = new AlmacenLocal(directorio);
+        almacen.reemplazarCatalogo(Arrays.asList(
+                producto(1, "Camiseta azul", 10, "7750001"),
+                producto(2, "Pantalón negro", 3, "7750002")), 100);
+    }
+
+    @Test
+    public void elCatalogoSobreviveAReabrir() throws IOException {
+        AlmacenLocal reabierto = new AlmacenLocal(directorio);
+
+        assertTrue(reabierto.isCatalogoCargado());
+        assertEquals(100, reabierto.getVersionCatalogo());
+        assertEquals(2, reabierto.getProductos());
+        assertEquals("Camiseta azul", reabierto.buscarProducto(1).getNombre());
+        assertEquals(2, reabierto.buscarPorCodigo(" 7750002 ").getId());
+    }
+
+    @Test
+    public void unaVentaEncoladaReservaStockYSobreviveAReabrir() throws IOException {
+        int idLocal = almacen.encolarVenta(venta("clave-1"), Arrays.asList(detalle(1, 4), detalle(2, 1), detalle(1, 2)));
+
+        assertTrue(idLocal < 0);
+        assertEquals(4, almacen.stockDisponible(1));
+        assertEquals(2, almacen.stockDisponible(2));
+
+        AlmacenLocal reabierto = new AlmacenLocal(directorio);
+
+        List<VentaPendiente> pendientes = reabierto.pendientes();
+        assertEquals(1, pendientes.size());
+        assertEquals("clave-1", pendientes.get(0).getClave());
+        assertEquals(idLocal, pendientes.get(0).getIdLocal());
+        assertEquals(3, pendientes.get(0).nuevosDetalles().size());
+        assertEquals("12345678", pendientes.get(0).nuevaVenta().getClienteDni());
+        assertEquals(4, reabierto.stockDisponible(1));
+        assertEquals(4, reabierto.buscarPorCodigo("7750001").getCantidad());
+
+        // Los IDs provisionales siguen bajando después de reabrir
+        assertTrue(reabierto.encolarVenta(venta("clave-2"), Collections.singletonList(detalle(2, 1))) < idLocal);
+    }
+
+    @Test
+    public void laMismaClaveNoSeEncolaDosVeces() {
+        int primero = almacen.encolarVenta(venta("clave-1"), Collections.singletonList(detalle(1, 2)));
+        int segundo = almacen.encolarVenta(venta("clave-1"), Collections.singletonList(detalle(1, 2)));
+
+        assertEquals(primero, segundo);
+        assertEquals(1, almacen.getPendientes());
+        assertEquals(8, almacen.stockDisponible(1));
+    }
+
+    @Test
+    public void rechazaLoQueNoAlcanzaONoExiste() {
+        almacen.encolarVenta(venta("clave-1"), Collections.singletonList(detalle(2, 2)));
+
+        try {
+            almacen.encolarVenta(venta("clave-2"), Collections.singletonList(detalle(2, 2)));
+            fail("Solo queda 1 unidad del producto 2");
+        } catch (VentaRechazadaException e) {
+            // Esperado
+        }
+        try {
+            almacen.encolarVenta(venta("clave-3"), Collections.singletonList(detalle(99, 1)));
+            fail("El producto 99 no está en el catálogo");
+        } catch (VentaRechazadaException e) {
+            // Esperado
+        }
+        assertEquals(1, almacen.getPendientes());
+    }
+
+    @Test
+    public void confirmadasYRechazadasQuedanAnotadasAlReabrir() throws IOException {
+        almacen.encolarVenta(venta("confirmada"), Collections.singletonList(detalle(1, 3)));
+        almacen.encolarVenta(venta("rechazada"), Collections.singletonList(detalle(2, 1)));
+        almacen.encolarVenta(venta("pendiente"), Collections.singletonList(detalle(1, 1)));
+
+        almacen.marcarConfirmada("confirmada", 501);
+        almacen.marcarRechazada("rechazada", "Stock insuficiente");
+
+        // Lo resuelto ya no reserva stock
+        assertEquals(9, almacen.stockDisponible(1));
+        assertEquals(3, almacen.stockDisponible(2));
+
+        AlmacenLocal reabierto = new AlmacenLocal(directorio);
+
+        assertEquals(1, reabierto.getPendientes());
+        assertEquals("pendiente", reabierto.pendientes().get(0).getClave());
+        assertEquals(1, reabierto.getRechazadas());
+        assertEquals("Stock insuficiente", reabierto.rechazadas().get(0).getMotivoRechazo());
+        assertEquals(9, reabierto.stockDisponible(1));
+        assertEquals(3, reabierto.stockDisponible(2));
+    }
+
+    @Test
+    public void sinPendientesLaBitacoraSeCompactaConLasRechazadas() throws IOException {
+        almacen.encolarVenta(venta("confirmada"), Collections.singletonList(detalle(1, 3)));
+        almacen.encolarVenta(venta("rechazada"), Collections.singletonList(detalle(2, 1)));
+        almacen.marcarRechazada("rechazada", "Producto no encontrado");
+        almacen.marcarConfirmada("confirmada", 501);
+
+        AlmacenLocal reabierto = new AlmacenLocal(directorio);
+
+        assertEquals(0, reabierto.getPendientes());
+        assertEquals(1, reabierto.getRechazadas());
+        assertTrue(reabierto.marcarEnLineaSiNoHayPendientes());
+        assertFalse(reabierto.isSinConexion());
+    }
+
+    @Test
+    public void losCambiosDelCatalogoActualizanLosCodigos() {
+        CambiosCatalogoDTO cambios = new CambiosCatalogoDTO();
+        cambios.setCambiados(Collections.singletonList(producto(1, "Camiseta azul", 10, "7750009")));
+        cambios.setEliminados(Collections.singletonList(2));
+        cambios.setVersion(200);
+
+        almacen.aplicarCambios(cambios);
+
+        assertNull(almacen.buscarPorCodigo("7750001"));
+        assertEquals(1, almacen.buscarPorCodigo("7750009").getId());
+        assertNull(almacen.buscarPorCodigo("7750002"));
+        assertNull(almacen.buscarProducto(2));
+        assertEquals(200, almacen.getVersionCatalogo());
+    }
+
+    @Test
+    public void buscarPorNombreOmiteLoQueNoTieneStockDisponible() {
+        almacen.encolarVenta(venta("clave-1"), Collections.singletonList(detalle(2, 3)));
+
+        List<Producto> encontrados = almacen.buscarPorNombre("A");
+
+        assertEquals(1, encontrados.size());
+        assertEquals(1, encontrados.get(0).getId());
+        assertEquals(10, encontrados.get(0).getCantidad());
+    }
+
+    private static Producto producto(int id, String nombre, int cantidad, String codigo) {
+        Producto p = new Producto(id, nombre, new Date(0), 5.0, 10.0, cantidad, "Ropa", codigo);
+        p.setVersion(id);
+        return p;
+    }
+
+    private static Venta venta(String clave) {
+        Venta venta = new Venta();
+        venta.setClaveIdempotencia(clave);
+        venta.setFecha(new Date(1_700_000_000_000L));
+        venta.setMonto(10.0);
+        venta.setVendedorId(7);
+        venta.setClienteDni("12345678");
+        return venta;
+    }
+
+    private static DetalleVenta detalle(int productoId, int cantidad) {
+        DetalleVenta d = new DetalleVenta();
+        d.setProductoId(productoId);
+        d.setCantidad(cantidad);
+        d.setPrecioUnitario(10.0);
+        d.setSubtotal(10.0 * cantidad);
+        return d;
+    }
+}
@@ -0,0 +1,125 @@
+package io.carpets.local;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiarioLocalTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private File archivo;
+    private DiarioLocal diario;
+
+    @Before
+    public void crearDiario() throws IOException {
+        archivo = new File(carpeta.getRoot(), "prueba.diario");
+        diario = new DiarioLocal(archivo);
+    }
+
+    @Test
+    public void leeLosRegistrosEnElOrdenEnQueSeAgregaron() throws IOException {
+        diario.agregar(bytes("uno"));
+        diario.agregar(bytes("dos"));
+        diario.agregar(new byte[0]);
+
+        List<byte[]> registros = new DiarioLocal(archivo).leerTodo();
+
+        assertEquals(3, registros.size());
+        assertArrayEquals(bytes("uno"), registros.get(0));
+        assertArrayEquals(bytes("dos"), registros.get(1));
+        assertArrayEquals(new byte[0], registros.get(2));
+    }
+
+    @Test
+    public void sinArchivoNoHayRegistros() throws IOException {
+        assertEquals(0, diario.leerTodo().size());
+        assertFalse(archivo.exists());
+    }
+
+    @Test
+    public void descartaUnRegistroCortadoAlFinalYRecortaElArchivo() throws IOException {
+        diario.agregar(bytes("uno"));
+        diario.agregar(bytes("dos"));
+        long integro = archivo.length();
+
+        // Corte durante la escritura: el largo y parte de los datos, sin el resto
+        try (FileOutputStream out = new FileOutputStream(archivo, true)) {
+            out.write(new byte[] {0, 0, 0, 10, 1, 2, 3, 4, 'a', 'b'});
+        }
+
+        List<byte[]> registros = new DiarioLocal(archivo).leerTodo();
+
+        assertEquals(2, registros.size());
+        assertArrayEquals(bytes("dos"), registros.get(1));
+        assertEquals(integro, archivo.length());
+
+        // Lo que se agregue después queda a continuación del último registro íntegro
+        diario.agregar(bytes("tres"));
+        registros = new DiarioLocal(archivo).leerTodo();
+        assertEquals(3, registros.size());
+        assertArrayEquals(bytes("tres"), registros.get(2));
+    }
+
+    @Test
+    public void descartaDesdeElPrimerRegistroConCrcInvalido() throws IOException {
+        diario.agregar(bytes("uno"));
+        long inicioSegundo = archivo.length();
+        diario.agregar(bytes("dos"));
+
+        // Un byte de datos del último registro cambia: el CRC ya no coincide
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw")) {
+            raf.seek(inicioSegundo + 8);
+            raf.write('X');
+        }
+
+        List<byte[]> registros = new DiarioLocal(archivo).leerTodo();
+
+        assertEquals(1, registros.size());
+        assertArrayEquals(bytes("uno"), registros.get(0));
+        assertEquals(inicioSegundo, archivo.length());
+    }
+
+    @Test
+    public void descartaUnLargoImposible() throws IOException {
+        diario.agregar(bytes("uno"));
+        long integro = archivo.length();
+        try (FileOutputStream out = new FileOutputStream(archivo, true)) {
+            out.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        }
+
+        assertEquals(1, new DiarioLocal(archivo).leerTodo().size());
+        assertEquals(integro, archivo.length());
+    }
+
+    @Test
+    public void reescribirReemplazaTodoElContenido() throws IOException {
+        diario.agregar(bytes("uno"));
+        diario.agregar(bytes("dos"));
+
+        diario.reescribir(Arrays.asList(bytes("tres")));
+
+        List<byte[]> registros = new DiarioLocal(archivo).leerTodo();
+        assertEquals(1, registros.size());
+        assertArrayEquals(bytes("tres"), registros.get(0));
+        assertFalse(new File(archivo.getPath() + ".tmp").exists());
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+}
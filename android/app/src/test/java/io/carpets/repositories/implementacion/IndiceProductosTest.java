@@ -0,0 +1,151 @@
+package io.carpets.repositories.implementacion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.carpets.DTOs.CambiosCatalogoDTO;
+import io.carpets.entidades.Producto;
+import io.carpets.repositories.ProductoRepository;
+import io.carpets.util.Response;
+
+public class IndiceProductosTest {
+
+    // Lo que devolverá la siguiente llamada a findChangedSince (null = la base de datos no responde)
+    private CambiosCatalogoDTO siguientesCambios;
+    private final List<Long> consultadas = new ArrayList<>();
+
+    private IndiceProductos indice;
+
+    @Before
+    public void cargarCatalogo() {
+        indice = new IndiceProductos(repositorio(), 60_000);
+        siguientesCambios = cambios(10, Arrays.asList(
+                producto(1, "Polo básico", "Polos", "7750001"),
+                producto(2, "Camiseta polo rayas", "Polos", null),
+                producto(3, "Pantalón de vestir", "Pantalones", null),
+                producto(4, "Polo", "Oferta", null),
+                producto(5, "Casaca impermeable", "Abrigos", null)), Collections.<Integer>emptyList());
+        assertTrue(indice.sincronizar());
+    }
+
+    @Test
+    public void ordenaPorRelevanciaDelNombre() {
+        List<Producto> encontrados = indice.buscar("polo", IndiceProductos.CAMPO_NOMBRE);
+
+        // Igual, empieza con el texto, y alguna palabra empieza con el texto
+        assertEquals(Arrays.asList(4, 1, 2), ids(encontrados));
+    }
+
+    @Test
+    public void ignoraTildesYMayusculas() {
+        assertEquals(Collections.singletonList(3), ids(indice.buscar("PANTALON", IndiceProductos.CAMPO_NOMBRE)));
+        assertEquals(Collections.singletonList(1), ids(indice.buscar("basico", IndiceProductos.CAMPO_NOMBRE)));
+    }
+
+    @Test
+    public void buscaEnLaCategoria() {
+        assertEquals(Collections.singletonList(5), ids(indice.buscar("abrigos", IndiceProductos.CAMPO_CATEGORIA)));
+        assertTrue(indice.buscar("abrigos", IndiceProductos.CAMPO_NOMBRE).isEmpty());
+    }
+
+    @Test
+    public void toleraErroresDeTipeo() {
+        assertEquals(Collections.singletonList(5), ids(indice.buscarAproximado("cassaca")));
+        assertEquals(Collections.singletonList(3), ids(indice.buscarAproximado("pantalom vestr")));
+        assertTrue(indice.buscarAproximado("zzzzzz").isEmpty());
+    }
+
+    @Test
+    public void resuelveCodigos() {
+        assertEquals(Integer.valueOf(1), indice.idPorCodigo(" 7750001 "));
+        assertNull(indice.idPorCodigo("7750999"));
+    }
+
+    @Test
+    public void aplicaLosCambiosDesdeElUltimoToken() {
+        siguientesCambios = cambios(20,
+                Collections.singletonList(producto(3, "Short deportivo", "Shorts", "7750003")),
+                Collections.singletonList(4));
+        indice.marcarDesactualizado();
+
+        assertTrue(indice.sincronizar());
+
+        assertEquals(Long.valueOf(10), consultadas.get(consultadas.size() - 1));
+        assertTrue(indice.buscar("pantalon", IndiceProductos.CAMPO_NOMBRE).isEmpty());
+        assertEquals(Collections.singletonList(3), ids(indice.buscar("short", IndiceProductos.CAMPO_NOMBRE)));
+        assertEquals(Arrays.asList(1, 2), ids(indice.buscar("polo", IndiceProductos.CAMPO_NOMBRE)));
+        assertEquals(Integer.valueOf(3), indice.idPorCodigo("7750003"));
+        assertEquals(4, indice.getTamano());
+    }
+
+    @Test
+    public void sinConexionSigueRespondiendoConLoCargado() {
+        siguientesCambios = null;
+        indice.marcarDesactualizado();
+
+        assertTrue(indice.sincronizar());
+        assertEquals(5, indice.getTamano());
+    }
+
+    @Test
+    public void sinCargarYSinConexionAvisaQueNoPuedeResponder() {
+        IndiceProductos vacio = new IndiceProductos(repositorio(), 60_000);
+        siguientesCambios = null;
+
+        assertFalse(vacio.sincronizar());
+    }
+
+    /**
+     * Solo implementa findChangedSince, lo único que usa el índice.
+     */
+    private ProductoRepository repositorio() {
+        return (ProductoRepository) Proxy.newProxyInstance(
+                ProductoRepository.class.getClassLoader(),
+                new Class<?>[] {ProductoRepository.class},
+                (proxy, metodo, args) -> {
+                    if (!metodo.getName().equals("findChangedSince")) {
+                        throw new UnsupportedOperationException(metodo.getName());
+                    }
+                    consultadas.add((Long) args[0]);
+                    Response<CambiosCatalogoDTO> response = new Response<>();
+                    if (siguientesCambios == null) {
+                        response.internal_error("Sin conexión");
+                    } else {
+                        response.exito(siguientesCambios);
+                    }
+                    return response;
+                });
+    }
+
+    private static CambiosCatalogoDTO cambios(long version, List<Producto> cambiados, List<Integer> eliminados) {
+        CambiosCatalogoDTO cambios = new CambiosCatalogoDTO();
+        cambios.setCambiados(cambiados);
+        cambios.setEliminados(eliminados);
+        cambios.setVersion(version);
+        return cambios;
+    }
+
+    private static Producto producto(int id, String nombre, String categoria, String codigo) {
+        return new Producto(id, nombre, new Date(0), 5.0, 10.0, 10, categoria, codigo);
+    }
+
+    private static List<Integer> ids(List<Producto> productos) {
+        List<Integer> ids = new ArrayList<>();
+        for (Producto p : productos) {
+            ids.add(p.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,81 @@
+package io.carpets.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ArbolBKTest {
+
+    private static final List<String> PALABRAS = Arrays.asList(
+            "camiseta", "camisa", "casaca", "pantalon", "polo", "short", "chompa", "chaleco",
+            "media", "medias", "correa", "zapatilla", "zapato", "gorra", "bufanda", "casa", "cama");
+
+    @Test
+    public void distanciaDeLevenshtein() {
+        assertEquals(0, ArbolBK.distancia("polo", "polo"));
+        assertEquals(3, ArbolBK.distancia("kitten", "sitting"));
+        assertEquals(4, ArbolBK.distancia("", "polo"));
+        assertEquals(4, ArbolBK.distancia("polo", ""));
+        assertEquals(1, ArbolBK.distancia("camiseta", "camisetta"));
+        assertEquals(1, ArbolBK.distancia("medias", "media"));
+        assertEquals(1, ArbolBK.distancia("gorra", "gorro"));
+    }
+
+    @Test
+    public void encuentraLasPalabrasDentroDeLaTolerancia() {
+        ArbolBK arbol = arbolConPalabras();
+
+        Map<String, Integer> cercanas = arbol.buscar("camisetta", 1);
+
+        assertEquals(1, cercanas.size());
+        assertEquals(Integer.valueOf(1), cercanas.get("camiseta"));
+    }
+
+    @Test
+    public void daLoMismoQueCompararContraTodas() {
+        ArbolBK arbol = arbolConPalabras();
+
+        for (String consulta : Arrays.asList("casa", "cmisa", "zapatila", "medya", "xyz", "chompas", "pol")) {
+            for (int tolerancia = 0; tolerancia <= 3; tolerancia++) {
+                Map<String, Integer> esperadas = new HashMap<>();
+                for (String palabra : PALABRAS) {
+                    int d = ArbolBK.distancia(consulta, palabra);
+                    if (d <= tolerancia) {
+                        esperadas.put(palabra, d);
+                    }
+                }
+                assertEquals(consulta + " con tolerancia " + tolerancia,
+                        esperadas, new HashMap<>(arbol.buscar(consulta, tolerancia)));
+            }
+        }
+    }
+
+    @Test
+    public void noRepitePalabras() {
+        ArbolBK arbol = arbolConPalabras();
+
+        arbol.agregar("polo");
+        arbol.agregar("camisa");
+
+        assertEquals(PALABRAS.size(), arbol.getTamano());
+    }
+
+    @Test
+    public void vacioNoEncuentraNada() {
+        assertTrue(new ArbolBK().buscar("polo", 2).isEmpty());
+    }
+
+    private static ArbolBK arbolConPalabras() {
+        ArbolBK arbol = new ArbolBK();
+        for (String palabra : PALABRAS) {
+            arbol.agregar(palabra);
+        }
+        return arbol;
+    }
+}
@@ -0,0 +1,62 @@
+package io.carpets.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class MetricasTest {
+
+    @Test
+    public void listasInDeDistintoLargoDanLaMismaClave() {
+        String dos = Metricas.normalizarSql("SELECT * FROM producto WHERE id_producto IN (?, ?)");
+        String cincuenta = Metricas.normalizarSql("SELECT * FROM producto WHERE id_producto IN (" + marcadores(50) + ")");
+
+        assertEquals("SELECT * FROM producto WHERE id_producto IN (?…)", dos);
+        assertEquals(dos, cincuenta);
+    }
+
+    @Test
+    public void casosDeDistintoLargoDanLaMismaClave() {
+        String dos = Metricas.normalizarSql(
+                "UPDATE producto SET cantidad = cantidad - CASE id_producto WHEN ? THEN ? WHEN ? THEN ? END "
+                        + "WHERE id_producto IN (?, ?)");
+        String diez = Metricas.normalizarSql(
+                "UPDATE producto SET cantidad = cantidad - CASE id_producto " + repetir("WHEN ? THEN ? ", 10) + "END "
+                        + "WHERE id_producto IN (" + marcadores(10) + ")");
+
+        assertEquals(dos, diez);
+    }
+
+    @Test
+    public void variasFilasDeValuesDanLaMismaClave() {
+        String dos = Metricas.normalizarSql("INSERT INTO detalle_venta (a, b) VALUES (?, ?), (?, ?)");
+        String treinta = Metricas.normalizarSql(
+                "INSERT INTO detalle_venta (a, b) VALUES (?, ?)" + repetir(", (?, ?)", 29));
+
+        assertEquals(dos, treinta);
+    }
+
+    @Test
+    public void unaSentenciaFijaNoCambia() {
+        String sql = "SELECT id_producto, nombre FROM producto WHERE id_producto = ?";
+
+        assertSame(sql, Metricas.normalizarSql(sql));
+    }
+
+    private static String marcadores(int cantidad) {
+        StringBuilder sb = new StringBuilder("?");
+        for (int i = 1; i < cantidad; i++) {
+            sb.append(", ?");
+        }
+        return sb.toString();
+    }
+
+    private static String repetir(String texto, int veces) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < veces; i++) {
+            sb.append(texto);
+        }
+        return sb.toString();
+    }
+}
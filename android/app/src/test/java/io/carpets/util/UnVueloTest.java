@@ -0,0 +1,128 @@
+package io.carpets.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class UnVueloTest {
+
+    private static final int SEGUIDORES = 4;
+
+    private final ExecutorService hilos = Executors.newFixedThreadPool(SEGUIDORES + 1);
+
+    @After
+    public void cerrar() {
+        hilos.shutdownNow();
+    }
+
+    @Test
+    public void lasLlamadasSimultaneasCompartenUnaEjecucionYRecibenCopiasDistintas() throws Exception {
+        UnVuelo<List<String>> vuelo = new UnVuelo<>();
+        AtomicInteger ejecuciones = new AtomicInteger();
+        CountDownLatch lider = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+
+        Future<List<String>> primero = hilos.submit(() -> vuelo.ejecutar("clave", () -> {
+            ejecuciones.incrementAndGet();
+            lider.countDown();
+            esperar(soltar);
+            List<String> resultado = new ArrayList<>();
+            resultado.add("dato");
+            return resultado;
+        }, ArrayList::new));
+        esperar(lider);
+
+        List<Future<List<String>>> seguidores = new ArrayList<>();
+        for (int i = 0; i < SEGUIDORES; i++) {
+            seguidores.add(hilos.submit(() -> vuelo.ejecutar("clave", () -> {
+                ejecuciones.incrementAndGet();
+                return new ArrayList<>();
+            }, ArrayList::new)));
+        }
+        while (vuelo.getCompartidas() < SEGUIDORES) {
+            Thread.sleep(1);
+        }
+        soltar.countDown();
+
+        List<List<String>> recibidos = new ArrayList<>();
+        recibidos.add(primero.get(5, TimeUnit.SECONDS));
+        for (Future<List<String>> f : seguidores) {
+            recibidos.add(f.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, ejecuciones.get());
+        for (int i = 0; i < recibidos.size(); i++) {
+            assertEquals("dato", recibidos.get(i).get(0));
+            for (int j = i + 1; j < recibidos.size(); j++) {
+                assertNotSame(recibidos.get(i), recibidos.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void losSeguidoresRecibenLaExcepcionDelPrimero() throws Exception {
+        UnVuelo<String> vuelo = new UnVuelo<>();
+        CountDownLatch lider = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+
+        Future<String> primero = hilos.submit(() -> vuelo.ejecutar("clave", () -> {
+            lider.countDown();
+            esperar(soltar);
+            throw new IllegalStateException("sin conexión");
+        }, s -> s));
+        esperar(lider);
+        Future<String> seguidor = hilos.submit(() -> vuelo.ejecutar("clave", () -> "otro", s -> s));
+        while (vuelo.getCompartidas() < 1) {
+            Thread.sleep(1);
+        }
+        soltar.countDown();
+
+        for (Future<String> f : Arrays.asList(primero, seguidor)) {
+            try {
+                f.get(5, TimeUnit.SECONDS);
+                fail("Debía fallar");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                assertEquals("sin conexión", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void alTerminarLaClaveSeLibera() {
+        UnVuelo<Integer> vuelo = new UnVuelo<>();
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        vuelo.ejecutar("clave", ejecuciones::incrementAndGet, n -> n);
+        vuelo.ejecutar("clave", ejecuciones::incrementAndGet, n -> n);
+
+        assertEquals(2, ejecuciones.get());
+        assertEquals(0, vuelo.getCompartidas());
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Tiempo de espera agotado");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+-- Secuencia durable para el correlativo de las boletas de venta.
+-- VentaRepositoryImplementacion.siguienteNumeroBoleta() la incrementa con
+-- UPDATE ... SET valor = LAST_INSERT_ID(valor + 1) en su propia conexión.
+
+CREATE TABLE IF NOT EXISTS secuencia (
+    nombre VARCHAR(50) NOT NULL PRIMARY KEY,
+    valor  BIGINT      NOT NULL
+) ENGINE = InnoDB;
+
+-- Continúa la numeración anterior (que usaba max(id_venta) + 1).
+INSERT INTO secuencia (nombre, valor)
+SELECT 'boleta', COALESCE(MAX(id_venta), 0) FROM venta
+ON DUPLICATE KEY UPDATE valor = valor;
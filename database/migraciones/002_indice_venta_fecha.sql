@@ -0,0 +1,4 @@
+-- Índice para los filtros por rango de fecha (VentaRepository.findByFechaRange).
+-- Las consultas usan límites semiabiertos (fecha >= ? AND fecha < ?) para que el índice sea utilizable.
+
+CREATE INDEX idx_venta_fecha ON venta (fecha);
@@ -0,0 +1,4 @@
+-- Índice para la paginación por clave del catálogo (ProductoRepository.findPage),
+-- que ordena por (nombre, id_producto). InnoDB agrega la clave primaria a cada índice secundario.
+
+CREATE INDEX idx_producto_nombre ON producto (nombre);
@@ -0,0 +1,46 @@
+-- Versión de cambio por producto para la sincronización incremental del catálogo
+-- (ProductoRepository.findChangedSince).
+--
+-- La versión sale de la secuencia 'catalogo' y la asignan los triggers, así que toda escritura
+-- sobre producto la mantiene, venga de este repositorio o de otra versión de la aplicación.
+-- El UPDATE sobre la fila de la secuencia la bloquea hasta el commit: las versiones se confirman
+-- en orden y un cliente nunca se salta un cambio con una versión menor a su token.
+
+ALTER TABLE producto ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX idx_producto_version ON producto (version);
+
+INSERT INTO secuencia (nombre, valor) VALUES ('catalogo', 0)
+ON DUPLICATE KEY UPDATE valor = valor;
+
+-- Lápidas: ids eliminados y la versión en que se eliminaron.
+CREATE TABLE IF NOT EXISTS producto_eliminado (
+    id_producto INT    NOT NULL PRIMARY KEY,
+    version     BIGINT NOT NULL,
+    INDEX idx_producto_eliminado_version (version)
+) ENGINE = InnoDB;
+
+DELIMITER //
+
+CREATE TRIGGER producto_version_insert BEFORE INSERT ON producto
+FOR EACH ROW
+BEGIN
+    UPDATE secuencia SET valor = LAST_INSERT_ID(valor + 1) WHERE nombre = 'catalogo';
+    SET NEW.version = LAST_INSERT_ID();
+END//
+
+CREATE TRIGGER producto_version_update BEFORE UPDATE ON producto
+FOR EACH ROW
+BEGIN
+    UPDATE secuencia SET valor = LAST_INSERT_ID(valor + 1) WHERE nombre = 'catalogo';
+    SET NEW.version = LAST_INSERT_ID();
+END//
+
+CREATE TRIGGER producto_version_delete AFTER DELETE ON producto
+FOR EACH ROW
+BEGIN
+    UPDATE secuencia SET valor = LAST_INSERT_ID(valor + 1) WHERE nombre = 'catalogo';
+    INSERT INTO producto_eliminado (id_producto, version) VALUES (OLD.id_producto, LAST_INSERT_ID())
+    ON DUPLICATE KEY UPDATE version = VALUES(version);
+END//
+
+DELIMITER ;
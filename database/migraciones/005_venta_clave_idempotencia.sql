@@ -0,0 +1,10 @@
+-- Clave de idempotencia de la venta, generada por el cliente.
+--
+-- Las ventas registradas sin conexión se guardan en el equipo y se reenvían al volver la red
+-- (ReplicadorVentas). Si el primer envío llegó a confirmarse pero la respuesta se perdió,
+-- el reenvío trae la misma clave y ServicioVentaImplementacion devuelve la venta ya registrada
+-- en lugar de crear otra y descontar el stock dos veces. El índice único lo garantiza aunque
+-- dos reenvíos coincidan en el tiempo.
+
+ALTER TABLE venta ADD COLUMN clave_idempotencia VARCHAR(64) NULL;
+CREATE UNIQUE INDEX uq_venta_clave_idempotencia ON venta (clave_idempotencia);
@@ -0,0 +1,8 @@
+-- Clave de idempotencia de la compra, generada por el cliente (igual que venta.clave_idempotencia).
+--
+-- Flutter reintenta la llamada si no recibe respuesta a tiempo; si la primera ya se confirmó,
+-- el reintento trae la misma clave y ServicioCompraImplementacion devuelve la compra registrada
+-- en lugar de sumar el stock dos veces.
+
+ALTER TABLE compra ADD COLUMN clave_idempotencia VARCHAR(64) NULL;
+CREATE UNIQUE INDEX uq_compra_clave_idempotencia ON compra (clave_idempotencia);
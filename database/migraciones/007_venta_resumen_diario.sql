@@ -0,0 +1,28 @@
+-- Resumen de ventas por día, mantenido junto con cada venta.
+--
+-- registrarVenta suma la venta a su día y eliminarVenta la resta, en la misma transacción
+-- (VentaRepository.acumularResumenDiario), así el reporte diario lee como mucho 30 filas por
+-- clave primaria en lugar de agrupar toda la tabla venta con DATE(fecha).
+-- VentaRepository.reconstruirResumenDiario lo recalcula desde el historial si hiciera falta.
+--
+-- ganancia = SUM((precio_unitario - precio_compra) * cantidad), sin IGV.
+
+CREATE TABLE IF NOT EXISTS venta_resumen_diario (
+    dia             DATE          NOT NULL PRIMARY KEY,
+    total_vendido   DECIMAL(14,2) NOT NULL DEFAULT 0,
+    cantidad_ventas INT           NOT NULL DEFAULT 0,
+    igv             DECIMAL(14,2) NOT NULL DEFAULT 0,
+    ganancia        DECIMAL(14,2) NOT NULL DEFAULT 0
+) ENGINE = InnoDB;
+
+-- Carga inicial desde el historial (IGV 18%)
+INSERT INTO venta_resumen_diario (dia, total_vendido, cantidad_ventas, igv, ganancia)
+SELECT DATE(v.fecha), SUM(v.monto), COUNT(*), SUM(v.monto) * 0.18 / 1.18, COALESCE(SUM(g.ganancia), 0)
+FROM venta v
+LEFT JOIN (SELECT d.id_venta, SUM((d.precio_unitario - p.precio_compra) * d.cantidad) AS ganancia
+           FROM detalle_venta d
+           JOIN producto p ON p.id_producto = d.id_producto
+           GROUP BY d.id_venta) g ON g.id_venta = v.id_venta
+GROUP BY DATE(v.fecha)
+ON DUPLICATE KEY UPDATE total_vendido = VALUES(total_vendido), cantidad_ventas = VALUES(cantidad_ventas),
+                        igv = VALUES(igv), ganancia = VALUES(ganancia);
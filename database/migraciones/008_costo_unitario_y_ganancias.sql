@@ -0,0 +1,48 @@
+-- Costo unitario congelado en cada detalle de venta y ganancias acumuladas.
+--
+-- detalle_venta.costo_unitario guarda el precio_compra del producto al momento de la venta
+-- (registrarVenta lo toma del producto que lee en la transacción; DetalleVentaRepository lo copia
+-- si el detalle no lo trae): la ganancia histórica ya no cambia cuando luego se edita el precio de compra.
+--
+-- ganancia_producto y ganancia_total se mantienen junto con venta_resumen_diario
+-- (VentaRepository.acumularResumenDiario), así la ganancia total, por día o por producto es una
+-- lectura por clave primaria en lugar de unir detalle_venta con producto.
+--
+-- ganancia = SUM((precio_unitario - costo_unitario) * cantidad), sin IGV.
+
+ALTER TABLE detalle_venta
+    ADD COLUMN costo_unitario DECIMAL(10,2) NULL;
+
+-- Las ventas anteriores no guardaron su costo: se toma el precio de compra actual, que es lo mismo
+-- que usaba el cálculo anterior
+UPDATE detalle_venta d
+JOIN producto p ON p.id_producto = d.id_producto
+SET d.costo_unitario = p.precio_compra
+WHERE d.costo_unitario IS NULL;
+
+CREATE TABLE IF NOT EXISTS ganancia_producto (
+    id_producto       INT           NOT NULL PRIMARY KEY,
+    unidades_vendidas INT           NOT NULL DEFAULT 0,
+    ganancia          DECIMAL(14,2) NOT NULL DEFAULT 0
+) ENGINE = InnoDB;
+
+-- Una sola fila (id = 1): como la fila del día en venta_resumen_diario, toda venta la bloquea hasta
+-- el commit. Por eso acumularResumenDiario es lo último de registrarVenta y eliminarVenta, y ambos
+-- bloquean en el mismo orden (filas de producto, día, ganancia_producto, ganancia_total): la espera
+-- se limita al final de la transacción y los dos caminos no se cruzan.
+CREATE TABLE IF NOT EXISTS ganancia_total (
+    id       TINYINT       NOT NULL PRIMARY KEY,
+    ganancia DECIMAL(14,2) NOT NULL DEFAULT 0
+) ENGINE = InnoDB;
+
+-- Carga inicial desde el historial
+INSERT INTO ganancia_producto (id_producto, unidades_vendidas, ganancia)
+SELECT d.id_producto, SUM(d.cantidad), SUM((d.precio_unitario - d.costo_unitario) * d.cantidad)
+FROM detalle_venta d
+GROUP BY d.id_producto
+ON DUPLICATE KEY UPDATE unidades_vendidas = VALUES(unidades_vendidas), ganancia = VALUES(ganancia);
+
+INSERT INTO ganancia_total (id, ganancia)
+SELECT 1, COALESCE(SUM((d.precio_unitario - d.costo_unitario) * d.cantidad), 0)
+FROM detalle_venta d
+ON DUPLICATE KEY UPDATE ganancia = VALUES(ganancia);
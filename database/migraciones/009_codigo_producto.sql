@@ -0,0 +1,11 @@
+-- Código de barras / SKU del producto.
+--
+-- Único cuando existe; los productos sin código lo tienen en NULL (un índice UNIQUE admite varios NULL).
+-- ProductoRepository.findByCodigo lo busca por este índice; en la aplicación, ProductoRepositoryCache
+-- resuelve los códigos desde memoria (IndiceProductos) y solo consulta la base de datos si no lo conoce
+-- (salvo que el texto sea un número que cabe en un int, que se trata como ID escrito a mano).
+
+ALTER TABLE producto
+    ADD COLUMN codigo VARCHAR(64) NULL;
+
+CREATE UNIQUE INDEX uq_producto_codigo ON producto (codigo);
@@ -0,0 +1,47 @@
+-- La versión de producto deja de salir de la fila 'catalogo' de secuencia.
+--
+-- Con 004 cada escritura sobre producto (también el descuento de stock de cada venta) bloqueaba esa
+-- única fila hasta el commit, así que todas las ventas de todos los equipos se esperaban entre sí
+-- durante el resto de su transacción. Ahora la versión es el instante de la escritura en
+-- microsegundos (reloj del servidor), sin fila compartida:
+-- - UPDATE: GREATEST(versión anterior + 1, ahora), así sigue cambiando en cada escritura aunque el
+--   reloj retroceda (el control optimista de ProductoRepository.update depende de eso).
+-- - Las versiones ya no se confirman en orden. ProductoRepository.findChangedSince devuelve como
+--   token "ahora - margen", que va por detrás de las transacciones que aún no confirman; los cambios
+--   más recientes que el token se vuelven a enviar en la siguiente sincronización (aplicarlos es idempotente).
+--
+-- El servidor debe usar una zona horaria sin horario de verano (p. ej. UTC): UNIX_TIMESTAMP(NOW(6))
+-- retrocede una hora al salir del horario de verano.
+
+DROP TRIGGER IF EXISTS producto_version_insert;
+DROP TRIGGER IF EXISTS producto_version_update;
+DROP TRIGGER IF EXISTS producto_version_delete;
+
+DELIMITER //
+
+CREATE TRIGGER producto_version_insert BEFORE INSERT ON producto
+FOR EACH ROW
+BEGIN
+    SET NEW.version = CAST(UNIX_TIMESTAMP(NOW(6)) * 1000000 AS UNSIGNED);
+END//
+
+CREATE TRIGGER producto_version_update BEFORE UPDATE ON producto
+FOR EACH ROW
+BEGIN
+    SET NEW.version = GREATEST(OLD.version + 1, CAST(UNIX_TIMESTAMP(NOW(6)) * 1000000 AS UNSIGNED));
+END//
+
+CREATE TRIGGER producto_version_delete AFTER DELETE ON producto
+FOR EACH ROW
+BEGIN
+    INSERT INTO producto_eliminado (id_producto, version)
+    VALUES (OLD.id_producto, GREATEST(OLD.version + 1, CAST(UNIX_TIMESTAMP(NOW(6)) * 1000000 AS UNSIGNED)))
+    ON DUPLICATE KEY UPDATE version = VALUES(version);
+END//
+
+DELIMITER ;
+
+-- Todos los productos pasan a una versión del nuevo rango (el trigger la asigna). Así ninguno queda
+-- en 0 y la carga inicial de los clientes puede ser findChangedSince(0); los tokens anteriores,
+-- menores, reciben el catálogo completo una vez.
+UPDATE producto SET version = version;